@@ -15,9 +15,18 @@ public class GTestListEvent {
 
     public static class GroupAnnounce extends GTestListEvent {
         public final String groupName;
+        public final int groupId;
 
         public GroupAnnounce(String groupName) {
+            this(groupName, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}; doesn't take part in equality
+         */
+        public GroupAnnounce(String groupName, int groupId) {
             this.groupName = groupName;
+            this.groupId = groupId;
         }
 
         @Override
@@ -44,10 +53,22 @@ public class GTestListEvent {
     public static class TestAnnounce extends GTestListEvent {
         public final String groupName;
         public final String testName;
+        public final int groupId;
+        public final int testId;
 
         public TestAnnounce(String groupName, String testName) {
+            this(groupName, testName, TestSymbols.NONE, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}; doesn't take part in equality
+         * @param testId    id of the test in {@link TestSymbols}; doesn't take part in equality
+         */
+        public TestAnnounce(String groupName, String testName, int groupId, int testId) {
             this.groupName = groupName;
             this.testName = testName;
+            this.groupId = groupId;
+            this.testId = testId;
         }
 
         @Override
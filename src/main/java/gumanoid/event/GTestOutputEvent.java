@@ -4,9 +4,14 @@ import com.google.common.base.Objects;
 import gumanoid.parser.GTestOutputParser;
 
 import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
- * Events parsed from GTest output lines
+ * Events parsed from GTest output lines.
+ * <p/>
+ * Events referring to groups and tests carry their {@link TestSymbols} ids
+ * besides names. Ids are specific to the symbol table the parser was given,
+ * so they don't take part in equality
  *
  * Created by Gumanoid on 16.01.2016.
  */
@@ -43,6 +48,8 @@ public class GTestOutputEvent {
     public static class TestOutput extends GTestOutputEvent {
         public final Optional<String> groupName;
         public final Optional<String> testName;
+        public final int groupId;
+        public final int testId;
 
         /**
          * Any non-special output which was printed between 'suite start' and
@@ -56,9 +63,20 @@ public class GTestOutputEvent {
          *                 to test suite or test group
          */
         public TestOutput(String outputLine, Optional<String> groupName, Optional<String> testName) {
+            this(outputLine, groupName, testName, TestSymbols.NONE, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}, or {@link TestSymbols#NONE}
+         * @param testId    id of the test in {@link TestSymbols}, or {@link TestSymbols#NONE}
+         * @see #TestOutput(String, Optional, Optional)
+         */
+        public TestOutput(String outputLine, Optional<String> groupName, Optional<String> testName, int groupId, int testId) {
             super(outputLine);
             this.groupName = groupName;
             this.testName = testName;
+            this.groupId = groupId;
+            this.testId = testId;
         }
 
         @Override
@@ -86,6 +104,34 @@ public class GTestOutputEvent {
         }
     }
 
+    public static class ErrorOutput extends TestOutput {
+        /**
+         * Line the process printed to stderr. GTest prints nothing there, so
+         * it's always output of the test or the test program itself
+         *
+         * @see TestOutput#TestOutput(String, Optional, Optional)
+         */
+        public ErrorOutput(String outputLine, Optional<String> groupName, Optional<String> testName) {
+            super(outputLine, groupName, testName);
+        }
+
+        /**
+         * @see TestOutput#TestOutput(String, Optional, Optional, int, int)
+         */
+        public ErrorOutput(String outputLine, Optional<String> groupName, Optional<String> testName, int groupId, int testId) {
+            super(outputLine, groupName, testName, groupId, testId);
+        }
+
+        @Override
+        public String toString() {
+            return "ErrorOutput{" +
+                    "outputLine='" + outputLine + '\'' +
+                    ", groupName=" + groupName +
+                    ", testName=" + testName +
+                    '}';
+        }
+    }
+
     public static class OutputBeforeSuiteStarted extends GTestOutputEvent {
         /**
          * Output line received before test suite is started (e. g.
@@ -127,6 +173,7 @@ public class GTestOutputEvent {
     public static class SuiteStart extends GTestOutputEvent {
         public final int testCount;
         public final int testGroupCount;
+        public final int iteration;
 
         /**
          * GTest said that the suite with N tests in M test groups begins
@@ -136,9 +183,24 @@ public class GTestOutputEvent {
          * @param testGroupCount    how many test groups are in this suite
          */
         public SuiteStart(String outputLine, int testCount, int testGroupCount) {
+            this(outputLine, testCount, testGroupCount, 0);
+        }
+
+        /**
+         * GTest said that the suite with N tests in M test groups begins
+         *
+         * @param outputLine        raw output line
+         * @param testCount         how many tests this suite contains
+         * @param testGroupCount    how many test groups are in this suite
+         * @param iteration         zero-based index of the suite run, when tests
+         *                          are repeated (--gtest_repeat); all events up to
+         *                          the next SuiteStart belong to this iteration
+         */
+        public SuiteStart(String outputLine, int testCount, int testGroupCount, int iteration) {
             super(outputLine);
             this.testCount = testCount;
             this.testGroupCount = testGroupCount;
+            this.iteration = iteration;
         }
 
         @Override
@@ -148,12 +210,13 @@ public class GTestOutputEvent {
             if (!super.equals(o)) return false;
             SuiteStart that = (SuiteStart) o;
             return testCount == that.testCount &&
-                    testGroupCount == that.testGroupCount;
+                    testGroupCount == that.testGroupCount &&
+                    iteration == that.iteration;
         }
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(super.hashCode(), testCount, testGroupCount);
+            return Objects.hashCode(super.hashCode(), testCount, testGroupCount, iteration);
         }
 
         @Override
@@ -162,6 +225,7 @@ public class GTestOutputEvent {
                     "outputLine='" + outputLine + '\'' +
                     ", testCount=" + testCount +
                     ", testGroupCount=" + testGroupCount +
+                    ", iteration=" + iteration +
                     '}';
         }
     }
@@ -211,6 +275,7 @@ public class GTestOutputEvent {
     public static class GroupStart extends GTestOutputEvent {
         public final String groupName;
         public final int testsInGroup;
+        public final int groupId;
 
         /**
          * GTest said that the group with N tests begins
@@ -220,9 +285,18 @@ public class GTestOutputEvent {
          * @param testsInGroup      how many test groups are in this group
          */
         public GroupStart(String outputLine, String groupName, int testsInGroup) {
+            this(outputLine, groupName, testsInGroup, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}
+         * @see #GroupStart(String, String, int)
+         */
+        public GroupStart(String outputLine, String groupName, int testsInGroup, int groupId) {
             super(outputLine);
             this.groupName = groupName;
             this.testsInGroup = testsInGroup;
+            this.groupId = groupId;
         }
 
         @Override
@@ -253,6 +327,7 @@ public class GTestOutputEvent {
     public static class GroupEnd extends GTestOutputEvent {
         public final String groupName;
         public final int testsInGroup;
+        public final int groupId;
 
         /**
          * GTest said that the group with N tests ends.
@@ -267,9 +342,18 @@ public class GTestOutputEvent {
          * @param testsInGroup      how many test groups are in this group
          */
         public GroupEnd(String outputLine, String groupName, int testsInGroup) {
+            this(outputLine, groupName, testsInGroup, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}
+         * @see #GroupEnd(String, String, int)
+         */
+        public GroupEnd(String outputLine, String groupName, int testsInGroup, int groupId) {
             super(outputLine);
             this.groupName = groupName;
             this.testsInGroup = testsInGroup;
+            this.groupId = groupId;
         }
 
         @Override
@@ -300,6 +384,8 @@ public class GTestOutputEvent {
     public static class TestStart extends GTestOutputEvent {
         public final String groupName;
         public final String testName;
+        public final int groupId;
+        public final int testId;
 
         /**
          * GTest said that a test is started
@@ -309,9 +395,20 @@ public class GTestOutputEvent {
          * @param testName      name of the test being started
          */
         public TestStart(String outputLine, String groupName, String testName) {
+            this(outputLine, groupName, testName, TestSymbols.NONE, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}
+         * @param testId    id of the test in {@link TestSymbols}
+         * @see #TestStart(String, String, String)
+         */
+        public TestStart(String outputLine, String groupName, String testName, int groupId, int testId) {
             super(outputLine);
             this.groupName = groupName;
             this.testName = testName;
+            this.groupId = groupId;
+            this.testId = testId;
         }
 
         @Override
@@ -342,6 +439,9 @@ public class GTestOutputEvent {
     public static class TestPassed extends GTestOutputEvent {
         public final String groupName;
         public final String testName;
+        public final OptionalInt elapsedTime;
+        public final int groupId;
+        public final int testId;
 
         /**
          * GTest said that a test has finished successfully
@@ -351,9 +451,34 @@ public class GTestOutputEvent {
          * @param testName      name of the test that has passed
          */
         public TestPassed(String outputLine, String groupName, String testName) {
+            this(outputLine, groupName, testName, OptionalInt.empty());
+        }
+
+        /**
+         * GTest said that a test has finished successfully
+         *
+         * @param outputLine    raw output line
+         * @param groupName     name of the group passed test belongs to
+         * @param testName      name of the test that has passed
+         * @param elapsedTime   how long the test ran, in milliseconds; may be empty
+         *                      if elapsed time measurement is turned off
+         */
+        public TestPassed(String outputLine, String groupName, String testName, OptionalInt elapsedTime) {
+            this(outputLine, groupName, testName, elapsedTime, TestSymbols.NONE, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}
+         * @param testId    id of the test in {@link TestSymbols}
+         * @see #TestPassed(String, String, String, OptionalInt)
+         */
+        public TestPassed(String outputLine, String groupName, String testName, OptionalInt elapsedTime, int groupId, int testId) {
             super(outputLine);
             this.groupName = groupName;
             this.testName = testName;
+            this.elapsedTime = elapsedTime;
+            this.groupId = groupId;
+            this.testId = testId;
         }
 
         @Override
@@ -363,12 +488,13 @@ public class GTestOutputEvent {
             if (!super.equals(o)) return false;
             TestPassed that = (TestPassed) o;
             return Objects.equal(groupName, that.groupName) &&
-                    Objects.equal(testName, that.testName);
+                    Objects.equal(testName, that.testName) &&
+                    Objects.equal(elapsedTime, that.elapsedTime);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(super.hashCode(), groupName, testName);
+            return Objects.hashCode(super.hashCode(), groupName, testName, elapsedTime);
         }
 
         @Override
@@ -377,6 +503,7 @@ public class GTestOutputEvent {
                     "outputLine='" + outputLine + '\'' +
                     ", groupName='" + groupName + '\'' +
                     ", testName='" + testName + '\'' +
+                    ", elapsedTime=" + elapsedTime +
                     '}';
         }
     }
@@ -384,6 +511,9 @@ public class GTestOutputEvent {
     public static class TestFailed extends GTestOutputEvent {
         public final String groupName;
         public final String testName;
+        public final OptionalInt elapsedTime;
+        public final int groupId;
+        public final int testId;
 
         /**
          * GTest said that some test has finished with error
@@ -393,9 +523,34 @@ public class GTestOutputEvent {
          * @param testName      name of the test that has failed
          */
         public TestFailed(String outputLine, String groupName, String testName) {
+            this(outputLine, groupName, testName, OptionalInt.empty());
+        }
+
+        /**
+         * GTest said that some test has finished with error
+         *
+         * @param outputLine    raw output line
+         * @param groupName     name of the group failed test belongs to
+         * @param testName      name of the test that has failed
+         * @param elapsedTime   how long the test ran, in milliseconds; may be empty
+         *                      if elapsed time measurement is turned off
+         */
+        public TestFailed(String outputLine, String groupName, String testName, OptionalInt elapsedTime) {
+            this(outputLine, groupName, testName, elapsedTime, TestSymbols.NONE, TestSymbols.NONE);
+        }
+
+        /**
+         * @param groupId   id of the group in {@link TestSymbols}
+         * @param testId    id of the test in {@link TestSymbols}
+         * @see #TestFailed(String, String, String, OptionalInt)
+         */
+        public TestFailed(String outputLine, String groupName, String testName, OptionalInt elapsedTime, int groupId, int testId) {
             super(outputLine);
             this.groupName = groupName;
             this.testName = testName;
+            this.elapsedTime = elapsedTime;
+            this.groupId = groupId;
+            this.testId = testId;
         }
 
 
@@ -406,12 +561,13 @@ public class GTestOutputEvent {
             if (!super.equals(o)) return false;
             TestFailed that = (TestFailed) o;
             return Objects.equal(groupName, that.groupName) &&
-                    Objects.equal(testName, that.testName);
+                    Objects.equal(testName, that.testName) &&
+                    Objects.equal(elapsedTime, that.elapsedTime);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(super.hashCode(), groupName, testName);
+            return Objects.hashCode(super.hashCode(), groupName, testName, elapsedTime);
         }
 
         @Override
@@ -420,6 +576,7 @@ public class GTestOutputEvent {
                     "outputLine='" + outputLine + '\'' +
                     ", groupName='" + groupName + '\'' +
                     ", testName='" + testName + '\'' +
+                    ", elapsedTime=" + elapsedTime +
                     '}';
         }
     }
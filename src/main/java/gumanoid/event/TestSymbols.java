@@ -0,0 +1,95 @@
+package gumanoid.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns names of test groups and tests, giving each group and each test
+ * a compact int id when it's seen for the first time (either in enumeration
+ * or in tests output). Ids are dense and start from 0, so they can be used
+ * as array indices; test ids are unique across groups.
+ * <p/>
+ * Names returned by {@link #groupName(int)} and {@link #testName(int)} are
+ * the canonical instances, so events referring to the same test share name
+ * strings instead of keeping a copy each.
+ * <p/>
+ * Thread-safe: enumeration and output parsers intern names on their own
+ * threads, while UI resolves ids on EDT
+ */
+public class TestSymbols {
+    /**
+     * Id of the group or test which is unknown, e. g. of an event which isn't
+     * produced by a parser
+     */
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private final List<String> groupNames = new ArrayList<>();
+    private final List<Map<String, Integer>> testIdsByGroup = new ArrayList<>();
+
+    private final List<String> testNames = new ArrayList<>();
+    private int[] testGroups = new int[16];
+
+    /**
+     * @return id of the group, which is assigned if the group is seen for the first time
+     */
+    public synchronized int group(String groupName) {
+        Integer id = groupIds.get(groupName);
+        if (id == null) {
+            id = groupNames.size();
+            groupIds.put(groupName, id);
+            groupNames.add(groupName);
+            testIdsByGroup.add(new HashMap<>());
+        }
+        return id;
+    }
+
+    /**
+     * @return id of the test, which is assigned if the test is seen for the first time
+     */
+    public synchronized int test(int groupId, String testName) {
+        Map<String, Integer> testIds = testIdsByGroup.get(groupId);
+
+        Integer id = testIds.get(testName);
+        if (id == null) {
+            id = testNames.size();
+            testIds.put(testName, id);
+            testNames.add(testName);
+
+            if (id == testGroups.length) {
+                testGroups = Arrays.copyOf(testGroups, id * 2);
+            }
+            testGroups[id] = groupId;
+        }
+        return id;
+    }
+
+    public synchronized String groupName(int groupId) {
+        return groupNames.get(groupId);
+    }
+
+    public synchronized String testName(int testId) {
+        return testNames.get(testId);
+    }
+
+    /**
+     * @return id of the group the test belongs to
+     */
+    public synchronized int groupOf(int testId) {
+        if (testId < 0 || testId >= testNames.size()) {
+            throw new IndexOutOfBoundsException("Unknown test id: " + testId);
+        }
+        return testGroups[testId];
+    }
+
+    public synchronized int groupCount() {
+        return groupNames.size();
+    }
+
+    public synchronized int testCount() {
+        return testNames.size();
+    }
+}
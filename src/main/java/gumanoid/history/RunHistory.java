@@ -0,0 +1,614 @@
+package gumanoid.history;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingInputStream;
+import gumanoid.runner.StoreFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Results of tests of one executable, kept on disk between sessions.
+ * <p/>
+ * File is append-only: a run appends a record per test, and a name record
+ * for each test which is seen for the first time, so writing a run costs
+ * as much as the run's own results, no matter how long the history is.
+ * If the application dies while writing, the half-written record is cut
+ * off when the file is read next time.
+ * <p/>
+ * All of the file is read when the history is first used, into per-test
+ * ring buffers which keep up to {@link #KEPT_RESULTS_PER_TEST} latest
+ * results of each test, so reading latest results of a test doesn't depend
+ * on the size of the history, and comparing tests with their baselines only
+ * depends on the number of tests. Buffers grow with the results, so tests
+ * which ran a few times take little memory. When the file holds many more
+ * results than are kept, it's compacted: rewritten with kept results only.
+ * <p/>
+ * Appending and compaction hold a lock on a file next to the history, so
+ * several applications may share it; if the history was written by another
+ * one since it was read, it's read anew first.
+ * <p/>
+ * Thread-safe
+ */
+public class RunHistory {
+    /**
+     * Older results of a test are dropped on compaction
+     */
+    public static final int KEPT_RESULTS_PER_TEST = 100;
+
+    /**
+     * Number of previous durations of a test which make its baseline
+     */
+    public static final int BASELINE_WINDOW = 20;
+
+    private static final int MAGIC = 0x47484953; //"GHIS"
+    private static final int VERSION = 1;
+
+    private static final byte NAME_RECORD = 1;
+    private static final byte RESULT_RECORD = 2;
+
+    /**
+     * File is compacted when it holds this many times more results than
+     * are kept, but not before it holds {@link #MIN_RESULTS_TO_COMPACT}
+     */
+    private static final int COMPACTION_RATIO = 2;
+    private static final int MIN_RESULTS_TO_COMPACT = 10_000;
+
+    /**
+     * File locks are held by the whole JVM, and locking a file twice in one
+     * JVM fails rather than waits, so histories of one JVM take turns
+     */
+    private static final Object FILE_LOCK = new Object();
+
+    public enum Status {
+        Passed, Failed
+    }
+
+    public static class TestResult {
+        /**
+         * Full test name, e. g. "SomeGroup.SomeTest"
+         */
+        public final String test;
+        public final Status status;
+        /**
+         * As reported by GTest, or -1 if it wasn't reported
+         */
+        public final int durationMs;
+        /**
+         * Exit code of the run which the test was part of
+         */
+        public final int exitCode;
+        /**
+         * {@link System#currentTimeMillis()} when the run finished
+         */
+        public final long timestamp;
+
+        public TestResult(String test, Status status, int durationMs, int exitCode, long timestamp) {
+            this.test = test;
+            this.status = status;
+            this.durationMs = durationMs;
+            this.exitCode = exitCode;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TestResult that = (TestResult) o;
+            return durationMs == that.durationMs &&
+                    exitCode == that.exitCode &&
+                    timestamp == that.timestamp &&
+                    Objects.equal(test, that.test) &&
+                    status == that.status;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(test, status, durationMs, exitCode, timestamp);
+        }
+
+        @Override
+        public String toString() {
+            return test + ": " + status + " in " + durationMs + " ms, exit code " + exitCode + " at " + timestamp;
+        }
+    }
+
+    /**
+     * Typical duration of a test, and how much it varies from run to run
+     */
+    public static class Baseline {
+        public final int medianMs;
+        /**
+         * Median absolute deviation of durations from {@link #medianMs}
+         */
+        public final int madMs;
+        /**
+         * Number of runs the baseline is made of
+         */
+        public final int sampleCount;
+
+        public Baseline(int medianMs, int madMs, int sampleCount) {
+            this.medianMs = medianMs;
+            this.madMs = madMs;
+            this.sampleCount = sampleCount;
+        }
+
+        /**
+         * @param durations     first <code>count</code> elements are used,
+         *                      and are reordered
+         */
+        static Baseline of(int[] durations, int count) {
+            Arrays.sort(durations, 0, count);
+            int median = durations[count / 2];
+
+            for (int i = 0; i < count; ++i) {
+                durations[i] = Math.abs(durations[i] - median);
+            }
+            Arrays.sort(durations, 0, count);
+            int mad = durations[count / 2];
+
+            return new Baseline(median, mad, count);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Baseline that = (Baseline) o;
+            return medianMs == that.medianMs &&
+                    madMs == that.madMs &&
+                    sampleCount == that.sampleCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(medianMs, madMs, sampleCount);
+        }
+
+        @Override
+        public String toString() {
+            return medianMs + " ms, MAD " + madMs + " ms, of " + sampleCount + " run(s)";
+        }
+    }
+
+    private final File file;
+    private final File lockFile;
+    private final Map<String, Integer> testIds = new HashMap<>();
+    private final List<TestResults> results = new ArrayList<>();
+    private int resultsInFile;
+    private boolean isLoaded;
+    /**
+     * Length of the file when it was last read or written by this history
+     */
+    private long knownLength;
+
+    private RunHistory(File file) {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+    }
+
+    /**
+     * Opens history of the executable's tests; the history is empty if it
+     * wasn't written before, or can't be read. The file is read when the
+     * history is first used, not here
+     *
+     * @param storeDir  directory where files of all executables are kept
+     */
+    public static RunHistory forExecutable(File storeDir, String testExePath) {
+        return new RunHistory(StoreFiles.storeFile(storeDir, testExePath, ".history"));
+    }
+
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            reload();
+            isLoaded = true;
+        }
+    }
+
+    private void reload() {
+        testIds.clear();
+        results.clear();
+        resultsInFile = 0;
+        knownLength = 0;
+        try {
+            load();
+        } catch (IOException e) {
+            e.printStackTrace(); //history is started anew, old file is kept aside
+            testIds.clear();
+            results.clear();
+            resultsInFile = 0;
+            knownLength = 0;
+            file.renameTo(new File(file.getPath() + ".corrupted"));
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        long validLength = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a history file, or of unknown version: " + file);
+            }
+            validLength = counter.getCount();
+
+            while (true) {
+                byte recordType = in.readByte();
+                if (recordType == NAME_RECORD) {
+                    int testId = in.readInt();
+                    String test = in.readUTF();
+                    if (testId != results.size()) {
+                        throw new IOException("Unexpected test id " + testId + " of " + test + " in " + file);
+                    }
+                    testIds.put(test, testId);
+                    results.add(new TestResults(test));
+                } else if (recordType == RESULT_RECORD) {
+                    int testId = in.readInt();
+                    byte status = in.readByte();
+                    int durationMs = in.readInt();
+                    int exitCode = in.readInt();
+                    long timestamp = in.readLong();
+                    if (testId < 0 || testId >= results.size() || status < 0 || status >= Status.values().length) {
+                        throw new IOException("Corrupted result record at " + validLength + " in " + file);
+                    }
+                    results.get(testId).add(status, durationMs, exitCode, timestamp);
+                    ++resultsInFile;
+                } else {
+                    throw new IOException("Unknown record type " + recordType + " at " + validLength + " in " + file);
+                }
+                validLength = counter.getCount();
+            }
+        } catch (EOFException e) {
+            //end of file, possibly in the middle of a record which wasn't
+            //written completely
+        }
+
+        if (validLength < file.length()) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(validLength);
+            }
+        }
+        knownLength = validLength;
+    }
+
+    /**
+     * Runs the action holding the lock file, after reading the history anew
+     * if someone else has written it since it was read
+     */
+    private void underFileLock(IOAction action) throws IOException {
+        ensureLoaded();
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+
+        synchronized (FILE_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                if (file.length() != knownLength) {
+                    reload();
+                }
+                action.run();
+            }
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Appends results of a run to the history. Results are kept in memory
+     * only once they are written; if they can't be, the file is cut back
+     * to where it was, so it still matches the history in memory
+     */
+    public synchronized void append(Collection<TestResult> runResults) throws IOException {
+        underFileLock(() -> appendLocked(runResults));
+    }
+
+    private void appendLocked(Collection<TestResult> runResults) throws IOException {
+        boolean isNewFile = !file.exists() || file.length() == 0;
+        long lengthBefore = isNewFile ? 0 : file.length();
+        Map<String, Integer> newTestIds = new LinkedHashMap<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            if (isNewFile) {
+                writeHeader(out);
+            }
+
+            for (TestResult result : runResults) {
+                Integer testId = testIds.get(result.test);
+                if (testId == null) {
+                    testId = newTestIds.get(result.test);
+                }
+                if (testId == null) {
+                    testId = results.size() + newTestIds.size();
+                    newTestIds.put(result.test, testId);
+                    writeName(out, testId, result.test);
+                }
+
+                writeResult(out, testId, (byte) result.status.ordinal(), result.durationMs, result.exitCode, result.timestamp);
+            }
+        } catch (IOException e) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(lengthBefore);
+            } catch (IOException truncationError) {
+                e.addSuppressed(truncationError); //file may keep some of the results then
+            }
+            throw e;
+        }
+
+        newTestIds.forEach((test, testId) -> {
+            testIds.put(test, testId);
+            results.add(new TestResults(test));
+        });
+        for (TestResult result : runResults) {
+            byte status = (byte) result.status.ordinal();
+            results.get(testIds.get(result.test)).add(status, result.durationMs, result.exitCode, result.timestamp);
+            ++resultsInFile;
+        }
+        knownLength = file.length();
+
+        if (resultsInFile >= MIN_RESULTS_TO_COMPACT && resultsInFile > COMPACTION_RATIO * keptResultCount()) {
+            compactLocked();
+        }
+    }
+
+    /**
+     * Rewrites the file with kept results only
+     */
+    public synchronized void compact() throws IOException {
+        underFileLock(this::compactLocked);
+    }
+
+    private void compactLocked() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            writeHeader(out);
+            for (int testId = 0; testId < results.size(); ++testId) {
+                TestResults testResults = results.get(testId);
+                writeName(out, testId, testResults.test);
+                for (int i = testResults.size() - 1; i >= 0; --i) {
+                    writeResult(out, testId, testResults.status(i), testResults.durationMs(i), testResults.exitCode(i), testResults.timestamp(i));
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        resultsInFile = keptResultCount();
+        knownLength = file.length();
+    }
+
+    private int keptResultCount() {
+        return results.stream().mapToInt(TestResults::size).sum();
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private static void writeName(DataOutputStream out, int testId, String test) throws IOException {
+        out.writeByte(NAME_RECORD);
+        out.writeInt(testId);
+        out.writeUTF(test);
+    }
+
+    private static void writeResult(DataOutputStream out, int testId, byte status, int durationMs, int exitCode, long timestamp) throws IOException {
+        out.writeByte(RESULT_RECORD);
+        out.writeInt(testId);
+        out.writeByte(status);
+        out.writeInt(durationMs);
+        out.writeInt(exitCode);
+        out.writeLong(timestamp);
+    }
+
+    /**
+     * @return up to <code>count</code> latest results of the test, the latest first
+     */
+    public synchronized List<TestResult> lastResults(String test, int count) {
+        Preconditions.checkArgument(count >= 0);
+        ensureLoaded();
+
+        Integer testId = testIds.get(test);
+        if (testId == null) {
+            return new ArrayList<>();
+        }
+
+        TestResults testResults = results.get(testId);
+        List<TestResult> result = new ArrayList<>(Math.min(count, testResults.size()));
+        for (int i = 0; i < testResults.size() && i < count; ++i) {
+            result.add(testResults.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Baseline is the median duration of up to {@link #BASELINE_WINDOW}
+     * passed runs of a test before the latest one
+     *
+     * @return tests which passed the latest time, and took more than
+     * <code>factor</code> times their baseline
+     */
+    public synchronized List<String> slowerThanBaseline(double factor) {
+        ensureLoaded();
+        List<String> result = new ArrayList<>();
+        for (TestResults testResults : results) {
+            if (testResults.size() < 2 || testResults.status(0) != Status.Passed.ordinal() || testResults.durationMs(0) < 0) {
+                continue;
+            }
+
+            Baseline baseline = testResults.baseline(1);
+            if (baseline != null && testResults.durationMs(0) > factor * baseline.medianMs) {
+                result.add(testResults.test);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return baseline of up to {@link #BASELINE_WINDOW} latest passed runs
+     * of the test, if it has passed before
+     */
+    public synchronized Optional<Baseline> baseline(String test) {
+        ensureLoaded();
+        Integer testId = testIds.get(test);
+        return testId != null ? Optional.ofNullable(results.get(testId).baseline(0)) : Optional.empty();
+    }
+
+    /**
+     * @return median duration of up to {@link #BASELINE_WINDOW} latest passed
+     * runs of each test which has passed before, see {@link #baseline(String)}
+     */
+    public synchronized Map<String, Integer> baselineDurations() {
+        ensureLoaded();
+        Map<String, Integer> result = new HashMap<>();
+        for (TestResults testResults : results) {
+            Baseline baseline = testResults.baseline(0);
+            if (baseline != null) {
+                result.put(testResults.test, baseline.medianMs);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of results which are kept, all tests together
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return keptResultCount();
+    }
+
+    /**
+     * Latest results of one test, in a ring buffer; result 0 is the latest.
+     * Buffer starts small and doubles while it's full, up to
+     * {@link #KEPT_RESULTS_PER_TEST}
+     */
+    private static class TestResults {
+        private static final int INITIAL_CAPACITY = 4;
+
+        final String test;
+        byte[] statuses = new byte[INITIAL_CAPACITY];
+        int[] durations = new int[INITIAL_CAPACITY];
+        int[] exitCodes = new int[INITIAL_CAPACITY];
+        long[] timestamps = new long[INITIAL_CAPACITY];
+        int next;
+        int size;
+        final Baseline[] baselines = new Baseline[2];
+        final boolean[] isBaselineComputed = new boolean[2];
+
+        TestResults(String test) {
+            this.test = test;
+        }
+
+        void add(byte status, int durationMs, int exitCode, long timestamp) {
+            if (size == capacity() && size < KEPT_RESULTS_PER_TEST) {
+                grow();
+            }
+
+            statuses[next] = status;
+            durations[next] = durationMs;
+            exitCodes[next] = exitCode;
+            timestamps[next] = timestamp;
+            next = (next + 1) % capacity();
+            size = Math.min(size + 1, capacity());
+            Arrays.fill(isBaselineComputed, false);
+        }
+
+        /**
+         * Buffer is full only when it has wrapped, so the oldest result is
+         * at {@link #next}; results are moved to the start, in order
+         */
+        private void grow() {
+            int capacity = Math.min(2 * capacity(), KEPT_RESULTS_PER_TEST);
+            statuses = unwrap(statuses, new byte[capacity]);
+            durations = unwrap(durations, new int[capacity]);
+            exitCodes = unwrap(exitCodes, new int[capacity]);
+            timestamps = unwrap(timestamps, new long[capacity]);
+            next = size;
+        }
+
+        private <A> A unwrap(A from, A to) {
+            System.arraycopy(from, next, to, 0, size - next);
+            System.arraycopy(from, 0, to, size - next, next);
+            return to;
+        }
+
+        private int capacity() {
+            return statuses.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int index(int i) {
+            return (next - 1 - i + capacity()) % capacity();
+        }
+
+        byte status(int i) {
+            return statuses[index(i)];
+        }
+
+        int durationMs(int i) {
+            return durations[index(i)];
+        }
+
+        int exitCode(int i) {
+            return exitCodes[index(i)];
+        }
+
+        long timestamp(int i) {
+            return timestamps[index(i)];
+        }
+
+        TestResult get(int i) {
+            return new TestResult(test, Status.values()[status(i)], durationMs(i), exitCode(i), timestamp(i));
+        }
+
+        /**
+         * @param skip  number of latest results which are not part of the
+         *              baseline, 0 or 1
+         * @return baseline of passed runs, or null if there were none
+         */
+        Baseline baseline(int skip) {
+            if (!isBaselineComputed[skip]) {
+                int[] previous = new int[BASELINE_WINDOW];
+                int count = 0;
+                for (int i = skip; i < size && count < BASELINE_WINDOW; ++i) {
+                    if (status(i) == Status.Passed.ordinal() && durationMs(i) >= 0) {
+                        previous[count++] = durationMs(i);
+                    }
+                }
+
+                baselines[skip] = count > 0 ? Baseline.of(previous, count) : null;
+                isBaselineComputed[skip] = true;
+            }
+            return baselines[skip];
+        }
+    }
+}
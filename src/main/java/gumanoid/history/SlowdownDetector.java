@@ -0,0 +1,150 @@
+package gumanoid.history;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import gumanoid.history.RunHistory.Baseline;
+
+import java.util.Optional;
+
+/**
+ * Tells whether a test took much longer than it usually does, compared with
+ * its {@link Baseline} in {@link RunHistory}. Duration is a slowdown if it
+ * exceeds the median by both a number of deviations and a ratio, and by at
+ * least a few milliseconds: deviation alone would flag each millisecond of
+ * noise of a very stable test, and ratio alone would flag tests which just
+ * vary a lot.
+ * <p/>
+ * Thread-safe
+ */
+public class SlowdownDetector {
+    /**
+     * Scales median absolute deviation to standard deviation of normally
+     * distributed durations
+     */
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    public static class Thresholds {
+        public static final Thresholds DEFAULT = new Thresholds(3.0, 1.5, 10, 3);
+
+        /**
+         * Min number of (scaled) median absolute deviations above the median
+         */
+        public final double deviations;
+        /**
+         * Min ratio of the duration to the median
+         */
+        public final double ratio;
+        /**
+         * Min difference between the duration and the median
+         */
+        public final int minDeltaMs;
+        /**
+         * Min number of previous runs; tests which ran fewer times are not checked
+         */
+        public final int minSamples;
+
+        public Thresholds(double deviations, double ratio, int minDeltaMs, int minSamples) {
+            Preconditions.checkArgument(deviations >= 0);
+            Preconditions.checkArgument(ratio >= 1);
+            Preconditions.checkArgument(minDeltaMs >= 0);
+            Preconditions.checkArgument(minSamples > 0);
+
+            this.deviations = deviations;
+            this.ratio = ratio;
+            this.minDeltaMs = minDeltaMs;
+            this.minSamples = minSamples;
+        }
+
+        /**
+         * Default thresholds, overridden by <code>gumanoid.slowdown.deviations</code>,
+         * <code>gumanoid.slowdown.ratio</code>, <code>gumanoid.slowdown.minDeltaMs</code>
+         * and <code>gumanoid.slowdown.minSamples</code> system properties
+         */
+        public static Thresholds fromSystemProperties() {
+            return new Thresholds(
+                    doubleProperty("gumanoid.slowdown.deviations", DEFAULT.deviations),
+                    doubleProperty("gumanoid.slowdown.ratio", DEFAULT.ratio),
+                    Integer.getInteger("gumanoid.slowdown.minDeltaMs", DEFAULT.minDeltaMs),
+                    Integer.getInteger("gumanoid.slowdown.minSamples", DEFAULT.minSamples));
+        }
+
+        private static double doubleProperty(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        }
+    }
+
+    public static class Slowdown {
+        /**
+         * Full test name, e. g. "SomeGroup.SomeTest"
+         */
+        public final String test;
+        /**
+         * Id of the test in {@link gumanoid.event.TestSymbols} of the run
+         */
+        public final int testId;
+        public final int durationMs;
+        public final Baseline baseline;
+
+        public Slowdown(String test, int testId, int durationMs, Baseline baseline) {
+            this.test = test;
+            this.testId = testId;
+            this.durationMs = durationMs;
+            this.baseline = baseline;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Slowdown that = (Slowdown) o;
+            return durationMs == that.durationMs &&
+                    Objects.equal(test, that.test) &&
+                    Objects.equal(baseline, that.baseline);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(test, durationMs, baseline);
+        }
+
+        @Override
+        public String toString() {
+            return test + " took " + durationMs + " ms, usually " + baseline;
+        }
+    }
+
+    private final RunHistory history;
+    private volatile Thresholds thresholds;
+
+    public SlowdownDetector(RunHistory history, Thresholds thresholds) {
+        this.history = history;
+        this.thresholds = thresholds;
+    }
+
+    public Thresholds getThresholds() {
+        return thresholds;
+    }
+
+    public void setThresholds(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * @param durationMs    duration of the test in the current run, which
+     *                      isn't in the history yet
+     */
+    public Optional<Slowdown> check(String test, int testId, int durationMs) {
+        Thresholds t = thresholds;
+        return history.baseline(test)
+                .filter(b -> isSlowdown(durationMs, b, t))
+                .map(b -> new Slowdown(test, testId, durationMs, b));
+    }
+
+    static boolean isSlowdown(int durationMs, Baseline baseline, Thresholds t) {
+        return baseline.sampleCount >= t.minSamples
+                && durationMs - baseline.medianMs >= t.minDeltaMs
+                && durationMs >= t.ratio * baseline.medianMs
+                && durationMs > baseline.medianMs + t.deviations * MAD_TO_SIGMA * baseline.madMs;
+    }
+}
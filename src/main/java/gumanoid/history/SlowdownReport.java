@@ -0,0 +1,53 @@
+package gumanoid.history;
+
+import gumanoid.history.SlowdownDetector.Slowdown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Slowdowns of a run, as a CSV file, for scripts and CI jobs: a line per
+ * slow test, with columns
+ * <code>test,duration_ms,median_ms,mad_ms,samples</code>,
+ * after the header line with these names
+ */
+public class SlowdownReport {
+    public static final String HEADER = "test,duration_ms,median_ms,mad_ms,samples";
+
+    private SlowdownReport() {
+    }
+
+    /**
+     * Replaces the file atomically, so readers never see a half-written report
+     */
+    public static void write(File file, List<Slowdown> slowdowns) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(dir.toPath());
+
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (Writer out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (Slowdown s : slowdowns) {
+                out.write(quoted(s.test) + "," + s.durationMs + "," + s.baseline.medianMs + ","
+                        + s.baseline.madMs + "," + s.baseline.sampleCount + "\n");
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Names of parameterized tests may contain anything GTest's printer
+     * makes of a parameter
+     */
+    private static String quoted(String field) {
+        return field.contains(",") || field.contains("\"") || field.contains("\n")
+                ? "\"" + field.replace("\"", "\"\"") + "\""
+                : field;
+    }
+}
@@ -0,0 +1,125 @@
+package gumanoid.history;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Tells how long a test may run before it's considered hung. A test which
+ * has passed enough times gets a timeout of its 99th percentile duration in
+ * {@link RunHistory} times a factor, other tests get the default timeout;
+ * both are off unless configured.
+ * <p/>
+ * Thread-safe
+ */
+public class TestTimeouts {
+    private static final double PERCENTILE = 0.99;
+
+    public static class Settings {
+        public static final Settings DEFAULT = new Settings(0, 0, 1000, 5);
+
+        /**
+         * Timeout of tests without enough history, or 0 if they are not timed out
+         */
+        public final int defaultMs;
+        /**
+         * Multiplier of the 99th percentile duration, or 0 if history isn't used
+         */
+        public final double factor;
+        /**
+         * Min timeout derived from history, so very fast tests aren't
+         * timed out by a hiccup
+         */
+        public final int minMs;
+        /**
+         * Min number of passed runs for the timeout to be derived from history
+         */
+        public final int minSamples;
+
+        public Settings(int defaultMs, double factor, int minMs, int minSamples) {
+            Preconditions.checkArgument(defaultMs >= 0);
+            Preconditions.checkArgument(factor == 0 || factor >= 1);
+            Preconditions.checkArgument(minMs >= 0);
+            Preconditions.checkArgument(minSamples > 0);
+
+            this.defaultMs = defaultMs;
+            this.factor = factor;
+            this.minMs = minMs;
+            this.minSamples = minSamples;
+        }
+
+        public boolean isEnabled() {
+            return defaultMs > 0 || factor > 0;
+        }
+
+        /**
+         * Default settings, overridden by <code>gumanoid.timeout.defaultMs</code>,
+         * <code>gumanoid.timeout.factor</code>, <code>gumanoid.timeout.minMs</code>
+         * and <code>gumanoid.timeout.minSamples</code> system properties
+         */
+        public static Settings fromSystemProperties() {
+            String factor = System.getProperty("gumanoid.timeout.factor");
+            return new Settings(
+                    Integer.getInteger("gumanoid.timeout.defaultMs", DEFAULT.defaultMs),
+                    factor != null ? Double.parseDouble(factor) : DEFAULT.factor,
+                    Integer.getInteger("gumanoid.timeout.minMs", DEFAULT.minMs),
+                    Integer.getInteger("gumanoid.timeout.minSamples", DEFAULT.minSamples));
+        }
+    }
+
+    private final RunHistory history;
+    private volatile Settings settings;
+
+    public TestTimeouts(RunHistory history, Settings settings) {
+        this.history = history;
+        this.settings = settings;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * @param test  full test name, e. g. "SomeGroup.SomeTest"
+     * @return timeout of the test, or empty if it may run as long as it takes
+     */
+    public OptionalInt timeoutFor(String test) {
+        Settings s = settings;
+        if (s.factor > 0) {
+            int[] durations = passedDurations(history.lastResults(test, RunHistory.KEPT_RESULTS_PER_TEST));
+            if (durations.length >= s.minSamples) {
+                Arrays.sort(durations);
+                return OptionalInt.of(Math.max(s.minMs, (int) Math.ceil(s.factor * percentile(durations, PERCENTILE))));
+            }
+        }
+
+        return s.defaultMs > 0 ? OptionalInt.of(s.defaultMs) : OptionalInt.empty();
+    }
+
+    private static int[] passedDurations(List<RunHistory.TestResult> results) {
+        return results.stream()
+                .filter(r -> r.status == RunHistory.Status.Passed && r.durationMs >= 0)
+                .mapToInt(r -> r.durationMs)
+                .toArray();
+    }
+
+    /**
+     * Nearest-rank percentile
+     *
+     * @param sorted    not empty, sorted in ascending order
+     */
+    static int percentile(int[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
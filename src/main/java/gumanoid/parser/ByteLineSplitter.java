@@ -0,0 +1,115 @@
+package gumanoid.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a sequence of raw byte chunks into lines, the same way as
+ * {@link java.io.BufferedReader#readLine()} does: a line is terminated by
+ * '\n', '\r' or "\r\n", terminators are not included, and the last line
+ * is reported only if it's not empty.
+ * <p/>
+ * Lines which lie entirely within one chunk are passed to the consumer
+ * straight from the chunk's backing array; only lines split across chunk
+ * boundaries are copied. Works for ASCII-compatible encodings only
+ */
+class ByteLineSplitter {
+    @FunctionalInterface
+    interface LineConsumer {
+        /**
+         * @param bytes     buffer holding the line; valid only during the call
+         * @param offset    index of the first byte of the line
+         * @param length    line length in bytes, not including line terminator
+         */
+        void line(byte[] bytes, int offset, int length);
+    }
+
+    private final LineConsumer consumer;
+
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+    private boolean skipLineFeed;
+    private byte[] scratch = new byte[0];
+
+    ByteLineSplitter(LineConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Scans next chunk; chunk's position is moved to its limit
+     */
+    void feed(ByteBuffer chunk) {
+        byte[] bytes;
+        int from;
+        int to;
+
+        if (chunk.hasArray()) {
+            bytes = chunk.array();
+            from = chunk.arrayOffset() + chunk.position();
+            to = chunk.arrayOffset() + chunk.limit();
+        } else {
+            if (scratch.length < chunk.remaining()) {
+                scratch = new byte[chunk.remaining()];
+            }
+            bytes = scratch;
+            from = 0;
+            to = chunk.remaining();
+            chunk.duplicate().get(scratch, 0, to);
+        }
+        chunk.position(chunk.limit());
+
+        int lineStart = from;
+        for (int i = from; i < to; ++i) {
+            byte b = bytes[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+
+            if (b == '\n' && skipLineFeed && i == lineStart && pendingLength == 0) {
+                //second half of "\r\n"
+                skipLineFeed = false;
+                lineStart = i + 1;
+                continue;
+            }
+
+            emit(bytes, lineStart, i);
+            skipLineFeed = b == '\r';
+            lineStart = i + 1;
+        }
+
+        if (lineStart < to) {
+            skipLineFeed = false;
+            append(bytes, lineStart, to);
+        }
+    }
+
+    /**
+     * Reports the last line, if it's not terminated and not empty
+     */
+    void finish() {
+        if (pendingLength > 0) {
+            consumer.line(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+        skipLineFeed = false;
+    }
+
+    private void emit(byte[] bytes, int from, int to) {
+        if (pendingLength == 0) {
+            consumer.line(bytes, from, to - from);
+        } else {
+            append(bytes, from, to);
+            consumer.line(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+    }
+
+    private void append(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(bytes, from, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
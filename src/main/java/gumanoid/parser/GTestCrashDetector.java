@@ -0,0 +1,104 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.TestFailed;
+import gumanoid.event.GTestOutputEvent.TestPassed;
+import gumanoid.event.GTestOutputEvent.TestStart;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Tells which test crashed the executable: if output of the executable ends
+ * while a test is running, the test is failed with a made-up
+ * {@link TestFailed} event, which tells how the executable exited. It's
+ * emitted after the last event of the output, when exit code is known, so
+ * the crashed test is shown and counted as any other failed test
+ */
+public class GTestCrashDetector {
+    /**
+     * POSIX shells and Java report the process killed by a signal as
+     * exiting with 128 + signal number
+     */
+    private static final int SIGNAL_EXIT_BASE = 128;
+    private static final Map<Integer, String> SIGNAL_NAMES = ImmutableMap.<Integer, String>builder()
+            .put(4, "SIGILL")
+            .put(6, "SIGABRT")
+            .put(7, "SIGBUS")
+            .put(8, "SIGFPE")
+            .put(9, "SIGKILL")
+            .put(11, "SIGSEGV")
+            .put(15, "SIGTERM")
+            .build();
+
+    private GTestCrashDetector() {
+    }
+
+    /**
+     * @param events    events of one run of the executable
+     * @param exitCode  exit code of the executable; if it completes without
+     *                  emitting (e. g. the run is cancelled), no test is
+     *                  considered crashed
+     * @return the same events, followed by failure of the test which was
+     * running when output ended, if any
+     */
+    public static Observable<GTestOutputEvent> markCrashedTest(Observable<GTestOutputEvent> events, Observable<Integer> exitCode) {
+        return Observable.create(subscriber -> {
+            TestStart[] runningTest = {null};
+
+            subscriber.add(events.subscribe(new Subscriber<GTestOutputEvent>() {
+                @Override
+                public void onCompleted() {
+                    TestStart crashed = runningTest[0];
+                    if (crashed == null) {
+                        subscriber.onCompleted();
+                        return;
+                    }
+
+                    subscriber.add(exitCode.take(1).subscribe(
+                            code -> subscriber.onNext(new TestFailed(
+                                    GTestOutputLines.testCrashed(crashed.groupName, crashed.testName, describeExit(code)),
+                                    crashed.groupName, crashed.testName, OptionalInt.empty(), crashed.groupId, crashed.testId)),
+                            subscriber::onError,
+                            subscriber::onCompleted));
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+
+                @Override
+                public void onNext(GTestOutputEvent e) {
+                    if (e instanceof TestStart) {
+                        runningTest[0] = (TestStart) e;
+                    } else if (e instanceof TestPassed || e instanceof TestFailed) {
+                        runningTest[0] = null;
+                    }
+                    subscriber.onNext(e);
+                }
+            }));
+        });
+    }
+
+    /**
+     * @return e. g. "exit code 134, signal 6 (SIGABRT)", or "exit code
+     * 0xC0000005" for Windows' exception codes
+     */
+    public static String describeExit(int exitCode) {
+        if (exitCode < 0) {
+            return "exit code 0x" + Integer.toHexString(exitCode).toUpperCase();
+        }
+
+        int signal = exitCode - SIGNAL_EXIT_BASE;
+        if (signal > 0 && signal < 64) {
+            String name = SIGNAL_NAMES.get(signal);
+            return "exit code " + exitCode + ", signal " + signal + (name != null ? " (" + name + ")" : "");
+        }
+
+        return "exit code " + exitCode;
+    }
+}
@@ -6,11 +6,12 @@ package gumanoid.parser;
 import gumanoid.event.GTestListEvent;
 import gumanoid.event.GTestListEvent.GroupAnnounce;
 import gumanoid.event.GTestListEvent.TestAnnounce;
+import gumanoid.event.TestSymbols;
 import rx.Observable;
 import rx.Subscriber;
 
-import static gumanoid.parser.ParserCore.firstOf;
-import static gumanoid.parser.ParserCore.ifMatches;
+import static gumanoid.parser.ParserCore.firstMatchOf;
+import static gumanoid.parser.ParserCore.matching;
 
 /**
  * Parses test enumeration given by GTest executable when --gtest_list_tests flag is passed in
@@ -18,15 +19,29 @@ import static gumanoid.parser.ParserCore.ifMatches;
  * @author Gumanoid (2016-01-25 19:24)
  */
 public class GTestListParser implements Observable.Operator<GTestListEvent, String> {
+    private final TestSymbols symbols;
+
+    public GTestListParser() {
+        this(new TestSymbols());
+    }
+
+    /**
+     * @param symbols   symbol table to intern group and test names with
+     */
+    public GTestListParser(TestSymbols symbols) {
+        this.symbols = symbols;
+    }
+
     @Override
     public Subscriber<? super String> call(Subscriber<? super GTestListEvent> subscriber) {
         return new Subscriber<String>() {
-            private final ParserCore.LineParser parser = firstOf(
-                    ifMatches("^(.*)\\.$").then(this::group),
-                    ifMatches("^  (.*)$").then(this::test)
+            private final ParserCore.MatchParser parser = firstMatchOf(
+                    matching("^(.*)\\.$").then(this::group),
+                    matching("^  (.*)$").then(this::test)
             );
 
             private String currentGroup;
+            private int currentGroupId = TestSymbols.NONE;
 
             @Override
             public void onCompleted() {
@@ -43,13 +58,20 @@ public class GTestListParser implements Observable.Operator<GTestListEvent, Stri
                 parser.parse(line);
             }
 
-            private void group(String[] args) {
-                currentGroup = args[1];
-                subscriber.onNext(new GroupAnnounce(currentGroup));
+            private void group(ParserCore.Match match) {
+                currentGroupId = symbols.group(match.string(1));
+                currentGroup = symbols.groupName(currentGroupId);
+                subscriber.onNext(new GroupAnnounce(currentGroup, currentGroupId));
             }
 
-            private void test(String[] args) {
-                subscriber.onNext(new TestAnnounce(currentGroup, args[1]));
+            private void test(ParserCore.Match match) {
+                if (currentGroupId == TestSymbols.NONE) {
+                    subscriber.onNext(new TestAnnounce(null, match.string(1)));
+                    return;
+                }
+
+                int testId = symbols.test(currentGroupId, match.string(1));
+                subscriber.onNext(new TestAnnounce(currentGroup, symbols.testName(testId), currentGroupId, testId));
             }
         };
     }
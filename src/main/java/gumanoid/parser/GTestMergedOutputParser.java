@@ -0,0 +1,109 @@
+package gumanoid.parser;
+
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
+import gumanoid.runner.OutputLine;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.Optional;
+
+/**
+ * Parses stdout and stderr lines merged in order they are read, see
+ * {@link gumanoid.runner.ProcessModel#getTaggedOutput()}. Stdout lines are
+ * parsed by the given parser; stderr lines become {@link ErrorOutput} of
+ * the test which that parser has last seen started, or of its group or the
+ * suite if no test is running, so they are shown next to the output the
+ * test printed to stdout
+ */
+public class GTestMergedOutputParser implements Observable.Operator<GTestOutputEvent, OutputLine> {
+    private final Observable.Operator<GTestOutputEvent, String> stdoutParser;
+
+    public GTestMergedOutputParser(Observable.Operator<GTestOutputEvent, String> stdoutParser) {
+        this.stdoutParser = stdoutParser;
+    }
+
+    @Override
+    public Subscriber<? super OutputLine> call(Subscriber<? super GTestOutputEvent> subscriber) {
+        Tracker tracker = new Tracker(subscriber);
+        Subscriber<? super String> stdout = stdoutParser.call(tracker);
+
+        return new Subscriber<OutputLine>(subscriber) {
+            @Override
+            public void onCompleted() {
+                stdout.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                stdout.onError(e);
+            }
+
+            @Override
+            public void onNext(OutputLine line) {
+                if (line.stream == OutputLine.Stream.Stdout) {
+                    stdout.onNext(line.text);
+                } else {
+                    subscriber.onNext(tracker.errorOutput(line.text));
+                }
+            }
+        };
+    }
+
+    /**
+     * Passes parsed events on, keeping track of the running test
+     */
+    private static class Tracker extends Subscriber<GTestOutputEvent> {
+        private final Subscriber<? super GTestOutputEvent> subscriber;
+
+        private Optional<String> groupName = Optional.empty();
+        private int groupId = TestSymbols.NONE;
+        private Optional<String> testName = Optional.empty();
+        private int testId = TestSymbols.NONE;
+
+        Tracker(Subscriber<? super GTestOutputEvent> subscriber) {
+            super(subscriber);
+            this.subscriber = subscriber;
+        }
+
+        ErrorOutput errorOutput(String line) {
+            return new ErrorOutput(line, groupName, testName, groupId, testId);
+        }
+
+        @Override
+        public void onCompleted() {
+            subscriber.onCompleted();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            subscriber.onError(e);
+        }
+
+        @Override
+        public void onNext(GTestOutputEvent e) {
+            if (e instanceof GroupStart) {
+                GroupStart groupStart = (GroupStart) e;
+                groupName = Optional.of(groupStart.groupName);
+                groupId = groupStart.groupId;
+            } else if (e instanceof TestStart) {
+                TestStart testStart = (TestStart) e;
+                groupName = Optional.of(testStart.groupName);
+                groupId = testStart.groupId;
+                testName = Optional.of(testStart.testName);
+                testId = testStart.testId;
+            } else if (e instanceof TestPassed || e instanceof TestFailed) {
+                testName = Optional.empty();
+                testId = TestSymbols.NONE;
+            } else if (e instanceof GroupEnd || e instanceof SuiteEnd) {
+                groupName = Optional.empty();
+                groupId = TestSymbols.NONE;
+                testName = Optional.empty();
+                testId = TestSymbols.NONE;
+            }
+
+            subscriber.onNext(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package gumanoid.parser;
+
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses GTest output straight from raw chunks of process stdout and emits
+ * the same events as {@link GTestOutputParser} does for decoded lines.
+ * <p/>
+ * Line boundaries and {@link GTestTag}s are found at byte level, so the
+ * only per-line work besides regular expressions of tagged lines is a
+ * single decoding of line bytes into the event's string. Lines may be
+ * split across chunks arbitrarily; "\r\n" line endings are supported.
+ * Chunks are consumed synchronously, so the caller may reuse the buffer
+ * after <code>onNext</code> returns
+ */
+public class GTestOutputByteParser implements Observable.Operator<GTestOutputEvent, ByteBuffer> {
+    private final Charset charset;
+    private final GTestOutputParser lineParser;
+
+    public GTestOutputByteParser() {
+        this(Charset.defaultCharset());
+    }
+
+    /**
+     * @param charset   encoding of the process output; must be ASCII-compatible
+     */
+    public GTestOutputByteParser(Charset charset) {
+        this(charset, new TestSymbols());
+    }
+
+    /**
+     * @param charset   encoding of the process output; must be ASCII-compatible
+     * @param symbols   symbol table to intern group and test names with
+     */
+    public GTestOutputByteParser(Charset charset, TestSymbols symbols) {
+        this.charset = charset;
+        this.lineParser = new GTestOutputParser(GTestOutputParser.Classification.PrefixDispatch, symbols);
+    }
+
+    @Override
+    public Subscriber<? super ByteBuffer> call(Subscriber<? super GTestOutputEvent> subscriber) {
+        GTestOutputParser.LineHandler handler = lineParser.new LineHandler(subscriber);
+        ByteLineSplitter splitter = new ByteLineSplitter((bytes, offset, length) ->
+                handler.line(new String(bytes, offset, length, charset), GTestTag.of(bytes, offset, length))
+        );
+
+        return new Subscriber<ByteBuffer>() {
+            @Override
+            public void onCompleted() {
+                splitter.finish();
+                subscriber.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                subscriber.onError(e);
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+                splitter.feed(chunk);
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package gumanoid.parser;
+
+import java.util.OptionalInt;
+
+/**
+ * Formats GTest output lines the way GTest itself prints them. Used by
+ * event sources which don't read GTest text output (e. g. reports), so that
+ * their events carry the same output lines as events parsed from stdout
+ */
+final class GTestOutputLines {
+    private GTestOutputLines() {}
+
+    static String suiteStart(int testCount, int groupCount) {
+        return GTestTag.Banner.text + " Running " + tests(testCount) + " from " + groups(groupCount) + ".";
+    }
+
+    static String envSetUp() {
+        return GTestTag.Section.text + " Global test environment set-up.";
+    }
+
+    static String groupStart(String groupName, int testCount) {
+        return GTestTag.Section.text + " " + tests(testCount) + " from " + groupName;
+    }
+
+    static String testStart(String groupName, String testName) {
+        return GTestTag.Run.text + " " + groupName + "." + testName;
+    }
+
+    static String testPassed(String groupName, String testName, OptionalInt elapsedTime) {
+        return GTestTag.Ok.text + " " + groupName + "." + testName + elapsed(elapsedTime, " ms");
+    }
+
+    static String testFailed(String groupName, String testName, OptionalInt elapsedTime) {
+        return GTestTag.Failed.text + " " + groupName + "." + testName + elapsed(elapsedTime, " ms");
+    }
+
+    static String testCrashed(String groupName, String testName, String exitDescription) {
+        return GTestTag.Failed.text + " " + groupName + "." + testName + " (crashed, " + exitDescription + ")";
+    }
+
+    static String testTimedOut(String groupName, String testName, int timeoutMs) {
+        return GTestTag.Failed.text + " " + groupName + "." + testName + " (timed out after " + timeoutMs + " ms)";
+    }
+
+    static String groupEnd(String groupName, int testCount, OptionalInt elapsedTime) {
+        return groupStart(groupName, testCount) + elapsed(elapsedTime, " ms total");
+    }
+
+    static String envTearDown() {
+        return GTestTag.Section.text + " Global test environment tear-down";
+    }
+
+    static String suiteEnd(int testCount, int groupCount, OptionalInt elapsedTime) {
+        return GTestTag.Banner.text + " " + tests(testCount) + " from " + groups(groupCount) + " ran."
+                + elapsed(elapsedTime, " ms total");
+    }
+
+    static String passedTestsSummary(int passedTestCount) {
+        return GTestTag.Passed.text + " " + tests(passedTestCount) + ".";
+    }
+
+    static String failedTestsSummary(int failedTestCount) {
+        return GTestTag.Failed.text + " " + tests(failedTestCount) + ", listed below:";
+    }
+
+    static String failedTestSummary(String groupName, String testName) {
+        return GTestTag.Failed.text + " " + groupName + "." + testName;
+    }
+
+    static String failedTestsFooter(int failedTestCount) {
+        return String.format("%2d FAILED %s", failedTestCount, failedTestCount == 1 ? "TEST" : "TESTS");
+    }
+
+    private static String tests(int count) {
+        return count + (count == 1 ? " test" : " tests");
+    }
+
+    private static String groups(int count) {
+        return count + (count == 1 ? " test case" : " test cases");
+    }
+
+    private static String elapsed(OptionalInt elapsedTime, String units) {
+        return elapsedTime.isPresent() ? " (" + elapsedTime.getAsInt() + units + ")" : "";
+    }
+}
@@ -1,15 +1,19 @@
 package gumanoid.parser;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import gumanoid.event.GTestOutputEvent;
 import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
 import rx.Observable;
 import rx.Subscriber;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static gumanoid.parser.ParserCore.*;
-import static java.lang.Integer.parseInt;
 
 /**
  * Parses GTest output lines sequence and emits corresponding events
@@ -19,30 +23,53 @@ import static java.lang.Integer.parseInt;
  * Created by Gumanoid on 07.01.2016.
  */
 public class GTestOutputParser implements Observable.Operator<GTestOutputEvent, String> {
+    /**
+     * How output lines are checked for being GTest meta output
+     */
+    public enum Classification {
+        /**
+         * Every line is matched against all known regular expressions
+         * in turn, until one of them matches
+         */
+        RegexChain,
+        /**
+         * Line's {@link GTestTag} is checked first, and only regular
+         * expressions for that tag are tried; lines which don't start with
+         * a tag are matched as by {@link #RegexChain} only if they may have
+         * one inside, see {@link GTestTag#mayHaveTagInside}
+         */
+        PrefixDispatch
+    }
+
+    private final Classification classification;
+    private final TestSymbols symbols;
+
+    public GTestOutputParser() {
+        this(Classification.PrefixDispatch);
+    }
+
+    public GTestOutputParser(Classification classification) {
+        this(classification, new TestSymbols());
+    }
+
+    /**
+     * @param symbols   symbol table to intern group and test names with; share
+     *                  it with enumeration parser to get the same ids
+     */
+    public GTestOutputParser(TestSymbols symbols) {
+        this(Classification.PrefixDispatch, symbols);
+    }
+
+    public GTestOutputParser(Classification classification, TestSymbols symbols) {
+        this.classification = classification;
+        this.symbols = symbols;
+    }
+
     @Override
     public Subscriber<? super String> call(Subscriber<? super GTestOutputEvent> subscriber) {
-        return new Subscriber<String>() {
-            /**
-             * Handles metadata printed by GTestOutput
-             */
-            private final LineParser metaOutputParser = firstOf(
-                    ifMatches("\\[==========\\] Running (\\d+) test[s]? from (\\d+) test case[s]?\\.$").then(this::suiteStart),
-                    ifMatches("\\[==========\\] (\\d+) test[s]? from (\\d+) test case[s]? ran\\.(?: \\((\\d+) ms total\\))?$").then(this::suiteEnd),
-                    ifMatches("\\[----------\\] Global test environment set-up\\.$").then(this::envSetUp),
-                    ifMatches("\\[----------\\] Global test environment tear-down$").then(this::envTearDown),
-                    ifMatches("\\[----------\\] (\\d+) test[s]? from (\\w+)(?: \\((\\d+) ms total\\))?$").then(this::groupBoundary),
-                    ifMatches("\\[ RUN      \\] (\\w+)\\.(\\w+)$").then(this::testStart),
-                    ifMatches("\\[       OK \\] (\\w+)\\.(\\w+)(?: \\((\\d+) ms\\))?$").then(this::testPassed),
-                    ifMatches("\\[  PASSED  \\] (\\d+) test[s]?\\.$").then(this::passedTestsSummary),
-                    ifMatches("\\[  FAILED  \\] (\\w+)\\.(\\w+)(?: \\((\\d+) ms\\))?$").then(this::testFailed),
-                    ifMatches("\\[  FAILED  \\] (\\d+) test[s]?, listed below:$").then(this::failedSummary)
-            );
-
-            private SuiteState suiteState = SuiteState.NotStarted;
-            private Optional<String> currentGroup = Optional.empty();
-            private int testsInCurrentGroup;
-            private Optional<String> currentTest = Optional.empty();
+        LineHandler handler = new LineHandler(subscriber);
 
+        return new Subscriber<String>() {
             @Override
             public void onCompleted() {
                 subscriber.onCompleted();
@@ -55,132 +82,242 @@ public class GTestOutputParser implements Observable.Operator<GTestOutputEvent,
 
             @Override
             public void onNext(String line) {
-                if (!metaOutputParser.parse(line).isPresent()) {
-                    subscriber.onNext(suiteState.createOutputEvent(line, currentGroup, currentTest));
-                }
+                handler.line(line);
             }
+        };
+    }
 
-            private void suiteStart(String[] args) {
-                Preconditions.checkState(suiteState == SuiteState.NotStarted);
-
-                suiteState = SuiteState.Running;
-                subscriber.onNext(new SuiteStart(args[0], parseInt(args[1]), parseInt(args[2])));
+    /**
+     * Parsing state machine, which turns output lines into events. Shared by
+     * string-based ({@link GTestOutputParser}) and byte-based
+     * ({@link GTestOutputByteParser}) ingest paths
+     */
+    class LineHandler {
+        private final MatchParser suiteStartParser = matching("\\[==========\\] Running (\\d+) test[s]? from (\\d+) test case[s]?\\.$").then(this::suiteStart);
+        private final MatchParser suiteEndParser = matching("\\[==========\\] (\\d+) test[s]? from (\\d+) test case[s]? ran\\.(?: \\((\\d+) ms total\\))?$").then(this::suiteEnd);
+        private final MatchParser envSetUpParser = matching("\\[----------\\] Global test environment set-up\\.$").then(this::envSetUp);
+        private final MatchParser envTearDownParser = matching("\\[----------\\] Global test environment tear-down$").then(this::envTearDown);
+        private final MatchParser groupBoundaryParser = matching("\\[----------\\] (\\d+) test[s]? from (\\w+)(?: \\((\\d+) ms total\\))?$").then(this::groupBoundary);
+        private final MatchParser testStartParser = matching("\\[ RUN      \\] (\\w+)\\.(\\w+)$").then(this::testStart);
+        private final MatchParser testPassedParser = matching("\\[       OK \\] (\\w+)\\.(\\w+)(?: \\((\\d+) ms\\))?$").then(this::testPassed);
+        private final MatchParser passedTestsSummaryParser = matching("\\[  PASSED  \\] (\\d+) test[s]?\\.$").then(this::passedTestsSummary);
+        private final MatchParser testFailedParser = matching("\\[  FAILED  \\] (\\w+)\\.(\\w+)(?: \\((\\d+) ms\\))?$").then(this::testFailed);
+        private final MatchParser failedSummaryParser = matching("\\[  FAILED  \\] (\\d+) test[s]?, listed below:$").then(this::failedSummary);
+
+        private final Map<GTestTag, MatchParser> tagParsers = Maps.immutableEnumMap(ImmutableMap.<GTestTag, MatchParser>builder()
+                .put(GTestTag.Banner, firstMatchOf(suiteStartParser, suiteEndParser))
+                .put(GTestTag.Section, firstMatchOf(envSetUpParser, envTearDownParser, groupBoundaryParser))
+                .put(GTestTag.Run, testStartParser)
+                .put(GTestTag.Ok, testPassedParser)
+                .put(GTestTag.Passed, passedTestsSummaryParser)
+                .put(GTestTag.Failed, firstMatchOf(testFailedParser, failedSummaryParser))
+                .build());
+
+        private final MatchParser regexChainParser = firstMatchOf(suiteStartParser, suiteEndParser, envSetUpParser, envTearDownParser,
+                groupBoundaryParser, testStartParser, testPassedParser, passedTestsSummaryParser, testFailedParser, failedSummaryParser);
+
+        private final Subscriber<? super GTestOutputEvent> subscriber;
+
+        private SuiteState suiteState = SuiteState.NotStarted;
+        private int iteration = -1;
+        private Optional<String> currentGroup = Optional.empty();
+        private int currentGroupId = TestSymbols.NONE;
+        private int testsInCurrentGroup;
+        private Optional<String> currentTest = Optional.empty();
+        private int currentTestId = TestSymbols.NONE;
+
+        LineHandler(Subscriber<? super GTestOutputEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Handles one output line
+         */
+        void line(String line) {
+            line(line, classification == Classification.RegexChain ? GTestTag.None : GTestTag.of(line));
+        }
+
+        /**
+         * Handles one output line, which {@link GTestTag} is already known
+         * (e. g. detected before line is decoded)
+         */
+        void line(String line, GTestTag tag) {
+            if (!handlesMetaOutput(line, tag)) {
+                subscriber.onNext(suiteState.createOutputEvent(line, currentGroup, currentTest, currentGroupId, currentTestId));
+            }
+        }
+
+        /**
+         * Handles metadata printed by GTest
+         */
+        private boolean handlesMetaOutput(String line, GTestTag tag) {
+            if (classification == Classification.RegexChain) {
+                return regexChainParser.parse(line);
             }
 
-            private void suiteEnd(String[] args) {
-                Preconditions.checkState(suiteState == SuiteState.Running);
-
-                ensureGroupEnded();
+            MatchParser parser = tagParsers.get(tag);
+            if (parser != null && parser.parse(line)) {
+                return true;
+            }
 
-                suiteState = SuiteState.Finished;
-                subscriber.onNext(new SuiteEnd(args[0], parseInt(args[1]), parseInt(args[2])));
+            //output before the tag is dropped, as the regex chain does
+            for (int i = GTestTag.indexOf(line, 1); i >= 0; i = GTestTag.indexOf(line, i + 1)) {
+                if (tagParsers.get(GTestTag.of(line, i)).parse(line.substring(i))) {
+                    return true;
+                }
             }
+            return false;
+        }
 
-            private void envSetUp(String[] args) {
-                Preconditions.checkState(suiteState == SuiteState.Running);
+        private void suiteStart(Match match) {
+            //suite is started again on each iteration, when tests are repeated
+            Preconditions.checkState(suiteState != SuiteState.Running);
 
-                subscriber.onNext(new TestOutput(args[0], Optional.empty(), Optional.empty()));
-            }
+            suiteState = SuiteState.Running;
+            ++iteration;
+            subscriber.onNext(new SuiteStart(match.string(0), match.intGroup(1), match.intGroup(2), iteration));
+        }
 
-            private void envTearDown(String[] args) {
-                Preconditions.checkState(suiteState == SuiteState.Running);
+        private void suiteEnd(Match match) {
+            Preconditions.checkState(suiteState == SuiteState.Running);
 
-                ensureGroupEnded();
+            ensureGroupEnded();
 
-                subscriber.onNext(new TestOutput(args[0], Optional.empty(), Optional.empty()));
-            }
+            suiteState = SuiteState.Finished;
+            subscriber.onNext(new SuiteEnd(match.string(0), match.intGroup(1), match.intGroup(2)));
+        }
 
-            private void groupBoundary(String[] args) {
-                Preconditions.checkState(suiteState == SuiteState.Running);
+        private void envSetUp(Match match) {
+            Preconditions.checkState(suiteState == SuiteState.Running);
 
-                int testCount = parseInt(args[1]);
+            subscriber.onNext(new TestOutput(match.string(0), Optional.empty(), Optional.empty()));
+        }
 
-                if (currentGroup.isPresent() && currentGroup.get().equals(args[2])) {
-                    currentGroup = Optional.empty();
-                    subscriber.onNext(new GroupEnd(args[0], args[2], testCount));
-                } else {
-                    ensureGroupEnded();
+        private void envTearDown(Match match) {
+            Preconditions.checkState(suiteState == SuiteState.Running);
 
-                    currentGroup = Optional.of(args[2]);
-                    testsInCurrentGroup = testCount;
-                    subscriber.onNext(new GroupStart(args[0], args[2], testCount));
-                }
-            }
+            ensureGroupEnded();
 
-            private void ensureGroupEnded() {
-                if (currentGroup.isPresent()) {
-                    //this can be the case when elapsed time measurement is turned off
-                    //todo sort out this corner-case with null output line
-                    //remember line printed in suiteStart? or just skip it if it's null
-                    //in default implementation? the latter seems to be more accurate
-                    subscriber.onNext(new GroupEnd(null, currentGroup.get(), testsInCurrentGroup));
-                    currentGroup = Optional.empty();
-                }
-            }
+            subscriber.onNext(new TestOutput(match.string(0), Optional.empty(), Optional.empty()));
+        }
 
-            private void testStart(String[] args) {
-                Preconditions.checkState(currentGroup.isPresent() && currentGroup.get().equals(args[1]));
-                Preconditions.checkState(!currentTest.isPresent());
+        private void groupBoundary(Match match) {
+            Preconditions.checkState(suiteState == SuiteState.Running);
 
-                currentTest = Optional.of(args[2]);
-                subscriber.onNext(new TestStart(args[0], args[1], args[2]));
-            }
+            int testCount = match.intGroup(1);
 
-            private void testPassed(String[] args) {
-                Preconditions.checkState(currentGroup.isPresent() && currentGroup.get().equals(args[1]));
-                Preconditions.checkState(currentTest.isPresent() && currentTest.get().equals(args[2]));
+            if (isCurrent(currentGroup, match.group(2))) {
+                String groupName = currentGroup.get();
+                int groupId = currentGroupId;
+                currentGroup = Optional.empty();
+                currentGroupId = TestSymbols.NONE;
+                subscriber.onNext(new GroupEnd(match.string(0), groupName, testCount, groupId));
+            } else {
+                ensureGroupEnded();
 
+                currentGroupId = symbols.group(match.string(2));
+                currentGroup = Optional.of(symbols.groupName(currentGroupId));
+                testsInCurrentGroup = testCount;
+                subscriber.onNext(new GroupStart(match.string(0), currentGroup.get(), testCount, currentGroupId));
+            }
+        }
+
+        private void ensureGroupEnded() {
+            if (currentGroup.isPresent()) {
+                //this can be the case when elapsed time measurement is turned off
+                //todo sort out this corner-case with null output line
+                //remember line printed in suiteStart? or just skip it if it's null
+                //in default implementation? the latter seems to be more accurate
+                subscriber.onNext(new GroupEnd(null, currentGroup.get(), testsInCurrentGroup, currentGroupId));
+                currentGroup = Optional.empty();
+                currentGroupId = TestSymbols.NONE;
+            }
+        }
+
+        private void testStart(Match match) {
+            Preconditions.checkState(isCurrent(currentGroup, match.group(1)));
+            Preconditions.checkState(!currentTest.isPresent());
+
+            currentTestId = symbols.test(currentGroupId, match.string(2));
+            currentTest = Optional.of(symbols.testName(currentTestId));
+            subscriber.onNext(new TestStart(match.string(0), currentGroup.get(), currentTest.get(), currentGroupId, currentTestId));
+        }
+
+        private void testPassed(Match match) {
+            Preconditions.checkState(isCurrent(currentGroup, match.group(1)));
+            Preconditions.checkState(isCurrent(currentTest, match.group(2)));
+
+            String testName = currentTest.get();
+            int testId = currentTestId;
+            currentTest = Optional.empty();
+            currentTestId = TestSymbols.NONE;
+            subscriber.onNext(new TestPassed(match.string(0), currentGroup.get(), testName, elapsedTime(match), currentGroupId, testId));
+        }
+
+        private void testFailed(Match match) {
+            if (suiteState == SuiteState.Running) {
+                Preconditions.checkState(isCurrent(currentGroup, match.group(1)));
+                Preconditions.checkState(isCurrent(currentTest, match.group(2)));
+
+                String testName = currentTest.get();
+                int testId = currentTestId;
                 currentTest = Optional.empty();
-                subscriber.onNext(new TestPassed(args[0], args[1], args[2]));
+                currentTestId = TestSymbols.NONE;
+                subscriber.onNext(new TestFailed(match.string(0), currentGroup.get(), testName, elapsedTime(match), currentGroupId, testId));
+            } else {
+                Preconditions.checkState(suiteState == SuiteState.Finished);
+                failedTestSummary(match);
             }
+        }
 
-            private void testFailed(String[] args) {
-                if (suiteState == SuiteState.Running) {
-                    Preconditions.checkState(currentGroup.isPresent() && currentGroup.get().equals(args[1]));
-                    Preconditions.checkState(currentTest.isPresent() && currentTest.get().equals(args[2]));
+        private void passedTestsSummary(Match match) {
+            subscriber.onNext(new PassedTestsSummary(match.string(0), match.intGroup(1)));
+        }
 
-                    currentTest = Optional.empty();
-                    subscriber.onNext(new TestFailed(args[0], args[1], args[2]));
-                } else {
-                    Preconditions.checkState(suiteState == SuiteState.Finished);
-                    failedTestSummary(args);
-                }
-            }
+        private void failedTestSummary(Match match) {
+            subscriber.onNext(new FailedTestSummary(match.string(0), match.string(1), match.string(2)));
+        }
 
-            private void passedTestsSummary(String[] args) {
-                subscriber.onNext(new PassedTestsSummary(args[0], parseInt(args[1])));
-            }
+        private void failedSummary(Match match) {
+            subscriber.onNext(new FailedTestsSummary(match.string(0), match.intGroup(1)));
+        }
+    }
 
-            private void failedTestSummary(String[] args) {
-                subscriber.onNext(new FailedTestSummary(args[0], args[1], args[2]));
-            }
+    /**
+     * Elapsed time of a test, which is printed unless --gtest_print_time=0 is given
+     */
+    private static OptionalInt elapsedTime(Match match) {
+        return match.isPresent(3) ? OptionalInt.of(match.intGroup(3)) : OptionalInt.empty();
+    }
 
-            private void failedSummary(String[] args) {
-                subscriber.onNext(new FailedTestsSummary(args[0], parseInt(args[1])));
-            }
-        };
+    /**
+     * Compares name of current group/test with captured value without
+     * converting the latter to string
+     */
+    private static boolean isCurrent(Optional<String> current, CharSequence captured) {
+        return current.isPresent() && current.get().contentEquals(captured);
     }
 
     private enum SuiteState {
         NotStarted {
             @Override
-            GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName) {
+            GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName, int groupId, int testId) {
                 return new OutputBeforeSuiteStarted(line);
             }
         },
         Running {
             @Override
-            GTestOutputEvent createOutputEvent(String line, Optional<String> groupName, Optional<String> testName) {
-                return new TestOutput(line, groupName, testName);
+            GTestOutputEvent createOutputEvent(String line, Optional<String> groupName, Optional<String> testName, int groupId, int testId) {
+                return new TestOutput(line, groupName, testName, groupId, testId);
             }
         },
         Finished {
             @Override
-            GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName) {
+            GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName, int groupId, int testId) {
                 return new SummaryOutput(line);
             }
         };
 
-        abstract GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName);
+        abstract GTestOutputEvent createOutputEvent(String line, Optional<String> testGroupName, Optional<String> testName, int groupId, int testId);
     }
 }
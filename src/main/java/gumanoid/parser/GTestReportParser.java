@@ -0,0 +1,277 @@
+package gumanoid.parser;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
+import rx.Observable;
+import rx.Subscriber;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Reads GTest XML report (written by GTest executable when
+ * --gtest_output=xml:&lt;path&gt; flag is passed in) and emits the same
+ * events {@link GTestOutputParser} emits for stdout of that run, with
+ * per-test elapsed times and failure messages taken from the report.
+ * Output lines of events are formatted as GTest would print them.
+ * <p/>
+ * Report is read with StAX, so memory use doesn't depend on report size.
+ * To achieve this, report is read up to three times: to count tests and
+ * groups (which are announced before any test), to emit events, and to
+ * list failed tests in the summary (only if there are any)
+ */
+public class GTestReportParser {
+    private static final Splitter LINES = Splitter.on('\n');
+
+    private final XMLInputFactory factory = XMLInputFactory.newFactory();
+    private final TestSymbols symbols;
+
+    public GTestReportParser() {
+        this(new TestSymbols());
+    }
+
+    /**
+     * @param symbols   symbol table to intern group and test names with
+     */
+    public GTestReportParser(TestSymbols symbols) {
+        this.symbols = symbols;
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    public Observable<GTestOutputEvent> parse(File report) {
+        return parse(Files.asByteSource(report));
+    }
+
+    /**
+     * @param report    report contents; is opened once per pass
+     * @return events of the reported run; report is read when subscribed,
+     * on the subscribing thread
+     */
+    public Observable<GTestOutputEvent> parse(ByteSource report) {
+        return Observable.create(subscriber -> {
+            try {
+                Totals totals = countTotals(report);
+                int failedTestCount = emitRun(report, totals, subscriber);
+
+                if (failedTestCount > 0 && !subscriber.isUnsubscribed()) {
+                    emitFailedTests(report, failedTestCount, subscriber);
+                }
+
+                subscriber.onCompleted();
+            } catch (IOException | XMLStreamException e) {
+                subscriber.onError(e);
+            }
+        });
+    }
+
+    private static class Totals {
+        int testCount;
+        int groupCount;
+    }
+
+    private Totals countTotals(ByteSource report) throws IOException, XMLStreamException {
+        Totals totals = new Totals();
+
+        try (InputStream in = report.openStream()) {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("testsuite")) {
+                        int runTests = runTestCount(xml);
+                        if (runTests > 0) {
+                            totals.testCount += runTests;
+                            ++totals.groupCount;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * @return number of failed tests
+     */
+    private int emitRun(ByteSource report, Totals totals, Subscriber<? super GTestOutputEvent> subscriber) throws IOException, XMLStreamException {
+        OptionalInt suiteElapsedTime = OptionalInt.empty();
+
+        String groupName = null;
+        int groupId = TestSymbols.NONE;
+        int testsInGroup = 0;
+        OptionalInt groupElapsedTime = OptionalInt.empty();
+
+        String testName = null;
+        int testId = TestSymbols.NONE;
+        boolean testFailed = false;
+        OptionalInt testElapsedTime = OptionalInt.empty();
+
+        int passedTestCount = 0;
+        int failedTestCount = 0;
+
+        try (InputStream in = report.openStream()) {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext() && !subscriber.isUnsubscribed()) {
+                    int event = xml.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case "testsuites":
+                                suiteElapsedTime = elapsedTime(xml);
+                                subscriber.onNext(new SuiteStart(GTestOutputLines.suiteStart(totals.testCount, totals.groupCount), totals.testCount, totals.groupCount));
+                                subscriber.onNext(new TestOutput(GTestOutputLines.envSetUp(), Optional.empty(), Optional.empty()));
+                                break;
+
+                            case "testsuite":
+                                testsInGroup = runTestCount(xml);
+                                if (testsInGroup > 0) {
+                                    groupId = symbols.group(xml.getAttributeValue(null, "name"));
+                                    groupName = symbols.groupName(groupId);
+                                    groupElapsedTime = elapsedTime(xml);
+                                    subscriber.onNext(new GroupStart(GTestOutputLines.groupStart(groupName, testsInGroup), groupName, testsInGroup, groupId));
+                                }
+                                break;
+
+                            case "testcase":
+                                if (groupName != null && !"notrun".equals(xml.getAttributeValue(null, "status"))) {
+                                    testId = symbols.test(groupId, xml.getAttributeValue(null, "name"));
+                                    testName = symbols.testName(testId);
+                                    testFailed = false;
+                                    testElapsedTime = elapsedTime(xml);
+                                    subscriber.onNext(new TestStart(GTestOutputLines.testStart(groupName, testName), groupName, testName, groupId, testId));
+                                }
+                                break;
+
+                            case "failure":
+                                if (testName != null) {
+                                    testFailed = true;
+                                    for (String line : LINES.split(xml.getElementText())) {
+                                        subscriber.onNext(new TestOutput(line, Optional.of(groupName), Optional.of(testName), groupId, testId));
+                                    }
+                                }
+                                break;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case "testcase":
+                                if (testName != null) {
+                                    if (testFailed) {
+                                        ++failedTestCount;
+                                        subscriber.onNext(new TestFailed(GTestOutputLines.testFailed(groupName, testName, testElapsedTime), groupName, testName, testElapsedTime, groupId, testId));
+                                    } else {
+                                        ++passedTestCount;
+                                        subscriber.onNext(new TestPassed(GTestOutputLines.testPassed(groupName, testName, testElapsedTime), groupName, testName, testElapsedTime, groupId, testId));
+                                    }
+                                    testName = null;
+                                }
+                                break;
+
+                            case "testsuite":
+                                if (groupName != null) {
+                                    subscriber.onNext(new GroupEnd(GTestOutputLines.groupEnd(groupName, testsInGroup, groupElapsedTime), groupName, testsInGroup, groupId));
+                                    subscriber.onNext(new TestOutput("", Optional.empty(), Optional.empty()));
+                                    groupName = null;
+                                }
+                                break;
+
+                            case "testsuites":
+                                subscriber.onNext(new TestOutput(GTestOutputLines.envTearDown(), Optional.empty(), Optional.empty()));
+                                subscriber.onNext(new SuiteEnd(GTestOutputLines.suiteEnd(totals.testCount, totals.groupCount, suiteElapsedTime), totals.testCount, totals.groupCount));
+                                subscriber.onNext(new PassedTestsSummary(GTestOutputLines.passedTestsSummary(passedTestCount), passedTestCount));
+                                break;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        return failedTestCount;
+    }
+
+    private void emitFailedTests(ByteSource report, int failedTestCount, Subscriber<? super GTestOutputEvent> subscriber) throws IOException, XMLStreamException {
+        subscriber.onNext(new FailedTestsSummary(GTestOutputLines.failedTestsSummary(failedTestCount), failedTestCount));
+
+        String groupName = null;
+        String testName = null;
+        boolean testFailed = false;
+
+        try (InputStream in = report.openStream()) {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext() && !subscriber.isUnsubscribed()) {
+                    int event = xml.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case "testsuite":
+                                groupName = xml.getAttributeValue(null, "name");
+                                break;
+
+                            case "testcase":
+                                testName = "notrun".equals(xml.getAttributeValue(null, "status"))
+                                        ? null
+                                        : xml.getAttributeValue(null, "name");
+                                testFailed = false;
+                                break;
+
+                            case "failure":
+                                testFailed = true;
+                                break;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("testcase")) {
+                        if (testName != null && testFailed) {
+                            subscriber.onNext(new FailedTestSummary(GTestOutputLines.failedTestSummary(groupName, testName), groupName, testName));
+                        }
+                        testName = null;
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        subscriber.onNext(new SummaryOutput(""));
+        subscriber.onNext(new SummaryOutput(GTestOutputLines.failedTestsFooter(failedTestCount)));
+    }
+
+    /**
+     * Number of tests in group (&lt;testsuite&gt; element) which were run, i. e.
+     * which are not disabled
+     */
+    private static int runTestCount(XMLStreamReader xml) {
+        return intAttribute(xml, "tests") - intAttribute(xml, "disabled");
+    }
+
+    private static int intAttribute(XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    /**
+     * GTest reports elapsed time in seconds, with millisecond precision
+     */
+    private static OptionalInt elapsedTime(XMLStreamReader xml) {
+        String value = xml.getAttributeValue(null, "time");
+        return value != null
+                ? OptionalInt.of((int) Math.round(Double.parseDouble(value) * 1000))
+                : OptionalInt.empty();
+    }
+}
@@ -0,0 +1,263 @@
+package gumanoid.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Merges events of shards of one run (executables started with
+ * GTEST_TOTAL_SHARDS and GTEST_SHARD_INDEX environment variables, or with
+ * --gtest_filter selecting a batch of tests) into events of a single run,
+ * as if all tests were run by one executable.
+ * <p/>
+ * Test events are passed as is. The same group is usually split between
+ * several shards, so group is started when its first test starts in any
+ * shard, and is ended when all of its tests are run. Suite is started by
+ * the first shard, and is ended, together with the summary, when all
+ * shards are done. Shards' own summaries and GTest's suite-level lines,
+ * which are printed by each shard, are dropped.
+ * <p/>
+ * Each shard is expected to be parsed on its own thread; events of shards
+ * are serialized by holding a lock while an event is handled, so a shard
+ * which emits an event while another one is blocked by a slow subscriber
+ * is blocked as well. Shards' events must refer to the same
+ * {@link TestSymbols}.
+ * <p/>
+ * Shards of repeated runs are not supported: all iterations are merged
+ * into one
+ */
+public class GTestShardMerger {
+    private final ImmutableMap<String, Integer> groupSizes;
+    private final int testCount;
+
+    /**
+     * @param groupSizes    number of tests in each group which is going to run
+     *                      in all shards, as enumerated by --gtest_list_tests
+     *                      with the same filter
+     */
+    public GTestShardMerger(Map<String, Integer> groupSizes) {
+        this.groupSizes = ImmutableMap.copyOf(groupSizes);
+        this.testCount = this.groupSizes.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return events of the whole run; completes when all shards complete
+     */
+    public Observable<GTestOutputEvent> merge(List<Observable<GTestOutputEvent>> shards) {
+        Preconditions.checkArgument(!shards.isEmpty());
+
+        return merge(Observable.from(shards));
+    }
+
+    /**
+     * @param shards    shards, which may be started at any time until this
+     *                  observable completes; each shard is subscribed to as
+     *                  soon as it's emitted
+     * @return events of the whole run; completes when there are no more shards,
+     * and all shards complete
+     */
+    public Observable<GTestOutputEvent> merge(Observable<Observable<GTestOutputEvent>> shards) {
+        return Observable.create(subscriber -> {
+            MergeHandler handler = new MergeHandler(subscriber);
+
+            subscriber.add(shards.subscribe(new Subscriber<Observable<GTestOutputEvent>>() {
+                @Override
+                public void onCompleted() {
+                    handler.allShardsStarted();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    handler.shardFailed(e);
+                }
+
+                @Override
+                public void onNext(Observable<GTestOutputEvent> shard) {
+                    handler.shardStarted();
+                    subscriber.add(shard.subscribe(new Subscriber<GTestOutputEvent>() {
+                        @Override
+                        public void onCompleted() {
+                            handler.shardCompleted();
+                        }
+
+                        @Override
+                        public void onError(Throwable e) {
+                            handler.shardFailed(e);
+                        }
+
+                        @Override
+                        public void onNext(GTestOutputEvent e) {
+                            handler.event(e);
+                        }
+                    }));
+                }
+            }));
+        });
+    }
+
+    private class MergeHandler {
+        private final Subscriber<? super GTestOutputEvent> subscriber;
+
+        private int runningShards;
+        private boolean allShardsStarted;
+        private boolean failed;
+
+        private boolean suiteStarted;
+        private final BitSet startedGroups = new BitSet();
+        private final Map<Integer, Integer> testsLeftInGroup = new HashMap<>();
+        private final Map<Integer, GroupStart> groupStarts = new HashMap<>();
+
+        private int runTestCount;
+        private int runGroupCount;
+        private int passedTestCount;
+        private final List<FailedTestSummary> failedTests = new ArrayList<>();
+
+        MergeHandler(Subscriber<? super GTestOutputEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        synchronized void event(GTestOutputEvent e) {
+            if (failed) {
+                return;
+            }
+
+            if (e instanceof OutputBeforeSuiteStarted) {
+                subscriber.onNext(e);
+            } else if (e instanceof SuiteStart) {
+                suiteStart();
+            } else if (e instanceof GroupStart) {
+                groupStart((GroupStart) e);
+            } else if (e instanceof TestStart) {
+                subscriber.onNext(e);
+            } else if (e instanceof TestPassed) {
+                ++passedTestCount;
+                subscriber.onNext(e);
+                testEnded(((TestPassed) e).groupId);
+            } else if (e instanceof TestFailed) {
+                TestFailed testFailed = (TestFailed) e;
+                failedTests.add(new FailedTestSummary(GTestOutputLines.failedTestSummary(testFailed.groupName, testFailed.testName), testFailed.groupName, testFailed.testName));
+                subscriber.onNext(e);
+                testEnded(testFailed.groupId);
+            } else if (e instanceof TestOutput) {
+                testOutput((TestOutput) e);
+            }
+            //GroupEnd, SuiteEnd and summaries are made up when
+            //tests of group or all shards are done
+        }
+
+        private void suiteStart() {
+            if (!suiteStarted) {
+                suiteStarted = true;
+                subscriber.onNext(new SuiteStart(GTestOutputLines.suiteStart(testCount, groupSizes.size()), testCount, groupSizes.size()));
+                subscriber.onNext(new TestOutput(GTestOutputLines.envSetUp(), Optional.empty(), Optional.empty()));
+            }
+        }
+
+        private void groupStart(GroupStart e) {
+            if (startedGroups.get(e.groupId)) {
+                return;
+            }
+
+            int testsInGroup = groupSizes.getOrDefault(e.groupName, e.testsInGroup);
+            GroupStart groupStart = new GroupStart(GTestOutputLines.groupStart(e.groupName, testsInGroup), e.groupName, testsInGroup, e.groupId);
+
+            startedGroups.set(e.groupId);
+            testsLeftInGroup.put(e.groupId, testsInGroup);
+            groupStarts.put(e.groupId, groupStart);
+            ++runGroupCount;
+
+            subscriber.onNext(groupStart);
+        }
+
+        private void testEnded(int groupId) {
+            ++runTestCount;
+
+            Integer testsLeft = testsLeftInGroup.get(groupId);
+            if (testsLeft == null) {
+                return;
+            }
+
+            if (testsLeft > 1) {
+                testsLeftInGroup.put(groupId, testsLeft - 1);
+            } else {
+                testsLeftInGroup.remove(groupId);
+                groupEnd(groupStarts.get(groupId));
+            }
+        }
+
+        private void groupEnd(GroupStart groupStart) {
+            subscriber.onNext(new GroupEnd(GTestOutputLines.groupEnd(groupStart.groupName, groupStart.testsInGroup, OptionalInt.empty()), groupStart.groupName, groupStart.testsInGroup, groupStart.groupId));
+        }
+
+        private void testOutput(TestOutput e) {
+            //each shard prints environment set-up, tear-down and blank
+            //lines between groups
+            boolean gtestSuiteOutput = !e.groupName.isPresent() && !(e instanceof ErrorOutput)
+                    && (e.outputLine.isEmpty() || GTestTag.of(e.outputLine) != GTestTag.None);
+
+            if (!gtestSuiteOutput) {
+                subscriber.onNext(e);
+            }
+        }
+
+        synchronized void shardFailed(Throwable e) {
+            if (!failed) {
+                failed = true;
+                subscriber.onError(e);
+            }
+        }
+
+        synchronized void shardStarted() {
+            ++runningShards;
+        }
+
+        synchronized void allShardsStarted() {
+            allShardsStarted = true;
+            finishIfDone();
+        }
+
+        synchronized void shardCompleted() {
+            --runningShards;
+            finishIfDone();
+        }
+
+        private void finishIfDone() {
+            if (failed || !allShardsStarted || runningShards > 0) {
+                return;
+            }
+
+            //groups which have fewer tests than enumerated, e. g. if a shard crashed
+            for (Integer groupId : new ArrayList<>(testsLeftInGroup.keySet())) {
+                groupEnd(groupStarts.get(groupId));
+            }
+            testsLeftInGroup.clear();
+
+            if (suiteStarted) {
+                subscriber.onNext(new TestOutput(GTestOutputLines.envTearDown(), Optional.empty(), Optional.empty()));
+                subscriber.onNext(new SuiteEnd(GTestOutputLines.suiteEnd(runTestCount, runGroupCount, OptionalInt.empty()), runTestCount, runGroupCount));
+                subscriber.onNext(new PassedTestsSummary(GTestOutputLines.passedTestsSummary(passedTestCount), passedTestCount));
+
+                if (!failedTests.isEmpty()) {
+                    subscriber.onNext(new FailedTestsSummary(GTestOutputLines.failedTestsSummary(failedTests.size()), failedTests.size()));
+                    failedTests.forEach(subscriber::onNext);
+                    subscriber.onNext(new SummaryOutput(""));
+                    subscriber.onNext(new SummaryOutput(GTestOutputLines.failedTestsFooter(failedTests.size())));
+                }
+            }
+
+            subscriber.onCompleted();
+        }
+    }
+}
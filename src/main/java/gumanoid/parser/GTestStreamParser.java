@@ -0,0 +1,605 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Builds {@link GTestOutputEvent}s from the machine-readable event stream
+ * GTest executable sends when --gtest_stream_result_to=&lt;host&gt;:&lt;port&gt;
+ * flag is passed in. Stream consists of lines like
+ * <code>event=TestStart&amp;name=TestIsTrue</code>, with '%', '&amp;', '='
+ * and line feeds in values percent-encoded.
+ * <p/>
+ * Structural events (suite, group and test start and end) are taken from
+ * the stream only, so tests output never affects them, whatever it looks
+ * like. Process stdout is output of the test which is running when the
+ * line is printed; as stdout and the stream are read independently, lines
+ * GTest prints for the events are used to tell when that is, see
+ * {@link RecordHandler}.
+ * <p/>
+ * Stream doesn't tell how many tests and groups are going to run, so they
+ * are taken from tests enumeration
+ */
+public class GTestStreamParser {
+    private final ImmutableMap<String, Integer> groupSizes;
+    private final int testCount;
+    private final TestSymbols symbols;
+
+    /**
+     * @param groupSizes    number of tests in each group which is going to run,
+     *                      as enumerated by --gtest_list_tests with the same filter
+     */
+    public GTestStreamParser(Map<String, Integer> groupSizes) {
+        this(groupSizes, new TestSymbols());
+    }
+
+    /**
+     * @param groupSizes    number of tests in each group which is going to run,
+     *                      as enumerated by --gtest_list_tests with the same filter
+     * @param symbols       symbol table to intern group and test names with
+     */
+    public GTestStreamParser(Map<String, Integer> groupSizes, TestSymbols symbols) {
+        this.symbols = symbols;
+        this.groupSizes = ImmutableMap.copyOf(groupSizes);
+        this.testCount = this.groupSizes.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @param resultStream  raw chunks of the event stream; chunk may be reused
+     *                      by the caller after <code>onNext</code> returns
+     * @param output        stdout lines of the tests process
+     * @return events of the run; completes when both sources complete
+     */
+    public Observable<GTestOutputEvent> parse(Observable<ByteBuffer> resultStream, Observable<String> output) {
+        return Observable.merge(
+                resultStream.lift(new RecordSplitter()).map(Line::record),
+                output.map(Line::output).concatWith(Observable.just(Line.END_OF_OUTPUT))
+        ).<GTestOutputEvent>lift(this::handle);
+    }
+
+    private static final class Line {
+        final String text;
+        final boolean isRecord;
+
+        private Line(String text, boolean isRecord) {
+            this.text = text;
+            this.isRecord = isRecord;
+        }
+
+        static Line record(String text) {
+            return new Line(text, true);
+        }
+
+        static Line output(String text) {
+            return new Line(text, false);
+        }
+
+        static final Line END_OF_OUTPUT = new Line("", false);
+    }
+
+    /**
+     * Splits stream chunks into records. Chunks are consumed before they get
+     * to {@link Observable#merge}, which may hold them in a queue
+     */
+    private static class RecordSplitter implements Observable.Operator<String, ByteBuffer> {
+        @Override
+        public Subscriber<? super ByteBuffer> call(Subscriber<? super String> subscriber) {
+            ByteLineSplitter splitter = new ByteLineSplitter((bytes, offset, length) ->
+                    subscriber.onNext(new String(bytes, offset, length, StandardCharsets.UTF_8))
+            );
+
+            return new Subscriber<ByteBuffer>() {
+                @Override
+                public void onCompleted() {
+                    splitter.finish();
+                    subscriber.onCompleted();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+
+                @Override
+                public void onNext(ByteBuffer chunk) {
+                    splitter.feed(chunk);
+                }
+            };
+        }
+    }
+
+    private Subscriber<? super Line> handle(Subscriber<? super GTestOutputEvent> subscriber) {
+        RecordHandler handler = new RecordHandler(subscriber);
+
+        return new Subscriber<Line>() {
+            @Override
+            public void onCompleted() {
+                handler.finish();
+                subscriber.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                subscriber.onError(e);
+            }
+
+            @Override
+            public void onNext(Line line) {
+                if (line == Line.END_OF_OUTPUT) {
+                    handler.outputEnd();
+                } else if (line.isRecord) {
+                    handler.record(line.text);
+                } else {
+                    handler.output(line.text);
+                }
+            }
+        };
+    }
+
+    /**
+     * GTest prints a line for each event it sends to the stream, so these
+     * lines are how the stream and stdout are put in order. Line that GTest
+     * prints for an event is called its echo here
+     */
+    static boolean isEcho(String line, String eventLine) {
+        GTestTag tag = GTestTag.of(line);
+        if (tag == GTestTag.None || tag != GTestTag.of(eventLine)) {
+            return false;
+        }
+
+        //newer GTest versions say "test suite" where older ones say "test case"
+        String printed = line.replace(" test suite", " test case");
+        int elapsed = eventLine.lastIndexOf(" (");
+        String stem = elapsed == -1 ? eventLine : eventLine.substring(0, elapsed);
+        if (!printed.startsWith(stem)) {
+            return false;
+        }
+
+        //elapsed time and parameters of the test may follow the name
+        return printed.length() == stem.length() || printed.charAt(stem.length()) == ' ' || printed.charAt(stem.length()) == ',';
+    }
+
+    private enum RunState {
+        NotStarted, Running, Finished
+    }
+
+    /**
+     * Echoes of start events are printed before the event is sent, echoes of
+     * end events after, and stdout and the stream are read independently, so
+     * <ul>
+     *     <li>end event waits, with records following it, until its echo is read;
+     *     output read meanwhile belongs to what is ending</li>
+     *     <li>stdout line with a {@link GTestTag} which isn't an echo of an event
+     *     handled already waits, with output following it, for the next event;
+     *     if it's an echo of that event, output after it belongs to the new
+     *     test or group</li>
+     * </ul>
+     * Echoes themselves are dropped, since events carry the same lines; any
+     * other output, however it looks, is passed on
+     */
+    private class RecordHandler {
+        /**
+         * Bounds {@link #unechoed} when GTest prints no echoes at all, e. g. if
+         * its default printer is replaced
+         */
+        private static final int MAX_UNECHOED = 256;
+
+        private final Subscriber<? super GTestOutputEvent> subscriber;
+        private final Map<String, String> fields = new HashMap<>();
+
+        private RunState runState = RunState.NotStarted;
+        private Optional<String> currentGroup = Optional.empty();
+        private int currentGroupId = TestSymbols.NONE;
+        private Optional<String> currentTest = Optional.empty();
+        private int currentTestId = TestSymbols.NONE;
+        private int testsInCurrentGroup;
+        private int runTestCount;
+        private int runGroupCount;
+        private int passedTestCount;
+        private final List<FailedTestSummary> failedTests = new ArrayList<>();
+
+        private final Deque<String> unechoed = new ArrayDeque<>();
+        private final List<String> held = new ArrayList<>();
+        private final List<String> afterEvent = new ArrayList<>();
+        private final List<String> deferred = new ArrayList<>();
+        private String pendingEnd;
+        private String pendingEcho;
+        private boolean isEchoed;
+        private boolean isOutputOver;
+
+        RecordHandler(Subscriber<? super GTestOutputEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void output(String line) {
+            if (pendingEnd != null) {
+                if (isEcho(line, pendingEcho)) {
+                    resolvePendingEnd(true);
+                } else if (GTestTag.of(line) == GTestTag.None || !consumeEcho(line)) {
+                    outputEvent(line);
+                }
+            } else if (!held.isEmpty()) {
+                held.add(line);
+            } else if (GTestTag.of(line) != GTestTag.None) {
+                if (!consumeEcho(line)) {
+                    held.add(line);
+                }
+            } else {
+                outputEvent(line);
+            }
+        }
+
+        /**
+         * No more stdout, so no more echoes to wait for
+         */
+        void outputEnd() {
+            isOutputOver = true;
+            if (pendingEnd != null) {
+                resolvePendingEnd(false);
+            }
+        }
+
+        /**
+         * Output waiting for an event which never came is passed on as is
+         */
+        void finish() {
+            releaseHeld();
+        }
+
+        void record(String line) {
+            if (pendingEnd != null) {
+                deferred.add(line);
+                return;
+            }
+
+            parseFields(line);
+            String event = fields.get("event");
+            if (event == null) {
+                return;
+            }
+
+            String echo = endEcho(event);
+            if (echo != null) {
+                if (event.equals("TestIterationEnd")) {
+                    //printed before the event, with environment tear-down
+                    addUnechoed(GTestOutputLines.envTearDown());
+                }
+                releaseHeld();
+
+                if (!isOutputOver) {
+                    pendingEnd = line;
+                    pendingEcho = echo;
+                    return;
+                }
+            }
+
+            handle(event, false);
+        }
+
+        private void resolvePendingEnd(boolean echoed) {
+            String line = pendingEnd;
+            pendingEnd = null;
+            pendingEcho = null;
+
+            parseFields(line);
+            handle(fields.get("event"), echoed);
+
+            List<String> records = new ArrayList<>(deferred);
+            deferred.clear();
+            records.forEach(this::record);
+        }
+
+        /**
+         * @return echo of the given end event, null for other events
+         */
+        private String endEcho(String event) {
+            switch (event) {
+                case "TestEnd":
+                    return "1".equals(fields.get("passed"))
+                            ? GTestOutputLines.testPassed(currentGroup.orElse(""), currentTest.orElse(""), elapsedTime())
+                            : GTestOutputLines.testFailed(currentGroup.orElse(""), currentTest.orElse(""), elapsedTime());
+                case "TestCaseEnd":
+                case "TestSuiteEnd":
+                    return GTestOutputLines.groupEnd(currentGroup.orElse(""), testsInCurrentGroup, elapsedTime());
+                case "TestIterationEnd":
+                    return GTestOutputLines.suiteEnd(runTestCount, runGroupCount, elapsedTime());
+                default:
+                    return null;
+            }
+        }
+
+        private void handle(String event, boolean echoed) {
+            isEchoed = echoed;
+
+            switch (event) {
+                case "TestIterationStart":
+                    iterationStart(intField("iteration"));
+                    break;
+                case "TestCaseStart":
+                case "TestSuiteStart":
+                    groupStart(fields.getOrDefault("name", ""));
+                    break;
+                case "TestStart":
+                    testStart(fields.getOrDefault("name", ""));
+                    break;
+                case "TestEnd":
+                    testEnd("1".equals(fields.get("passed")), elapsedTime());
+                    break;
+                case "TestCaseEnd":
+                case "TestSuiteEnd":
+                    groupEnd(elapsedTime());
+                    break;
+                case "TestIterationEnd":
+                    iterationEnd(elapsedTime());
+                    break;
+                //TestProgramStart, TestProgramEnd and TestPartResult carry nothing
+                //which isn't printed to stdout anyway
+            }
+
+            List<String> lines = new ArrayList<>(afterEvent);
+            afterEvent.clear();
+            lines.forEach(this::output);
+        }
+
+        /**
+         * Must be called before the state is changed for an event: passes on
+         * held output printed before the event's echo in the current state and
+         * keeps the rest for {@link #afterEvent}
+         */
+        private void beforeEvent(String eventLine) {
+            int echo = -1;
+            for (int i = 0; i < held.size() && echo == -1; ++i) {
+                if (isEcho(held.get(i), eventLine)) {
+                    echo = i;
+                }
+            }
+
+            if (echo != -1) {
+                isEchoed = true;
+                afterEvent.addAll(held.subList(echo + 1, held.size()));
+                held.subList(echo, held.size()).clear();
+            }
+            releaseHeld();
+        }
+
+        private void releaseHeld() {
+            for (String line : held) {
+                if (GTestTag.of(line) == GTestTag.None || !consumeEcho(line)) {
+                    outputEvent(line);
+                }
+            }
+            held.clear();
+        }
+
+        /**
+         * Passes on the event for which {@link #beforeEvent} was called
+         */
+        private void emit(GTestOutputEvent event) {
+            subscriber.onNext(event);
+            if (!isEchoed) {
+                addUnechoed(event.outputLine);
+            }
+            isEchoed = false;
+        }
+
+        /**
+         * Passes on an event whose echo is yet to be read
+         */
+        private void emitUnechoed(GTestOutputEvent event) {
+            subscriber.onNext(event);
+            addUnechoed(event.outputLine);
+        }
+
+        private void addUnechoed(String line) {
+            if (unechoed.size() == MAX_UNECHOED) {
+                unechoed.removeFirst();
+            }
+            unechoed.addLast(line);
+        }
+
+        private boolean consumeEcho(String line) {
+            for (Iterator<String> i = unechoed.iterator(); i.hasNext(); ) {
+                if (isEcho(line, i.next())) {
+                    i.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void outputEvent(String line) {
+            switch (runState) {
+                case NotStarted:
+                    subscriber.onNext(new OutputBeforeSuiteStarted(line));
+                    break;
+                case Running:
+                    subscriber.onNext(new TestOutput(line, currentGroup, currentTest, currentGroupId, currentTestId));
+                    break;
+                case Finished:
+                    subscriber.onNext(new SummaryOutput(line));
+                    break;
+            }
+        }
+
+        private void iterationStart(int iteration) {
+            String line = GTestOutputLines.suiteStart(testCount, groupSizes.size());
+            beforeEvent(line);
+
+            runState = RunState.Running;
+            runTestCount = 0;
+            runGroupCount = 0;
+            passedTestCount = 0;
+            failedTests.clear();
+            unechoed.clear();
+
+            emit(new SuiteStart(line, testCount, groupSizes.size(), iteration));
+            emitUnechoed(new TestOutput(GTestOutputLines.envSetUp(), Optional.empty(), Optional.empty()));
+        }
+
+        private void groupStart(String groupName) {
+            int testsInGroup = groupSizes.getOrDefault(groupName, 0);
+            String line = GTestOutputLines.groupStart(groupName, testsInGroup);
+            beforeEvent(line);
+
+            currentGroupId = symbols.group(groupName);
+            currentGroup = Optional.of(symbols.groupName(currentGroupId));
+            testsInCurrentGroup = 0;
+            ++runGroupCount;
+
+            emit(new GroupStart(line, currentGroup.get(), testsInGroup, currentGroupId));
+        }
+
+        private void testStart(String testName) {
+            if (!currentGroup.isPresent()) {
+                //test out of any group; shouldn't happen with a sane stream
+                groupStart("");
+            }
+            String groupName = currentGroup.get();
+            String line = GTestOutputLines.testStart(groupName, testName);
+            beforeEvent(line);
+
+            currentTestId = symbols.test(currentGroupId, testName);
+            currentTest = Optional.of(symbols.testName(currentTestId));
+            ++testsInCurrentGroup;
+            ++runTestCount;
+
+            emit(new TestStart(line, groupName, currentTest.get(), currentGroupId, currentTestId));
+        }
+
+        private void testEnd(boolean passed, OptionalInt elapsedTime) {
+            String groupName = currentGroup.orElse("");
+            String testName = currentTest.orElse("");
+            int testId = currentTestId;
+            String line = passed
+                    ? GTestOutputLines.testPassed(groupName, testName, elapsedTime)
+                    : GTestOutputLines.testFailed(groupName, testName, elapsedTime);
+            beforeEvent(line);
+
+            currentTest = Optional.empty();
+            currentTestId = TestSymbols.NONE;
+
+            if (passed) {
+                ++passedTestCount;
+                emit(new TestPassed(line, groupName, testName, elapsedTime, currentGroupId, testId));
+            } else {
+                failedTests.add(new FailedTestSummary(GTestOutputLines.failedTestSummary(groupName, testName), groupName, testName));
+                emit(new TestFailed(line, groupName, testName, elapsedTime, currentGroupId, testId));
+            }
+        }
+
+        private void groupEnd(OptionalInt elapsedTime) {
+            String groupName = currentGroup.orElse("");
+            int groupId = currentGroupId;
+            String line = GTestOutputLines.groupEnd(groupName, testsInCurrentGroup, elapsedTime);
+            beforeEvent(line);
+
+            currentGroup = Optional.empty();
+            currentGroupId = TestSymbols.NONE;
+
+            //blank line GTest prints after the group comes with stdout
+            emit(new GroupEnd(line, groupName, testsInCurrentGroup, groupId));
+        }
+
+        private void iterationEnd(OptionalInt elapsedTime) {
+            String line = GTestOutputLines.suiteEnd(runTestCount, runGroupCount, elapsedTime);
+            beforeEvent(line);
+
+            //tear-down echo is awaited since the event was read
+            subscriber.onNext(new TestOutput(GTestOutputLines.envTearDown(), Optional.empty(), Optional.empty()));
+            emit(new SuiteEnd(line, runTestCount, runGroupCount));
+            emitUnechoed(new PassedTestsSummary(GTestOutputLines.passedTestsSummary(passedTestCount), passedTestCount));
+
+            if (!failedTests.isEmpty()) {
+                emitUnechoed(new FailedTestsSummary(GTestOutputLines.failedTestsSummary(failedTests.size()), failedTests.size()));
+                failedTests.forEach(this::emitUnechoed);
+            }
+
+            runState = RunState.Finished;
+        }
+
+        private int intField(String name) {
+            try {
+                return Integer.parseInt(fields.getOrDefault(name, "0"));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Elapsed time is sent as e. g. "12ms"
+         */
+        private OptionalInt elapsedTime() {
+            String value = fields.get("elapsed_time");
+            if (value == null || !value.endsWith("ms")) {
+                return OptionalInt.empty();
+            }
+
+            try {
+                return OptionalInt.of(Integer.parseInt(value.substring(0, value.length() - 2)));
+            } catch (NumberFormatException e) {
+                return OptionalInt.empty();
+            }
+        }
+
+        private void parseFields(String line) {
+            fields.clear();
+
+            int fieldStart = 0;
+            while (fieldStart <= line.length()) {
+                int fieldEnd = line.indexOf('&', fieldStart);
+                if (fieldEnd == -1) {
+                    fieldEnd = line.length();
+                }
+
+                int separator = line.indexOf('=', fieldStart);
+                if (separator != -1 && separator < fieldEnd) {
+                    fields.put(line.substring(fieldStart, separator), decode(line, separator + 1, fieldEnd));
+                }
+
+                fieldStart = fieldEnd + 1;
+            }
+        }
+    }
+
+    /**
+     * Decodes "%XX" escapes, which GTest uses for '%', '&amp;', '=' and line feeds
+     */
+    static String decode(String s, int from, int to) {
+        int escape = s.indexOf('%', from);
+        if (escape == -1 || escape >= to) {
+            return s.substring(from, to);
+        }
+
+        StringBuilder result = new StringBuilder(to - from);
+        for (int i = from; i < to; ++i) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 3 <= to) {
+                int hi = Character.digit(s.charAt(i + 1), 16);
+                int lo = Character.digit(s.charAt(i + 2), 16);
+                if (hi != -1 && lo != -1) {
+                    result.append((char) (hi * 16 + lo));
+                    i += 2;
+                    continue;
+                }
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
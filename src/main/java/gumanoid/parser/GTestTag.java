@@ -0,0 +1,119 @@
+package gumanoid.parser;
+
+/**
+ * Fixed-width tags which GTest prints at the beginning of its meta
+ * output lines. Used as the first stage of GTest output classification:
+ * a line is checked against its tag with a single char switch, so
+ * plain test output never reaches regular expressions
+ */
+enum GTestTag {
+    Banner("[==========]"),
+    Section("[----------]"),
+    Run("[ RUN      ]"),
+    Ok("[       OK ]"),
+    Passed("[  PASSED  ]"),
+    Failed("[  FAILED  ]"),
+    None("");
+
+    /**
+     * All GTest tags (except {@link #None}) have the same width
+     */
+    static final int WIDTH = 12;
+
+    final String text;
+
+    GTestTag(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Tells which tag the line starts with
+     *
+     * @param line      output line
+     * @return tag the line starts with, or {@link #None} if the line
+     * doesn't start with any of GTest tags
+     */
+    static GTestTag of(CharSequence line) {
+        return of(line, 0);
+    }
+
+    /**
+     * Tells which tag the line has at the given index
+     *
+     * @return tag which starts at <code>start</code>, or {@link #None}
+     */
+    static GTestTag of(CharSequence line, int start) {
+        if (line.length() - start < WIDTH || line.charAt(start) != '[' || line.charAt(start + WIDTH - 1) != ']') {
+            return None;
+        }
+
+        //fourth char is the only one which differs for each tag
+        GTestTag candidate;
+        switch (line.charAt(start + 3)) {
+            case '=': candidate = Banner; break;
+            case '-': candidate = Section; break;
+            case 'U': candidate = Run; break;
+            case ' ': candidate = Ok; break;
+            case 'P': candidate = Passed; break;
+            case 'F': candidate = Failed; break;
+            default: return None;
+        }
+
+        for (int i = 1; i < WIDTH - 1; ++i) {
+            if (line.charAt(start + i) != candidate.text.charAt(i)) {
+                return None;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Finds a tag inside the line. GTest's line is printed after test's
+     * output without a line break if the output doesn't end with one, so
+     * such lines have a tag which {@link #of(CharSequence)} doesn't see
+     *
+     * @return index of the first tag at or after <code>from</code>, or -1
+     */
+    static int indexOf(CharSequence line, int from) {
+        for (int i = from; i + WIDTH <= line.length(); ++i) {
+            if (line.charAt(i) == '[' && of(line, i) != None) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as {@link #of(CharSequence)}, but for a line which is not decoded
+     * yet. Tags are ASCII, so the check is valid for any ASCII-compatible
+     * encoding of the line
+     *
+     * @param bytes     buffer holding the line
+     * @param offset    index of the first byte of the line
+     * @param length    line length in bytes, not including line terminator
+     * @return tag the line starts with, or {@link #None}
+     */
+    static GTestTag of(byte[] bytes, int offset, int length) {
+        if (length < WIDTH || bytes[offset] != '[' || bytes[offset + WIDTH - 1] != ']') {
+            return None;
+        }
+
+        GTestTag candidate;
+        switch (bytes[offset + 3]) {
+            case '=': candidate = Banner; break;
+            case '-': candidate = Section; break;
+            case 'U': candidate = Run; break;
+            case ' ': candidate = Ok; break;
+            case 'P': candidate = Passed; break;
+            case 'F': candidate = Failed; break;
+            default: return None;
+        }
+
+        for (int i = 1; i < WIDTH - 1; ++i) {
+            if (bytes[offset + i] != candidate.text.charAt(i)) {
+                return None;
+            }
+        }
+        return candidate;
+    }
+}
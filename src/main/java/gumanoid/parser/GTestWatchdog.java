@@ -0,0 +1,172 @@
+package gumanoid.parser;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.TestFailed;
+import gumanoid.event.GTestOutputEvent.TestOutput;
+import gumanoid.event.GTestOutputEvent.TestPassed;
+import gumanoid.event.GTestOutputEvent.TestStart;
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fails a test which runs longer than its timeout: when a test is started,
+ * a timer is set, and if the test is still running when the timer goes off,
+ * a made-up {@link TestFailed} event is emitted for it, and the owner of the
+ * watched events is told to stop the executable. Events which follow are
+ * dropped, since the executable is going to be stopped anyway.
+ * <p/>
+ * Timers of all watched runs share one thread
+ */
+public class GTestWatchdog {
+    /**
+     * Number of the latest output lines of the timed out test which are
+     * kept for diagnostics
+     */
+    public static final int KEPT_OUTPUT_LINES = 50;
+
+    public static class Expiry {
+        /**
+         * Full test name, e. g. "SomeGroup.SomeTest"
+         */
+        public final String test;
+        public final int timeoutMs;
+        /**
+         * Up to {@link #KEPT_OUTPUT_LINES} latest output lines of the test
+         */
+        public final List<String> lastOutput;
+
+        public Expiry(String test, int timeoutMs, List<String> lastOutput) {
+            this.test = test;
+            this.timeoutMs = timeoutMs;
+            this.lastOutput = lastOutput;
+        }
+    }
+
+    private final Function<String, OptionalInt> timeouts;
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("test watchdog").setDaemon(true).build());
+
+    /**
+     * @param timeouts  timeout of the test by its full name, e. g.
+     *                  "SomeGroup.SomeTest", or empty if the test may run
+     *                  as long as it takes
+     */
+    public GTestWatchdog(Function<String, OptionalInt> timeouts) {
+        this.timeouts = timeouts;
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param events    events of one run of the executable
+     * @param onExpired called when a test times out, after its failure is
+     *                  emitted; expected to stop the executable
+     * @return the same events, until a test times out
+     */
+    public Observable<GTestOutputEvent> watch(Observable<GTestOutputEvent> events, Consumer<Expiry> onExpired) {
+        return Observable.create(subscriber -> {
+            Watch watch = new Watch(subscriber, onExpired);
+            subscriber.add(Subscriptions.create(watch::stopTimer));
+            subscriber.add(events.subscribe(watch));
+        });
+    }
+
+    private class Watch extends Subscriber<GTestOutputEvent> {
+        private final Subscriber<? super GTestOutputEvent> subscriber;
+        private final Consumer<Expiry> onExpired;
+
+        //guarded by this; events of the run and timer's expiry may come at the same time
+        private TestStart runningTest;
+        private long runningTestStart;
+        private ScheduledFuture<?> runningTestTimer;
+        private final ArrayDeque<String> runningTestOutput = new ArrayDeque<>();
+        private boolean isExpired;
+
+        Watch(Subscriber<? super GTestOutputEvent> subscriber, Consumer<Expiry> onExpired) {
+            this.subscriber = subscriber;
+            this.onExpired = onExpired;
+        }
+
+        @Override
+        public synchronized void onNext(GTestOutputEvent e) {
+            if (isExpired) {
+                return;
+            }
+
+            if (e instanceof TestStart) {
+                testStarted((TestStart) e);
+            } else if (e instanceof TestPassed || e instanceof TestFailed) {
+                stopTimer();
+                runningTest = null;
+            } else if (e instanceof TestOutput && runningTest != null) {
+                if (runningTestOutput.size() == KEPT_OUTPUT_LINES) {
+                    runningTestOutput.removeFirst();
+                }
+                runningTestOutput.addLast(e.outputLine);
+            }
+
+            subscriber.onNext(e);
+        }
+
+        private void testStarted(TestStart test) {
+            stopTimer();
+            runningTest = test;
+            runningTestStart = System.nanoTime();
+            runningTestOutput.clear();
+
+            OptionalInt timeout = timeouts.apply(test.groupName + "." + test.testName);
+            if (timeout.isPresent()) {
+                int timeoutMs = timeout.getAsInt();
+                runningTestTimer = timer.schedule(() -> expire(test, timeoutMs), timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void expire(TestStart test, int timeoutMs) {
+            Expiry expiry;
+            synchronized (this) {
+                if (isExpired || runningTest != test) {
+                    return; //test ended while the timer was going off
+                }
+
+                isExpired = true;
+                runningTestTimer = null;
+                int elapsedMs = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runningTestStart);
+                subscriber.onNext(new TestFailed(
+                        GTestOutputLines.testTimedOut(test.groupName, test.testName, timeoutMs),
+                        test.groupName, test.testName, OptionalInt.of(elapsedMs), test.groupId, test.testId));
+                expiry = new Expiry(test.groupName + "." + test.testName, timeoutMs, new ArrayList<>(runningTestOutput));
+            }
+            onExpired.accept(expiry);
+        }
+
+        synchronized void stopTimer() {
+            if (runningTestTimer != null) {
+                runningTestTimer.cancel(false);
+                runningTestTimer = null;
+            }
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            stopTimer();
+            subscriber.onCompleted();
+        }
+
+        @Override
+        public synchronized void onError(Throwable e) {
+            stopTimer();
+            subscriber.onError(e);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package gumanoid.parser;
 
-import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -13,68 +12,196 @@ import java.util.regex.Pattern;
 class ParserCore {
     private ParserCore() {}
 
+    /**
+     * Parser which reports a match through a reusable {@link Match} view
+     * instead of allocating an array of captured strings for each line
+     */
     @FunctionalInterface
-    interface LineParser {
-        Optional<String[]> parse(String line);
+    interface MatchParser {
+        /**
+         * @param line      input line
+         * @return whether the line is matched (and consumed)
+         */
+        boolean parse(CharSequence line);
+    }
+
+    /**
+     * Mutable view of capture groups of the last successful match.
+     * <p/>
+     * Capture groups are exposed as slices over the input line, so no
+     * strings are created until {@link #string(int)} is called. The view
+     * (as well as slices obtained from it) is valid only until the next
+     * line is parsed by the same parser
+     */
+    static final class Match {
+        private final Matcher matcher;
+        private final Slice[] slices;
+        private CharSequence line;
+
+        private Match(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+            //group(0) is entire string, which is not included in groupCount()
+            this.slices = new Slice[matcher.groupCount() + 1];
+            for (int i = 0; i < slices.length; ++i) {
+                slices[i] = new Slice();
+            }
+        }
 
-        default LineParser then(Consumer<String[]> consume) {
+        /**
+         * Constructs MatchParser which passes this view to <code>consume</code>
+         * when input line matches
+         */
+        MatchParser then(Consumer<? super Match> consume) {
             return line -> {
-                Optional<String[]> result = parse(line);
-                result.ifPresent(consume);
-                return result;
+                if (!find(line)) {
+                    return false;
+                }
+
+                consume.accept(this);
+                return true;
             };
         }
+
+        private boolean find(CharSequence line) {
+            this.line = line;
+            matcher.reset(line);
+            return matcher.find();
+        }
+
+        CharSequence line() {
+            return line;
+        }
+
+        int groupCount() {
+            return slices.length - 1;
+        }
+
+        /**
+         * @return whether optional capture group has participated in the match
+         */
+        boolean isPresent(int group) {
+            return matcher.start(group) != -1;
+        }
+
+        /**
+         * @return captured value as a slice over input line, or null if
+         * the group hasn't participated in the match
+         */
+        CharSequence group(int group) {
+            int start = matcher.start(group);
+            return start != -1 ? slices[group].reset(line, start, matcher.end(group)) : null;
+        }
+
+        /**
+         * @return captured value as a string, or null if the group hasn't
+         * participated in the match
+         */
+        String string(int group) {
+            int start = matcher.start(group);
+            if (start == -1) {
+                return null;
+            }
+
+            int end = matcher.end(group);
+            return start == 0 && end == line.length()
+                    ? line.toString()
+                    : line.subSequence(start, end).toString();
+        }
+
+        /**
+         * Parses captured digits in place
+         *
+         * @throws NumberFormatException if group hasn't participated in the
+         * match, or captured value is not a non-negative integer
+         */
+        int intGroup(int group) {
+            int start = matcher.start(group);
+            int end = matcher.end(group);
+            if (start == -1 || start == end) {
+                throw new NumberFormatException("No digits in group " + group);
+            }
+
+            int result = 0;
+            for (int i = start; i < end; ++i) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("For input string: \"" + line.subSequence(start, end) + "\"");
+                }
+
+                try {
+                    result = Math.addExact(Math.multiplyExact(result, 10), c - '0');
+                } catch (ArithmeticException e) {
+                    throw new NumberFormatException("Out of int range: \"" + line.subSequence(start, end) + "\"");
+                }
+            }
+            return result;
+        }
     }
 
-    /**
-     * Acts like an 'or' with short-circuiting
-     *
-     * @param first
-     * @param others
-     * @return
-     */
-    static LineParser firstOf(LineParser first, LineParser... others) {
-        LineParser result = first;
-
-        for (LineParser next : others) {
-            LineParser chain = result;
-            result = (line) -> {
-                Optional<String[]> parseResult = chain.parse(line);
-                return parseResult.isPresent()? parseResult : next.parse(line);
-            };
+    private static final class Slice implements CharSequence {
+        private CharSequence source;
+        private int start;
+        private int end;
+
+        private Slice reset(CharSequence source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return source.charAt(start + index);
         }
 
-        return result;
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return source.subSequence(this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return source.subSequence(start, end).toString();
+        }
+    }
+
+    /**
+     * Acts like an 'or' with short-circuiting. Parsers are tried in a plain
+     * loop, without composing wrappers
+     */
+    static MatchParser firstMatchOf(MatchParser... parsers) {
+        MatchParser[] copy = parsers.clone();
+        return line -> {
+            for (MatchParser parser : copy) {
+                if (parser.parse(line)) {
+                    return true;
+                }
+            }
+            return false;
+        };
     }
 
     /**
      * Second stage of GTest output classification.
      * <p/>
-     * Constructs regexp-based LineParser. If input matches
-     * <code>pattern</code>, then input line and <code>pattern</code> capture
-     * groups are returned. Otherwise empty optional is returned
+     * Constructs regexp-based parser. If input matches <code>pattern</code>,
+     * then input line and <code>pattern</code> capture groups are reported
+     * via reusable {@link Match} view; use {@link Match#then(Consumer)} to get
+     * a MatchParser
      *
      * @param pattern       regular expression to match input line against
-     * @return LineParser which tells whether input matches <code>pattern</code>
-     * and, if yes, returns also array of values (capture groups) parsed from input
      */
-    static LineParser ifMatches(Pattern pattern) {
-        return (line) -> {
-            Matcher matcher = pattern.matcher(line);
-            return matcher.find()? Optional.of(getArgs(matcher)) : Optional.empty();
-        };
+    static Match matching(Pattern pattern) {
+        return new Match(pattern);
     }
 
-    static LineParser ifMatches(String regexp) {
-        return ifMatches(Pattern.compile(regexp));
-    }
-
-    private static String[] getArgs(Matcher matcher) {
-        //group(0) is entire string, which is not included in groupCount()
-        String[] arguments = new String[matcher.groupCount() + 1];
-        for (int i = 0; i < arguments.length; ++i) {
-            arguments[i] = matcher.group(i);
-        }
-        return arguments;
+    static Match matching(String regexp) {
+        return matching(Pattern.compile(regexp));
     }
 }
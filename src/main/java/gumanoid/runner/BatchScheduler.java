@@ -0,0 +1,163 @@
+package gumanoid.runner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs a list of tests by small batches, on a pool of workers: each
+ * worker takes the next batch from the shared queue, runs a process for
+ * it and waits for it to finish, until the queue is empty. Unlike static
+ * sharding, a worker which got fast tests just takes more batches, so
+ * slow tests don't leave other workers idle for long.
+ * <p/>
+ * Output of each batch process is read on the worker's thread
+ */
+public class BatchScheduler implements TestRunner {
+    /**
+     * Batches are made small enough for each worker to get about this many
+     * of them; more batches balance load better, but each one costs a
+     * process launch
+     */
+    public static final int BATCHES_PER_WORKER = 4;
+
+    private final int workerCount;
+    private final Function<List<String>, ProcessBuilder> launcher;
+    private final Queue<List<String>> batches = new ConcurrentLinkedQueue<>();
+    private final PublishSubject<ProcessModel> batchStarted = PublishSubject.create();
+    private final PublishSubject<Throwable> batchFailed = PublishSubject.create();
+
+    private final Set<ProcessModel> runningBatches = ConcurrentHashMap.newKeySet();
+    private volatile boolean isCancelled;
+
+    /**
+     * @param tests         full names of tests to run, e. g. "SomeGroup.SomeTest"
+     * @param launcher      creates process which runs given tests
+     */
+    public BatchScheduler(List<String> tests, int workerCount, Function<List<String>, ProcessBuilder> launcher) {
+        this(workerCount, Lists.partition(tests, batchSize(tests.size(), workerCount)), launcher);
+    }
+
+    private BatchScheduler(int workerCount, List<List<String>> batches, Function<List<String>, ProcessBuilder> launcher) {
+        Preconditions.checkArgument(workerCount > 0);
+
+        this.workerCount = workerCount;
+        this.launcher = launcher;
+        for (List<String> batch : batches) {
+            this.batches.addAll(TestFilters.split(batch)); //batch is run by one filter
+        }
+    }
+
+    /**
+     * Creates scheduler which runs predefined batches, in the given order,
+     * e. g. made by {@link ShardPlanner}; a batch whose filter would be
+     * too long is run by several processes
+     */
+    public static BatchScheduler ofBatches(List<List<String>> batches, int workerCount, Function<List<String>, ProcessBuilder> launcher) {
+        return new BatchScheduler(workerCount, batches, launcher);
+    }
+
+    private static int batchSize(int testCount, int workerCount) {
+        int batchCount = workerCount * BATCHES_PER_WORKER;
+        return Math.max(1, (testCount + batchCount - 1) / batchCount);
+    }
+
+    @Override
+    public int run() throws InterruptedException {
+        AtomicInteger exitCode = new AtomicInteger(0);
+
+        List<Callable<Void>> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; ++i) {
+            workers.add(() -> {
+                List<String> batch;
+                while (!isCancelled && (batch = batches.poll()) != null) {
+                    int batchExitCode = runBatch(launcher.apply(batch));
+                    if (batchExitCode != 0) {
+                        exitCode.compareAndSet(0, batchExitCode);
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            executor.invokeAll(workers);
+        } finally {
+            executor.shutdown();
+            synchronized (batchStarted) {
+                batchStarted.onCompleted();
+            }
+        }
+
+        return exitCode.get();
+    }
+
+    private int runBatch(ProcessBuilder builder) {
+        int exitCode = -1; //stays so if process' output couldn't be read
+
+        try {
+            ProcessModel process = new ProcessModel(builder.start());
+            runningBatches.add(process);
+            if (isCancelled) {
+                process.cancel();
+            }
+
+            synchronized (batchStarted) {
+                batchStarted.onNext(process);
+            }
+
+            try {
+                exitCode = process.start();
+            } finally {
+                runningBatches.remove(process);
+            }
+        } catch (Exception e) {
+            synchronized (batchFailed) {
+                batchFailed.onNext(e);
+            }
+        }
+
+        return exitCode;
+    }
+
+    @Override
+    public void cancel() {
+        isCancelled = true;
+        runningBatches.forEach(ProcessModel::cancel);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Batch processes, emitted on workers' threads
+     */
+    @Override
+    public Observable<ProcessModel> onProcessStarted() {
+        return batchStarted.asObservable();
+    }
+
+    /**
+     * Emitted on workers' threads; the rest of batches are run
+     */
+    @Override
+    public Observable<Throwable> onProcessFailed() {
+        return batchFailed.asObservable();
+    }
+}
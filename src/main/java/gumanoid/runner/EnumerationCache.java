@@ -0,0 +1,247 @@
+package gumanoid.runner;
+
+import com.google.common.base.Objects;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Output of <code>--gtest_list_tests</code> of one executable, kept in a
+ * file between sessions, so tests don't have to be enumerated again until
+ * the executable is rebuilt. Output is kept for each filter it was listed
+ * with, up to {@link #MAX_FILTERS} latest ones.
+ * <p/>
+ * Executable is considered the same if it's at the same path (which is
+ * part of the cache's file name), and has the same size, modification time
+ * and content hash. Hash is only computed if size and modification
+ * time match, and is computed once per session for each of them.
+ * <p/>
+ * Thread-safe
+ */
+public class EnumerationCache {
+    /**
+     * Outputs of the least recently listed filters are dropped, e. g.
+     * of reruns of failed tests
+     */
+    public static final int MAX_FILTERS = 16;
+
+    private static final int MAGIC = 0x47454e55; //"GENU"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final File executable;
+
+    private Fingerprint fingerprint; //of the executable, when outputs were listed
+    private final LinkedHashMap<String, List<String>> outputs = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hashedSize = -1;
+    private long hashedModificationTime;
+    private HashCode hash;
+
+    private EnumerationCache(File file, File executable) {
+        this.file = file;
+        this.executable = executable;
+    }
+
+    /**
+     * Loads outputs which were listed before; cache is empty if there is no
+     * file, or it can't be read
+     *
+     * @param storeDir  directory where files of all executables are kept
+     */
+    public static EnumerationCache forExecutable(File storeDir, String testExePath) {
+        EnumerationCache result = new EnumerationCache(
+                StoreFiles.storeFile(storeDir, testExePath, ".enumeration"),
+                new File(testExePath).getAbsoluteFile());
+        try {
+            result.load();
+        } catch (IOException e) {
+            e.printStackTrace(); //tests will be listed again
+            result.fingerprint = null;
+            result.outputs.clear();
+        }
+        return result;
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an enumeration cache, or of unknown version: " + file);
+            }
+
+            fingerprint = new Fingerprint(in.readLong(), in.readLong(), HashCode.fromString(in.readUTF()));
+
+            int filterCount = in.readInt();
+            for (int i = 0; i < filterCount; ++i) {
+                String filter = readString(in);
+                int lineCount = in.readInt();
+                List<String> lines = new ArrayList<>(lineCount);
+                for (int j = 0; j < lineCount; ++j) {
+                    lines.add(readString(in));
+                }
+                outputs.put(filter, lines);
+            }
+        }
+    }
+
+    /**
+     * @param filter    arguments tests were listed with, e. g.
+     *                  "--gtest_filter=...", or empty string if there were none
+     * @return output of --gtest_list_tests, if the executable wasn't changed
+     * since the output was put
+     */
+    public synchronized Optional<List<String>> get(String filter) {
+        List<String> lines = outputs.get(filter);
+        if (lines == null) {
+            return Optional.empty();
+        }
+
+        try {
+            if (fingerprint == null || !fingerprint.matches(executable, this::hash)) {
+                return Optional.empty();
+            }
+        } catch (IOException e) {
+            return Optional.empty(); //executable is gone or can't be read; let enumeration fail
+        }
+        return Optional.of(lines);
+    }
+
+    /**
+     * Keeps output of --gtest_list_tests, listed by the current executable,
+     * and writes all kept outputs to the file
+     */
+    public synchronized void put(String filter, List<String> lines) throws IOException {
+        Fingerprint current = new Fingerprint(executable.length(), executable.lastModified(), hash(executable));
+        if (!current.equals(fingerprint)) {
+            outputs.clear(); //listed by another build
+            fingerprint = current;
+        }
+
+        outputs.put(filter, new ArrayList<>(lines));
+        for (Iterator<String> i = outputs.keySet().iterator(); outputs.size() > MAX_FILTERS; ) {
+            i.next();
+            i.remove();
+        }
+
+        save();
+    }
+
+    private void save() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(dir.toPath());
+
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint.size);
+            out.writeLong(fingerprint.modificationTime);
+            out.writeUTF(fingerprint.hash.toString());
+
+            out.writeInt(outputs.size());
+            for (Map.Entry<String, List<String>> e : outputs.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (String line : e.getValue()) {
+                    writeString(out, line);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hash of the executable's content; reused while its size and
+     * modification time stay the same
+     */
+    private HashCode hash(File executable) throws IOException {
+        long size = executable.length();
+        long modificationTime = executable.lastModified();
+        if (hash == null || size != hashedSize || modificationTime != hashedModificationTime) {
+            hash = com.google.common.io.Files.asByteSource(executable).hash(Hashing.murmur3_128());
+            hashedSize = size;
+            hashedModificationTime = modificationTime;
+        }
+        return hash;
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF}, isn't limited to 64K, which
+     * a filter of many tests may exceed
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface Hasher {
+        HashCode hash(File file) throws IOException;
+    }
+
+    private static class Fingerprint {
+        final long size;
+        final long modificationTime;
+        final HashCode hash;
+
+        Fingerprint(long size, long modificationTime, HashCode hash) {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.hash = hash;
+        }
+
+        /**
+         * Content is only hashed if size and modification time match
+         */
+        boolean matches(File executable, Hasher hasher) throws IOException {
+            if (!executable.isFile()) {
+                throw new IOException("Not a file: " + executable);
+            }
+            return size == executable.length()
+                    && modificationTime == executable.lastModified()
+                    && hash.equals(hasher.hash(executable));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Fingerprint that = (Fingerprint) o;
+            return size == that.size &&
+                    modificationTime == that.modificationTime &&
+                    Objects.equal(hash, that.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(size, modificationTime, hash);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package gumanoid.runner;
+
+/**
+ * Line of process output, tagged with the stream it's read from
+ */
+public class OutputLine {
+    public enum Stream {
+        Stdout, Stderr
+    }
+
+    public final Stream stream;
+    /**
+     * {@link System#nanoTime()} at the moment line was read; lines of both
+     * streams are emitted in order of these timestamps
+     */
+    public final long readTime;
+    public final String text;
+
+    public OutputLine(Stream stream, long readTime, String text) {
+        this.stream = stream;
+        this.readTime = readTime;
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return stream + ": " + text;
+    }
+}
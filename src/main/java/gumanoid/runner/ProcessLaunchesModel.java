@@ -1,36 +1,216 @@
 package gumanoid.runner;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import rx.Observable;
+import rx.subjects.BehaviorSubject;
 import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Represents a series of process launches (generally with different arguments)
+ * Represents a series of process launches (generally with different arguments),
+ * which may run at the same time.
+ * <p/>
+ * Each launch is a {@link Launch} handle with its own output, exit code and
+ * cancellation; observables of the model itself report all launches. Output
+ * of each process is read on a thread of a pool, which is bounded by the max
+ * number of running processes: launches above it wait until other processes
+ * finish. Stderr of each process is still drained on its own thread, see
+ * {@link ProcessModel}
  *
  * Created by Gumanoid on 19.01.2016.
  */
 public class ProcessLaunchesModel {
+    /**
+     * Max number of processes which are run at the same time by default
+     */
+    public static final int DEFAULT_MAX_RUNNING = 4;
+
     private final PublishSubject<ProcessBuilder> starting = PublishSubject.create();
     private final PublishSubject<ProcessModel> started = PublishSubject.create();
     private final PublishSubject<ProcessModel> finished = PublishSubject.create();
+    private final PublishSubject<Throwable> failed = PublishSubject.create();
+
+    private final ThreadPoolExecutor readers;
+    private final Set<Launch> launches = ConcurrentHashMap.newKeySet();
+
+    public ProcessLaunchesModel() {
+        this(DEFAULT_MAX_RUNNING);
+    }
+
+    /**
+     * @param maxRunning    max number of processes which are run at the same time
+     */
+    public ProcessLaunchesModel(int maxRunning) {
+        Preconditions.checkArgument(maxRunning > 0);
 
-    private ProcessModel process;
+        readers = new ThreadPoolExecutor(maxRunning, maxRunning, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("process reader %d").setDaemon(true).build());
+        readers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Launch of a process; its observables are to be subscribed to before
+     * it's started, since output of the process isn't kept
+     */
+    public class Launch {
+        private final ProcessBuilder builder;
+        private final BehaviorSubject<ProcessModel> process = BehaviorSubject.create();
+        private final BehaviorSubject<Integer> exitCode = BehaviorSubject.create();
+        private final AtomicBoolean isStarted = new AtomicBoolean(false);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile ProcessModel runningProcess;
+        private volatile boolean isCancelled;
+        private volatile int lastExitCode = -1;
+
+        private Launch(ProcessBuilder builder) {
+            this.builder = builder;
+        }
 
+        /**
+         * Queues the process to be started as soon as there is a free reader
+         * thread; returns immediately
+         */
+        public Launch start() {
+            Preconditions.checkState(isStarted.compareAndSet(false, true));
+
+            launches.add(this);
+            readers.execute(this::run);
+            return this;
+        }
+
+        private void run() {
+            try {
+                if (isCancelled) {
+                    return;
+                }
+
+                emit(starting, builder);
+                ProcessModel p = new ProcessModel(builder.start());
+                runningProcess = p;
+                if (isCancelled) {
+                    p.cancel();
+                }
+
+                p.getExitCode().subscribe(code -> lastExitCode = code);
+                p.getExitCode().subscribe(exitCode);
+                process.onNext(p);
+                emit(started, p);
+
+                p.start();
+                process.onCompleted(); //not before, reading may fail too
+                emit(finished, p);
+            } catch (Exception e) {
+                process.onError(e);
+                emit(failed, e);
+            } finally {
+                process.onCompleted();
+                exitCode.onCompleted();
+                launches.remove(this);
+                done.countDown();
+            }
+        }
+
+        /**
+         * Stops the process, or prevents it from starting
+         */
+        public void cancel() {
+            isCancelled = true;
+
+            ProcessModel p = runningProcess;
+            if (p != null) {
+                p.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+
+        /**
+         * Started process, emitted on its reader thread before its output is
+         * read; completes when its output is read, or without emitting if the
+         * launch is cancelled before the process is started; fails if it can't
+         * be started or read
+         */
+        public Observable<ProcessModel> onStarted() {
+            return process.asObservable();
+        }
+
+        /**
+         * Output lines of the process, see {@link ProcessModel#getOutput()}
+         */
+        public Observable<String> getOutput() {
+            return process.switchMap(ProcessModel::getOutput);
+        }
+
+        public Observable<String> getErrorOutput() {
+            return process.switchMap(ProcessModel::getErrorOutput);
+        }
+
+        /**
+         * Completes without emitting if the process wasn't run
+         */
+        public Observable<Integer> getExitCode() {
+            return exitCode.asObservable();
+        }
+
+        /**
+         * Waits until the process is finished, or the launch is cancelled
+         * before it's started
+         *
+         * @return exit code of the process, or -1 if it wasn't run
+         */
+        public int waitFor() throws InterruptedException {
+            done.await();
+            return lastExitCode;
+        }
+    }
+
+    /**
+     * Creates launch which is started by {@link Launch#start()}, after its
+     * observables are subscribed to
+     */
+    public Launch prepare(ProcessBuilder builder) {
+        return new Launch(builder);
+    }
+
+    /**
+     * Launches process and waits until it's finished
+     */
     public void start(ProcessBuilder builder) {
+        Launch launch = prepare(builder).start();
         try {
-            starting.onNext(builder);
-            process = new ProcessModel(builder.start());
-            started.onNext(process);
-            process.start();
-            finished.onNext(process);
-            process = null;
-        } catch (Exception e) {
-            started.onError(e);
+            launch.waitFor();
+        } catch (InterruptedException e) {
+            launch.cancel();
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Cancels all launches which are running or waiting to be started
+     */
     public void cancel() {
-        if (process != null) {
-            process.cancel();
+        launches.forEach(Launch::cancel);
+    }
+
+    /**
+     * Events of launches, which run on different threads, are emitted one
+     * at a time
+     */
+    private <T> void emit(Subject<T, T> subject, T value) {
+        synchronized (subject) {
+            subject.onNext(value);
         }
     }
 
@@ -38,6 +218,9 @@ public class ProcessLaunchesModel {
         return starting.asObservable();
     }
 
+    /**
+     * Processes of all launches, see {@link Launch#onStarted()}
+     */
     public Observable<ProcessModel> onStarted() {
         return started.asObservable();
     }
@@ -45,4 +228,11 @@ public class ProcessLaunchesModel {
     public Observable<ProcessModel> onFinished() {
         return finished.asObservable();
     }
+
+    /**
+     * Errors of launches which couldn't be started or read
+     */
+    public Observable<Throwable> onFailed() {
+        return failed.asObservable();
+    }
 }
@@ -1,21 +1,35 @@
 package gumanoid.runner;
 
 import rx.Observable;
+import rx.exceptions.OnErrorNotImplementedException;
 import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Represents state of some launched external process. Allows to
  * start process, cancel process, listen to process output, and
  * get notification when process started and stopped
+ * <p/>
+ * Stderr is drained on its own thread while stdout is read, whether
+ * anybody listens to it or not, so a process which writes a lot to stderr
+ * doesn't get stuck on a full pipe
  *
  * Created by Gumanoid on 17.01.2016.
  */
 public class ProcessModel {
+    private static final int RAW_CHUNK_SIZE = 64 * 1024;
+
     private final BehaviorSubject<String> output = BehaviorSubject.create();
+    private final PublishSubject<String> errorOutput = PublishSubject.create();
+    private final PublishSubject<OutputLine> taggedOutput = PublishSubject.create();
+    private final PublishSubject<ByteBuffer> rawOutput = PublishSubject.create();
     private final BehaviorSubject<Integer> exitCode = BehaviorSubject.create();
 
     private final Process process;
@@ -25,17 +39,85 @@ public class ProcessModel {
         this.process = process;
     }
 
-    public void start() throws Exception {
+    /**
+     * Starts reading output of the process, and returns when it's read and
+     * the process is over
+     *
+     * @return exit code of the process, as emitted by {@link #getExitCode()}
+     */
+    public int start() throws Exception {
+        Thread errorReader = new Thread(this::readErrorOutput, "stderr reader");
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        if (rawOutput.hasObservers()) {
+            readRawOutput();
+        } else {
+            readOutputLines();
+        }
+
+        errorReader.join();
+        synchronized (taggedOutput) {
+            taggedOutput.onCompleted();
+        }
+
+        int code = process.waitFor(); //todo pass waitFor's exceptions to observers?
+        exitCode.onNext(code);
+        exitCode.onCompleted();
+        return code;
+    }
+
+    private void readOutputLines() throws Exception {
         try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
-            while ((line = r.readLine()) != null && output.hasObservers()) {
+            while ((line = r.readLine()) != null && (output.hasObservers() || taggedOutput.hasObservers())) {
                 output.onNext(line);
+                emitTagged(OutputLine.Stream.Stdout, line);
             }
             output.onCompleted();
         } //todo pass IOExceptions to output's observers?
+    }
 
-        exitCode.onNext(process.waitFor()); //todo pass waitFor's exceptions to observers?
-        exitCode.onCompleted();
+    private void readErrorOutput() {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                errorOutput.onNext(line);
+                emitTagged(OutputLine.Stream.Stderr, line);
+            }
+            errorOutput.onCompleted();
+        } catch (IOException e) {
+            try {
+                errorOutput.onError(e);
+            } catch (OnErrorNotImplementedException unhandled) {
+                //thrown by subscribers without error handler; stdout is read
+                //on, and tagged output completes as usual
+            }
+        }
+    }
+
+    /**
+     * Lines of both streams are emitted one at a time, and timestamps are
+     * taken under the same lock, so they never go backwards
+     */
+    private void emitTagged(OutputLine.Stream stream, String line) {
+        synchronized (taggedOutput) {
+            if (taggedOutput.hasObservers()) {
+                taggedOutput.onNext(new OutputLine(stream, System.nanoTime(), line));
+            }
+        }
+    }
+
+    private void readRawOutput() throws Exception {
+        try (InputStream in = process.getInputStream()) {
+            ByteBuffer chunk = ByteBuffer.allocate(RAW_CHUNK_SIZE);
+            int read;
+            while ((read = in.read(chunk.array())) != -1 && rawOutput.hasObservers()) {
+                chunk.clear().limit(read);
+                rawOutput.onNext(chunk);
+            }
+            rawOutput.onCompleted();
+        }
     }
 
     public void cancel() {
@@ -43,14 +125,58 @@ public class ProcessModel {
         process.destroyForcibly();
     }
 
+    /**
+     * Stops the process without cancelling it, e. g. when it hangs; its
+     * exit code is reported as usual
+     */
+    public void kill() {
+        process.destroyForcibly();
+    }
+
     public boolean isCancelled() {
         return isCancelled.get();
     }
 
+    /**
+     * Output lines, emitted on the thread which started the process. Next
+     * line isn't read until observers return from <code>onNext</code>, so
+     * slow observers throttle the process once its pipe buffer is full
+     */
     public Observable<String> getOutput() {
         return output.asObservable();
     }
 
+    /**
+     * Undecoded process output, in chunks as they are read from the pipe.
+     * If anybody listens to raw output when process is started, output is
+     * not split into lines, and {@link #getOutput()} emits nothing.
+     * <p/>
+     * The same buffer is reused for every chunk, so it must be consumed
+     * before <code>onNext</code> returns
+     */
+    public Observable<ByteBuffer> getRawOutput() {
+        return rawOutput.asObservable();
+    }
+
+    /**
+     * Stderr lines, emitted on stderr reader thread. Fails with the
+     * <code>IOException</code> if stderr can't be read; subscribe with an
+     * error handler, since the error is delivered on that thread too and
+     * there is nobody else to report it to
+     */
+    public Observable<String> getErrorOutput() {
+        return errorOutput.asObservable();
+    }
+
+    /**
+     * Lines of stdout and stderr merged in order they are read, each tagged
+     * with its stream and read time. Completes when both streams are read.
+     * Stdout lines are not emitted when raw output is read
+     */
+    public Observable<OutputLine> getTaggedOutput() {
+        return taggedOutput.asObservable();
+    }
+
     public Observable<Integer> getExitCode() {
         return exitCode.asObservable();
     }
@@ -0,0 +1,89 @@
+package gumanoid.runner;
+
+import rx.Observable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Loopback TCP endpoint, to which GTest executable streams its events when
+ * launched with {@link #getFlag()}. Accepts a single connection
+ */
+public class ResultStreamListener implements Closeable {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ServerSocketChannel server;
+    private final InetSocketAddress address;
+
+    private ResultStreamListener(ServerSocketChannel server) throws IOException {
+        this.server = server;
+        this.address = (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Binds to an ephemeral port of the loopback interface
+     */
+    public static ResultStreamListener open() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+            return new ResultStreamListener(server);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return command line flag which makes GTest executable connect to this listener
+     */
+    public String getFlag() {
+        return "--gtest_stream_result_to=" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    /**
+     * Waits for connection and emits received data, in chunks as they are read
+     * from the socket. Waiting and reading are done on the subscribing thread.
+     * Completes when the peer closes the connection, or when the listener is
+     * closed before anybody connected.
+     * <p/>
+     * The same buffer is reused for every chunk, so it must be consumed
+     * before <code>onNext</code> returns
+     */
+    public Observable<ByteBuffer> getStream() {
+        return Observable.create(subscriber -> {
+            try (SocketChannel channel = server.accept()) {
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                while (!subscriber.isUnsubscribed() && channel.read(chunk) != -1) {
+                    chunk.flip();
+                    subscriber.onNext(chunk);
+                    chunk.clear();
+                }
+                subscriber.onCompleted();
+            } catch (ClosedChannelException e) {
+                subscriber.onCompleted();
+            } catch (IOException e) {
+                subscriber.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Stops accepting connections; connection which is already accepted is
+     * read until the peer closes it
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,164 @@
+package gumanoid.runner;
+
+import com.google.common.collect.Lists;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Runs tests by one process; each time the process crashes (if resuming
+ * after crashes is on), or is killed because a test timed out, tests which
+ * it hasn't run yet are run by a new one, or by several ones one after
+ * another, if they don't fit one filter. The run is over when all tests
+ * are run, or when a process crashes without running any test (e. g. in
+ * set-up of a group, or of the whole suite) and no other processes are
+ * left to run, or when the run is cancelled.
+ * <p/>
+ * Which tests are run is told by whoever parses output of processes, so
+ * processes are run on the calling thread, one after another
+ */
+public class ResumingRunner implements TestRunner {
+    private final String testExePath;
+    private final List<String> args;
+    private final List<String> tests;
+    private final boolean resumeAfterCrash;
+    private final Set<String> finishedTests;
+    private final Predicate<ProcessModel> isTimedOut;
+    private final PublishSubject<ProcessModel> processStarted = PublishSubject.create();
+    private final PublishSubject<Throwable> processFailed = PublishSubject.create();
+
+    private volatile ProcessModel process;
+    private volatile boolean isCancelled;
+
+    /**
+     * @param tests             full names of tests which the first process runs
+     * @param finishedTests     full names of tests which passed or failed so
+     *                          far, as their output is parsed
+     * @param isTimedOut        tells if the finished process was killed
+     *                          because a test timed out; asked once per process
+     */
+    public ResumingRunner(String testExePath, List<String> args, List<String> tests, boolean resumeAfterCrash,
+                          Set<String> finishedTests, Predicate<ProcessModel> isTimedOut) {
+        this.testExePath = testExePath;
+        this.args = args;
+        this.tests = tests;
+        this.resumeAfterCrash = resumeAfterCrash;
+        this.finishedTests = finishedTests;
+        this.isTimedOut = isTimedOut;
+    }
+
+    @Override
+    public int run() {
+        //exit code of the run is the first non-zero exit code of processes
+        int exitCode = 0;
+        ProcessBuilder builder = new ProcessBuilder(Lists.asList(testExePath, args.toArray(new String[args.size()])));
+        List<String> given = tests; //to the current process
+        Deque<List<String>> next = new ArrayDeque<>(); //tests of processes to run after it
+        try {
+            while (!isCancelled) {
+                int finishedBefore = finishedTests.size();
+
+                ProcessModel process;
+                try {
+                    process = new ProcessModel(builder.start());
+                } catch (IOException e) {
+                    processFailed.onNext(e);
+                    exitCode = exitCode != 0 ? exitCode : -1;
+                    break;
+                }
+
+                int processExitCode = runProcess(process);
+                if (exitCode == 0) {
+                    exitCode = processExitCode;
+                }
+                boolean isProcessTimedOut = isTimedOut.test(process);
+
+                List<String> notRun = new ArrayList<>();
+                for (String test : given) {
+                    if (!finishedTests.contains(test)) {
+                        notRun.add(test);
+                    }
+                }
+
+                boolean isProgressing = finishedTests.size() > finishedBefore;
+                if (processExitCode != 0 && !notRun.isEmpty() && isProgressing) {
+                    if (!(resumeAfterCrash || isProcessTimedOut)) {
+                        break;
+                    }
+                    //the rest of the crashed process' tests go before tests of later processes
+                    List<List<String>> resumed = TestFilters.split(notRun);
+                    for (int i = resumed.size() - 1; i >= 0; --i) {
+                        next.addFirst(resumed.get(i));
+                    }
+                }
+
+                given = next.poll();
+                if (given == null) {
+                    break;
+                }
+                builder = new ProcessBuilder(testExePath, TestFilters.of(given));
+            }
+        } finally {
+            processStarted.onCompleted();
+        }
+        return exitCode;
+    }
+
+    /**
+     * @return exit code of the process, or -1 if its output couldn't be read
+     */
+    private int runProcess(ProcessModel process) {
+        try {
+            this.process = process;
+            if (isCancelled) {
+                process.cancel();
+            }
+
+            processStarted.onNext(process);
+            return process.start();
+        } catch (Exception e) {
+            processFailed.onNext(e);
+            return -1;
+        } finally {
+            this.process = null;
+        }
+    }
+
+    @Override
+    public void cancel() {
+        isCancelled = true;
+        ProcessModel process = this.process;
+        if (process != null) {
+            process.cancel();
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Processes, one after another, emitted on the thread which runs them
+     */
+    @Override
+    public Observable<ProcessModel> onProcessStarted() {
+        return processStarted.asObservable();
+    }
+
+    /**
+     * Emitted on the thread which runs processes; a process which couldn't
+     * be started ends the run
+     */
+    @Override
+    public Observable<Throwable> onProcessFailed() {
+        return processFailed.asObservable();
+    }
+}
@@ -0,0 +1,99 @@
+package gumanoid.runner;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Splits tests between a number of processes, so that all processes finish
+ * at about the same time, given durations of tests. Uses longest processing
+ * time first rule: tests are taken from the longest to the shortest one,
+ * and each test is given to the process with the least total duration so far.
+ * Resulting run time is at most 4/3 of the best possible one.
+ * <p/>
+ * Tests which weren't measured yet are considered as long as the median
+ * measured test. Each test is considered to take at least 1 ms, since
+ * GTest rounds durations down, and a test isn't free even if it's reported
+ * to take 0 ms
+ */
+public class ShardPlanner {
+    private ShardPlanner() {
+    }
+
+    /**
+     * @param tests         full names of tests to run, e. g. "SomeGroup.SomeTest"
+     * @param durations     known durations of tests, in any units
+     * @param shardCount    number of processes to split tests between
+     * @return tests for each process; processes which got no tests are omitted
+     */
+    public static List<List<String>> plan(List<String> tests, Map<String, Integer> durations, int shardCount) {
+        Preconditions.checkArgument(shardCount > 0);
+
+        int unknownDuration = medianDuration(tests, durations);
+
+        List<String> longestFirst = new ArrayList<>(tests);
+        longestFirst.sort(Comparator.comparingLong((String test) -> cost(test, durations, unknownDuration)).reversed());
+
+        PriorityQueue<Shard> shards = new PriorityQueue<>(shardCount, Comparator.comparingLong(s -> s.duration));
+        for (int i = 0; i < shardCount; ++i) {
+            shards.add(new Shard());
+        }
+
+        for (String test : longestFirst) {
+            Shard shard = shards.poll();
+            shard.tests.add(test);
+            shard.duration += cost(test, durations, unknownDuration);
+            shards.add(shard);
+        }
+
+        List<List<String>> result = new ArrayList<>(shardCount);
+        for (Shard shard : shards) {
+            if (!shard.tests.isEmpty()) {
+                result.add(shard.tests);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return total duration of the longest shard
+     */
+    static long makespan(List<List<String>> shards, Map<String, Integer> durations) {
+        long result = 0;
+        for (List<String> shard : shards) {
+            result = Math.max(result, shard.stream().mapToLong(test -> durations.getOrDefault(test, 0)).sum());
+        }
+        return result;
+    }
+
+    private static long cost(String test, Map<String, Integer> durations, int unknownDuration) {
+        return Math.max(1, durations.getOrDefault(test, unknownDuration));
+    }
+
+    private static int medianDuration(List<String> tests, Map<String, Integer> durations) {
+        List<Integer> known = new ArrayList<>();
+        for (String test : tests) {
+            Integer duration = durations.get(test);
+            if (duration != null) {
+                known.add(duration);
+            }
+        }
+
+        if (known.isEmpty()) {
+            return 1;
+        }
+
+        Collections.sort(known);
+        return known.get(known.size() / 2);
+    }
+
+    private static class Shard {
+        final List<String> tests = new ArrayList<>();
+        long duration;
+    }
+}
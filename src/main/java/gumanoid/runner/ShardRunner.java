@@ -0,0 +1,139 @@
+package gumanoid.runner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs tests by several processes at once, each of which runs its own part
+ * of tests, as GTest splits them when GTEST_TOTAL_SHARDS and
+ * GTEST_SHARD_INDEX variables are set. All shards are started before any
+ * output is read; output of each shard is read on its own thread
+ */
+public class ShardRunner implements TestRunner {
+    private final String testExePath;
+    private final List<String> args;
+    private final int shardCount;
+    private final PublishSubject<ProcessModel> shardStarted = PublishSubject.create();
+    private final PublishSubject<Throwable> shardFailed = PublishSubject.create();
+
+    private volatile List<ProcessModel> runningShards = new ArrayList<>();
+    private volatile boolean isCancelled;
+
+    public ShardRunner(String testExePath, List<String> args, int shardCount) {
+        Preconditions.checkArgument(shardCount > 0);
+
+        this.testExePath = testExePath;
+        this.args = args;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * If any shard can't be started, none is run
+     */
+    @Override
+    public int run() throws InterruptedException {
+        try {
+            List<ProcessModel> shards = startShards();
+            if (shards == null) {
+                return -1;
+            }
+            return readShards(shards);
+        } finally {
+            runningShards = new ArrayList<>();
+            shardStarted.onCompleted();
+        }
+    }
+
+    private List<ProcessModel> startShards() {
+        List<ProcessModel> shards = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; ++i) {
+                ProcessBuilder builder = new ProcessBuilder(Lists.asList(testExePath, args.toArray(new String[args.size()])));
+                builder.environment().put("GTEST_TOTAL_SHARDS", String.valueOf(shardCount));
+                builder.environment().put("GTEST_SHARD_INDEX", String.valueOf(i));
+                shards.add(new ProcessModel(builder.start()));
+            }
+        } catch (IOException e) {
+            shards.forEach(ProcessModel::cancel);
+            shardFailed.onNext(e);
+            return null;
+        }
+
+        runningShards = shards;
+        if (isCancelled) {
+            shards.forEach(ProcessModel::cancel);
+        }
+        shards.forEach(shardStarted::onNext);
+        return shards;
+    }
+
+    private int readShards(List<ProcessModel> shards) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(shardCount);
+        try {
+            List<Future<Integer>> exitCodes = new ArrayList<>(shardCount);
+            for (ProcessModel shard : shards) {
+                exitCodes.add(executor.submit(shard::start));
+            }
+
+            //exit code of the run is the first non-zero exit code of shards
+            int exitCode = 0;
+            for (Future<Integer> shardExitCode : exitCodes) {
+                int code;
+                try {
+                    code = shardExitCode.get();
+                } catch (ExecutionException e) {
+                    shardFailed.onNext(e.getCause());
+                    code = -1;
+                }
+                if (exitCode == 0) {
+                    exitCode = code;
+                }
+            }
+            return exitCode;
+        } catch (InterruptedException e) {
+            shards.forEach(ProcessModel::cancel);
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        isCancelled = true;
+        runningShards.forEach(ProcessModel::cancel);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * All shards, emitted on the thread which runs them, before output of
+     * any of them is read
+     */
+    @Override
+    public Observable<ProcessModel> onProcessStarted() {
+        return shardStarted.asObservable();
+    }
+
+    /**
+     * Emitted on the thread which runs shards; if a shard can't be started,
+     * the run is over
+     */
+    @Override
+    public Observable<Throwable> onProcessFailed() {
+        return shardFailed.asObservable();
+    }
+}
@@ -0,0 +1,38 @@
+package gumanoid.runner;
+
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Files where data of test executables is kept between sessions, e. g. run
+ * history and cached enumeration
+ */
+public class StoreFiles {
+    private StoreFiles() {
+    }
+
+    /**
+     * Directory where per-executable data is kept by default, unless
+     * overridden by <code>gumanoid.home</code> system property
+     */
+    public static File defaultStoreDir() {
+        String home = System.getProperty("gumanoid.home");
+        return home != null ? new File(home) : new File(System.getProperty("user.home"), ".gumanoid");
+    }
+
+    /**
+     * File where data of the executable is kept; executables with the same
+     * name in different directories get different files
+     *
+     * @param storeDir      directory where files of all executables are kept
+     * @param extension     tells what kind of data is kept, e. g. ".history"
+     */
+    public static File storeFile(File storeDir, String testExePath, String extension) {
+        String exePath = new File(testExePath).getAbsolutePath();
+        String fileName = new File(exePath).getName() + "-"
+                + Hashing.murmur3_32().hashString(exePath, StandardCharsets.UTF_8) + extension;
+        return new File(storeDir, fileName);
+    }
+}
@@ -0,0 +1,92 @@
+package gumanoid.runner;
+
+import com.google.common.collect.Lists;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Runs tests by one process, which streams its events to a
+ * {@link ResultStreamListener} (--gtest_stream_result_to) while its stdout
+ * is read as usual. The listener is open for the time of the run
+ */
+public class StreamRunner implements TestRunner {
+    private final String testExePath;
+    private final List<String> args;
+    private final PublishSubject<ProcessModel> processStarted = PublishSubject.create();
+    private final PublishSubject<Throwable> processFailed = PublishSubject.create();
+
+    private volatile ResultStreamListener listener;
+    private volatile ProcessModel process;
+    private volatile boolean isCancelled;
+
+    public StreamRunner(String testExePath, List<String> args) {
+        this.testExePath = testExePath;
+        this.args = args;
+    }
+
+    @Override
+    public int run() {
+        try (ResultStreamListener listener = ResultStreamListener.open()) {
+            this.listener = listener;
+
+            ProcessModel process = new ProcessModel(new ProcessBuilder(
+                    Lists.asList(testExePath, listener.getFlag(), args.toArray(new String[args.size()]))).start());
+            this.process = process;
+            if (isCancelled) {
+                process.cancel();
+            }
+
+            processStarted.onNext(process);
+            return process.start();
+        } catch (Exception e) {
+            processFailed.onNext(e);
+            return -1;
+        } finally {
+            listener = null;
+            process = null;
+            processStarted.onCompleted();
+        }
+    }
+
+    /**
+     * Events streamed by the process, see {@link ResultStreamListener#getStream()};
+     * may be subscribed to while the process is reported by {@link #onProcessStarted()}
+     */
+    public Observable<ByteBuffer> getResultStream() {
+        ResultStreamListener listener = this.listener;
+        return listener != null ? listener.getStream() : Observable.empty();
+    }
+
+    @Override
+    public void cancel() {
+        isCancelled = true;
+        ProcessModel process = this.process;
+        if (process != null) {
+            process.cancel();
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * The only process, emitted on the thread which runs it
+     */
+    @Override
+    public Observable<ProcessModel> onProcessStarted() {
+        return processStarted.asObservable();
+    }
+
+    /**
+     * Emitted on the thread which runs the process; the run is over
+     */
+    @Override
+    public Observable<Throwable> onProcessFailed() {
+        return processFailed.asObservable();
+    }
+}
@@ -0,0 +1,66 @@
+package gumanoid.runner;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes --gtest_filter arguments which select given tests by their full
+ * names. A filter of many tests is too long for one command line (Windows
+ * allows 32767 characters for the whole of it, Linux 128 KiB per argument),
+ * so tests are split between several filters, each run by its own process
+ */
+public class TestFilters {
+    /**
+     * Max length of a filter made by {@link #split}, which leaves room for
+     * the executable path and other arguments on any platform
+     */
+    public static final int MAX_LENGTH = 30_000;
+
+    private static final String FLAG = "--gtest_filter=";
+
+    private TestFilters() {
+    }
+
+    /**
+     * @param tests     full names of tests, e. g. "SomeGroup.SomeTest", or
+     *                  any other filter patterns
+     */
+    public static String of(Iterable<?> tests) {
+        return FLAG + Joiner.on(':').join(tests);
+    }
+
+    /**
+     * Splits tests, in the given order, into the fewest lists whose filters
+     * are at most {@link #MAX_LENGTH} long; a test whose name alone is
+     * longer gets its own list
+     */
+    public static List<List<String>> split(List<String> tests) {
+        return split(tests, MAX_LENGTH);
+    }
+
+    static List<List<String>> split(List<String> tests, int maxLength) {
+        Preconditions.checkArgument(maxLength > FLAG.length());
+
+        List<List<String>> result = new ArrayList<>();
+        List<String> part = new ArrayList<>();
+        int length = FLAG.length();
+        for (String test : tests) {
+            int added = part.isEmpty() ? test.length() : test.length() + 1;
+            if (!part.isEmpty() && length + added > maxLength) {
+                result.add(part);
+                part = new ArrayList<>();
+                length = FLAG.length();
+                added = test.length();
+            }
+            part.add(test);
+            length += added;
+        }
+        if (!part.isEmpty()) {
+            result.add(part);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package gumanoid.runner;
+
+import rx.Observable;
+
+/**
+ * Way to run tests of an executable by several processes, at once or one
+ * after another, whose output makes output of one run.
+ * <p/>
+ * Each process is reported when it's launched, before its output is read,
+ * so observers can subscribe to its output
+ */
+public interface TestRunner {
+    /**
+     * Runs the tests; returns when all of them are run, or when the run is
+     * cancelled and running processes are finished
+     *
+     * @return the first non-zero exit code of processes, or 0; -1 if no
+     * process could be run
+     */
+    int run() throws InterruptedException;
+
+    /**
+     * May be called from any thread, before or during {@link #run()}
+     */
+    void cancel();
+
+    boolean isCancelled();
+
+    /**
+     * Processes of the run, as they are launched; completes when the run is
+     * over. Emitted one at a time
+     */
+    Observable<ProcessModel> onProcessStarted();
+
+    /**
+     * Errors of processes which couldn't be started or read; tests of such
+     * a process aren't run, the rest of the run goes on if it can. Emitted
+     * one at a time
+     */
+    Observable<Throwable> onProcessFailed();
+}
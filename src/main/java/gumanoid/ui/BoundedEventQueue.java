@@ -0,0 +1,180 @@
+package gumanoid.ui;
+
+import com.google.common.base.Preconditions;
+import rx.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Queue of events between producer threads (e. g. tests output reader)
+ * and a single consumer thread (e. g. EDT), which holds at most
+ * <code>capacity</code> events.
+ * <p/>
+ * When the queue is full, events which are allowed to be dropped are
+ * skipped, while producer of any other event is blocked until the consumer
+ * catches up; blocked producer stops reading its source, so in the end
+ * the producing process is slowed down as well. Run of skipped events is
+ * replaced with a single summary event, made of the last skipped event,
+ * which is queued right before the next accepted event.
+ * <p/>
+ * Events are handed to the consumer in batches, each batch by a single
+ * task on the consumer scheduler: batch is sent when it's been collected
+ * for <code>batchPeriodMs</code> or when it reaches <code>batchSize</code>
+ * events, whichever comes first. Order of events is preserved.
+ * <p/>
+ * If an event is put by the consumer thread itself, it's queued even if
+ * the queue is full, since nobody would free space for it
+ */
+public class BoundedEventQueue<T> {
+    private final int capacity;
+    private final int batchSize;
+    private final long batchPeriodMs;
+    private final Predicate<? super T> isDroppable;
+    private final BiFunction<? super T, Integer, ? extends T> skippedSummary;
+    private final Consumer<List<T>> consumer;
+    private final Scheduler.Worker worker;
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private boolean drainScheduled;
+    private Thread consumerThread;
+
+    private T lastSkipped;
+    private int skippedInRow;
+
+    private int highWaterMark;
+    private long skippedCount;
+    private long blockedCount;
+
+    /**
+     * @param capacity          max number of events waiting for the consumer
+     * @param isDroppable       tells which events may be skipped when queue is full
+     * @param skippedSummary    creates an event which replaces a run of skipped events,
+     *                          from the last skipped event and number of skipped events
+     * @param consumer          handles batches of events, called on the scheduler
+     * @param scheduler         consumer's scheduler, which must run tasks one by one
+     */
+    public BoundedEventQueue(int capacity, int batchSize, long batchPeriodMs,
+                             Predicate<? super T> isDroppable,
+                             BiFunction<? super T, Integer, ? extends T> skippedSummary,
+                             Consumer<List<T>> consumer, Scheduler scheduler) {
+        Preconditions.checkArgument(capacity > 0);
+        Preconditions.checkArgument(batchSize > 0);
+
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.batchPeriodMs = batchPeriodMs;
+        this.isDroppable = isDroppable;
+        this.skippedSummary = skippedSummary;
+        this.consumer = consumer;
+        this.worker = scheduler.createWorker();
+    }
+
+    /**
+     * Queues the event, or skips it if it's droppable and the queue is
+     * full; blocks while the queue is full otherwise
+     */
+    public synchronized void put(T event) throws InterruptedException {
+        if (queue.size() >= capacity && Thread.currentThread() != consumerThread) {
+            if (isDroppable.test(event)) {
+                lastSkipped = event;
+                ++skippedInRow;
+                ++skippedCount;
+                return;
+            }
+
+            ++blockedCount;
+            while (queue.size() >= capacity) {
+                wait();
+            }
+        }
+
+        if (skippedInRow > 0) {
+            queue.add(skippedSummary.apply(lastSkipped, skippedInRow));
+            lastSkipped = null;
+            skippedInRow = 0;
+        }
+
+        queue.add(event);
+        highWaterMark = Math.max(highWaterMark, queue.size());
+
+        if (!drainScheduled) {
+            drainScheduled = true;
+            worker.schedule(this::drain, batchPeriodMs, TimeUnit.MILLISECONDS);
+        } else if (queue.size() == batchSize) {
+            //don't wait for the period to pass, batch is complete
+            worker.schedule(this::drain);
+        }
+    }
+
+    private void drain() {
+        List<T> batch;
+
+        synchronized (this) {
+            consumerThread = Thread.currentThread();
+            if (queue.isEmpty()) {
+                return; //drained by the task scheduled earlier
+            }
+
+            batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            while (batch.size() < batchSize && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+
+            if (queue.isEmpty()) {
+                drainScheduled = false;
+            } else {
+                worker.schedule(this::drain);
+            }
+
+            notifyAll();
+        }
+
+        consumer.accept(batch);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of events waiting for the consumer
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return max number of events which were waiting for the consumer
+     * since the last {@link #resetStatistics()}
+     */
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return number of events skipped since the last {@link #resetStatistics()}
+     */
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return how many times producers were blocked on a full queue
+     * since the last {@link #resetStatistics()}
+     */
+    public synchronized long getBlockedCount() {
+        return blockedCount;
+    }
+
+    public synchronized void resetStatistics() {
+        highWaterMark = queue.size();
+        skippedCount = 0;
+        blockedCount = 0;
+    }
+}
@@ -1,15 +1,75 @@
 package gumanoid.ui.gtest;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gumanoid.event.GTestListEvent;
+import gumanoid.event.GTestListEvent.TestAnnounce;
 import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.ErrorOutput;
+import gumanoid.event.GTestOutputEvent.TestFailed;
+import gumanoid.event.GTestOutputEvent.TestPassed;
+import gumanoid.event.TestSymbols;
+import gumanoid.history.RunHistory;
+import gumanoid.history.SlowdownDetector;
+import gumanoid.history.SlowdownDetector.Slowdown;
+import gumanoid.history.SlowdownReport;
+import gumanoid.history.TestTimeouts;
+import gumanoid.parser.GTestCrashDetector;
 import gumanoid.parser.GTestListParser;
+import gumanoid.parser.GTestMergedOutputParser;
+import gumanoid.parser.GTestOutputByteParser;
 import gumanoid.parser.GTestOutputParser;
+import gumanoid.parser.GTestReportParser;
+import gumanoid.parser.GTestShardMerger;
+import gumanoid.parser.GTestStreamParser;
+import gumanoid.parser.GTestWatchdog;
+import gumanoid.runner.BatchScheduler;
+import gumanoid.runner.EnumerationCache;
 import gumanoid.runner.ProcessLaunchesModel;
 import gumanoid.runner.ProcessModel;
+import gumanoid.runner.ResumingRunner;
+import gumanoid.runner.ShardPlanner;
+import gumanoid.runner.ShardRunner;
+import gumanoid.runner.StoreFiles;
+import gumanoid.runner.StreamRunner;
+import gumanoid.runner.TestFilters;
+import gumanoid.runner.TestRunner;
 import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Takes care of executable events sequence: notifies subscribers
@@ -29,67 +89,734 @@ public class GTestModel {
             this.name = name;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TestId that = (TestId) o;
+            return Objects.equal(group, that.group) &&
+                    Objects.equal(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(group, name);
+        }
+
         @Override
         public String toString() {
             return group + "." + name;
         }
     }
 
+    /**
+     * How tests output is read from the process
+     */
+    public enum Ingest {
+        /**
+         * Output is decoded and split into lines by a reader, then lines are parsed
+         */
+        Lines,
+        /**
+         * Raw output chunks are scanned for lines and GTest tags at byte level
+         */
+        Bytes,
+        /**
+         * Structure of the run is taken from GTest's event stream
+         * (--gtest_stream_result_to), output is shown as is
+         */
+        Stream
+    }
+
+    /**
+     * How tests are split between processes when more than one process runs them
+     */
+    public enum Parallelism {
+        /**
+         * Each process runs its predefined part of tests (see GTEST_TOTAL_SHARDS)
+         */
+        Shards,
+        /**
+         * Tests are split into small batches, which are taken by processes
+         * one by one until all batches are run, see {@link BatchScheduler}
+         */
+        Batches,
+        /**
+         * Tests are split into one filter list per process, so that
+         * processes finish at about the same time, given durations of tests
+         * in previous runs, as kept by {@link RunHistory}, see {@link ShardPlanner}
+         */
+        Planned
+    }
+
     private final ProcessLaunchesModel testEnumerationProcess = new ProcessLaunchesModel();
     private final ProcessLaunchesModel testExecutionProcess = new ProcessLaunchesModel();
+    /**
+     * Tests listed for the current run, if execution needed them; set before
+     * the run is started and read by parsers of its output
+     */
+    private volatile EnumeratedTests enumerated = EnumeratedTests.NONE;
+    private final PublishSubject<File> reports = PublishSubject.create();
+    private final PublishSubject<List<String>> cachedEnumeration = PublishSubject.create();
+    private final PublishSubject<File> loadedReports = PublishSubject.create();
+    private final PublishSubject<Observable<GTestOutputEvent>> runnerStarted = PublishSubject.create();
+    private final PublishSubject<FinishedRun> runnerFinished = PublishSubject.create();
+    private final PublishSubject<Throwable> runnerFailed = PublishSubject.create();
+    private final PublishSubject<Throwable> launchErrors = PublishSubject.create();
+    /**
+     * Runner of the current run, unless it's run by {@link #testExecutionProcess}
+     */
+    private volatile TestRunner runningRunner;
+    private final TestSymbols symbols = new TestSymbols();
+    private final ExecutorService enumerationExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("tests enumeration").setDaemon(true).build());
+    private final EnumerationCache enumerationCache;
+    private final RunHistory history;
+    private final List<RunHistory.TestResult> runResults = new ArrayList<>(); //guarded by itself
+    private volatile boolean isRecordingRun;
+    /**
+     * Full names of tests which passed or failed in the current run
+     */
+    private final Set<String> runFinishedTests = ConcurrentHashMap.newKeySet();
+    private final TestTimeouts timeouts;
+    private final GTestWatchdog watchdog;
+    private final File timeoutsLog;
+    /**
+     * Processes of the current run which were killed by the watchdog
+     */
+    private final Set<ProcessModel> timedOutProcesses = ConcurrentHashMap.newKeySet();
+    private final SlowdownDetector slowdownDetector;
+    private final File slowdownReport;
+    private final List<Slowdown> runSlowdowns = new ArrayList<>(); //guarded by itself
+    private final Observable<GTestListEvent> testsEnumeration;
+    private final Observable<CheckedEvent> checkedOutput;
     private final String testExePath;
+    private final Ingest ingest;
+    private final boolean mergeErrorOutput;
+    private final int workerCount;
+    private final Parallelism parallelism;
+    private final boolean resumeAfterCrash;
+
+    /**
+     * How the executable is run and its output is read. Immutable; each
+     * <code>with</code> method returns a copy with some options changed
+     */
+    public static class Options {
+        public static final Options DEFAULT = new Options(Ingest.Lines, false, 1, Parallelism.Shards, false, StoreFiles.defaultStoreDir());
+
+        public final Ingest ingest;
+        /**
+         * If true, stderr lines are merged with stdout ones in order they are
+         * read, so they are shown as output of the test which was running at
+         * the moment; otherwise they are shown as output of the whole run.
+         * Only supported for {@link Ingest#Lines}
+         */
+        public final boolean mergeErrorOutput;
+        /**
+         * Number of processes which run tests in parallel; their output is
+         * shown as output of a single run. Parallel runs are not supported
+         * for {@link Ingest#Stream}
+         */
+        public final int workerCount;
+        /**
+         * How tests are split between processes
+         */
+        public final Parallelism parallelism;
+        /**
+         * If true, and the executable exits while a test is running, the test
+         * is failed as crashed, and the tests which haven't run yet are run by
+         * a new process; output of all processes is shown as output of a single
+         * run. Only applies to runs by one process, and isn't supported for
+         * {@link Ingest#Stream}
+         */
+        public final boolean resumeAfterCrash;
+        /**
+         * Directory where history, cached enumeration and other files of the
+         * executable are kept between sessions, see {@link StoreFiles}
+         */
+        public final File storeDir;
+
+        private Options(Ingest ingest, boolean mergeErrorOutput, int workerCount, Parallelism parallelism, boolean resumeAfterCrash,
+                        File storeDir) {
+            Preconditions.checkArgument(!mergeErrorOutput || ingest == Ingest.Lines);
+            Preconditions.checkArgument(workerCount > 0);
+            Preconditions.checkArgument(workerCount == 1 || ingest != Ingest.Stream);
+            Preconditions.checkArgument(!resumeAfterCrash || ingest != Ingest.Stream);
+            Preconditions.checkNotNull(storeDir);
+
+            this.ingest = ingest;
+            this.mergeErrorOutput = mergeErrorOutput;
+            this.workerCount = workerCount;
+            this.parallelism = parallelism;
+            this.resumeAfterCrash = resumeAfterCrash;
+            this.storeDir = storeDir;
+        }
+
+        public Options withIngest(Ingest ingest) {
+            return new Options(ingest, mergeErrorOutput, workerCount, parallelism, resumeAfterCrash, storeDir);
+        }
+
+        public Options withMergedErrorOutput(boolean mergeErrorOutput) {
+            return new Options(ingest, mergeErrorOutput, workerCount, parallelism, resumeAfterCrash, storeDir);
+        }
+
+        public Options withWorkers(int workerCount, Parallelism parallelism) {
+            return new Options(ingest, mergeErrorOutput, workerCount, parallelism, resumeAfterCrash, storeDir);
+        }
+
+        public Options withResumeAfterCrash(boolean resumeAfterCrash) {
+            return new Options(ingest, mergeErrorOutput, workerCount, parallelism, resumeAfterCrash, storeDir);
+        }
+
+        public Options withStoreDir(File storeDir) {
+            return new Options(ingest, mergeErrorOutput, workerCount, parallelism, resumeAfterCrash, storeDir);
+        }
+    }
 
     public GTestModel(String testExePath) {
+        this(testExePath, Options.DEFAULT);
+    }
+
+    public GTestModel(String testExePath, Options options) {
         this.testExePath = testExePath;
+        this.ingest = options.ingest;
+        this.mergeErrorOutput = options.mergeErrorOutput;
+        this.workerCount = options.workerCount;
+        this.parallelism = options.parallelism;
+        this.resumeAfterCrash = options.resumeAfterCrash;
+        this.enumerationCache = EnumerationCache.forExecutable(options.storeDir, testExePath);
+        this.history = RunHistory.forExecutable(options.storeDir, testExePath);
+        this.slowdownDetector = new SlowdownDetector(history, SlowdownDetector.Thresholds.fromSystemProperties());
+        this.slowdownReport = StoreFiles.storeFile(options.storeDir, testExePath, ".slowdowns.csv");
+        this.timeouts = new TestTimeouts(history, TestTimeouts.Settings.fromSystemProperties());
+        this.watchdog = new GTestWatchdog(timeouts::timeoutFor);
+        this.timeoutsLog = StoreFiles.storeFile(options.storeDir, testExePath, ".timeouts.log");
+
+        //output is parsed once, whoever listens to it
+        this.testsEnumeration = Observable.merge(
+                testEnumerationProcess.onStarted().map(ProcessModel::getOutput),
+                cachedEnumeration.map(Observable::from)
+        ).switchMap(lines -> lines.lift(new GTestListParser(symbols))).share();
+        this.checkedOutput = Observable.merge(
+                testExecutionProcess.onStarted().map(this::parseOutput),
+                reports.map(new GTestReportParser(symbols)::parse),
+                runnerStarted
+        ).switchMap(output -> output).map(this::checkSlowdown).share();
+
+        //only executed tests go to history, loaded reports don't
+        testsStarted().subscribe(x -> {
+            synchronized (runResults) {
+                runResults.clear();
+            }
+            runFinishedTests.clear();
+            timedOutProcesses.clear();
+            synchronized (runSlowdowns) {
+                runSlowdowns.clear();
+            }
+            isRecordingRun = true;
+        });
+        testsOutput().subscribe(this::recordResult);
+        testsSlowdowns().subscribe(slowdown -> {
+            synchronized (runSlowdowns) {
+                runSlowdowns.add(slowdown);
+            }
+        });
+        testsExitCode().subscribe(this::saveRun);
+    }
+
+    /**
+     * Tests which are going to run, as listed by --gtest_list_tests; neither
+     * result stream nor parallel or resumed processes tell it themselves.
+     * Immutable, so it's safe to read from any thread once it's published
+     */
+    private static class EnumeratedTests {
+        static final EnumeratedTests NONE = new EnumeratedTests(ImmutableMap.of(), ImmutableList.of());
+
+        final Map<String, Integer> groupSizes;
+        final List<String> tests; //full names
+
+        EnumeratedTests(Map<String, Integer> groupSizes, List<String> tests) {
+            this.groupSizes = ImmutableMap.copyOf(groupSizes);
+            this.tests = ImmutableList.copyOf(tests);
+        }
+    }
+
+    private boolean executionNeedsEnumeration() {
+        return ingest == Ingest.Stream || workerCount > 1 || isResuming();
+    }
+
+    /**
+     * Whether tests of a run by one process go on in a new process after
+     * the process crashes, or is killed by the watchdog
+     */
+    private boolean isResuming() {
+        return ingest != Ingest.Stream && (resumeAfterCrash || timeouts.isEnabled());
+    }
+
+    /**
+     * Disabled tests are listed by --gtest_list_tests, but are not run
+     */
+    private static boolean isDisabled(TestAnnounce e) {
+        return e.groupName.startsWith("DISABLED_") || e.testName.startsWith("DISABLED_");
     }
 
     public void runTests() {
-        testEnumerationProcess.start(new ProcessBuilder(this.testExePath, "--gtest_list_tests"));
-        testExecutionProcess.start(new ProcessBuilder(this.testExePath));
+        enumerateAndExecuteTests();
     }
 
     public void rerunFailedTests(Collection<TestId> failedTests) {
-        String filter = createTestFilter(failedTests);
+        enumerateAndExecuteTests(createTestFilter(failedTests));
+    }
+
+    /**
+     * Unless execution needs to know which tests are going to run, tests
+     * are listed while they are already running, so listing doesn't delay
+     * the run; returns when both are done
+     */
+    private void enumerateAndExecuteTests(String... args) {
+        //timeouts may be turned on at any time, so it's decided once per run
+        if (executionNeedsEnumeration()) {
+            enumerated = enumerateTests(args);
+            executeTests(enumerated, args);
+            return;
+        }
+
+        enumerated = EnumeratedTests.NONE;
+        Future<EnumeratedTests> enumeration = enumerationExecutor.submit(() -> enumerateTests(args));
+        try {
+            executeTests(EnumeratedTests.NONE, args);
+        } finally {
+            try {
+                enumeration.get();
+            } catch (ExecutionException e) {
+                reportError(e.getCause()); //tests are run anyway
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-        testEnumerationProcess.start(new ProcessBuilder(this.testExePath, "--gtest_list_tests", filter));
-        testExecutionProcess.start(new ProcessBuilder(this.testExePath, filter));
+    /**
+     * Lists tests from {@link EnumerationCache}, or by running the executable
+     * with --gtest_list_tests, if it was rebuilt since it was listed with
+     * the same arguments
+     *
+     * @return tests which are going to run; listing is reported by
+     * {@link #testsEnumeration()} as well
+     */
+    private EnumeratedTests enumerateTests(String... args) {
+        Map<String, Integer> groupSizes = new LinkedHashMap<>();
+        List<String> tests = new ArrayList<>();
+        Subscription listed = testsEnumeration()
+                .ofType(TestAnnounce.class)
+                .filter(e -> !isDisabled(e))
+                .subscribe(e -> {
+                    groupSizes.merge(e.groupName, 1, Integer::sum);
+                    tests.add(e.groupName + "." + e.testName);
+                });
+        try {
+            listTests(args);
+        } finally {
+            listed.unsubscribe();
+        }
+        return new EnumeratedTests(groupSizes, tests);
+    }
+
+    /**
+     * Returns when listing is over; its events are emitted before that
+     */
+    private void listTests(String... args) {
+        String cacheKey = Joiner.on(' ').join(args);
+        Optional<List<String>> cached = enumerationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            cachedEnumeration.onNext(cached.get());
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        ProcessLaunchesModel.Launch listing = testEnumerationProcess.prepare(
+                new ProcessBuilder(Lists.asList(this.testExePath, "--gtest_list_tests", args)));
+        listing.getOutput().subscribe(lines::add, e -> {}); //reported by testsErrors()
+
+        int exitCode;
+        try {
+            exitCode = listing.start().waitFor();
+        } catch (InterruptedException e) {
+            listing.cancel();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (exitCode == 0 && !listing.isCancelled()) {
+            try {
+                enumerationCache.put(cacheKey, lines);
+            } catch (IOException e) {
+                reportError(e); //tests will be listed again next time
+            }
+        }
+    }
+
+    /**
+     * Number of shards to use by default, which is one per available processor
+     */
+    public static int defaultShardCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param enumerated    tests which are going to run, if execution needs them
+     */
+    private void executeTests(EnumeratedTests enumerated, String... args) {
+        List<String> argList = Arrays.asList(args);
+        if (workerCount > 1 && parallelism == Parallelism.Shards) {
+            execute(new ShardRunner(this.testExePath, argList, workerCount), this::parseParallelOutput);
+            return;
+        }
+
+        if (workerCount > 1 && !enumerated.tests.isEmpty()) {
+            List<String> tests = enumerated.tests;
+            Function<List<String>, ProcessBuilder> launcher = batch -> new ProcessBuilder(this.testExePath, TestFilters.of(batch));
+            execute(parallelism == Parallelism.Planned
+                    ? BatchScheduler.ofBatches(ShardPlanner.plan(tests, history.baselineDurations(), workerCount), workerCount, launcher)
+                    : new BatchScheduler(tests, workerCount, launcher), this::parseParallelOutput);
+            return;
+        }
+
+        if (isResuming() && !enumerated.tests.isEmpty()) {
+            execute(new ResumingRunner(this.testExePath, argList, enumerated.tests, resumeAfterCrash,
+                    runFinishedTests, timedOutProcesses::remove), this::parseParallelOutput);
+            return;
+        }
+
+        if (ingest == Ingest.Stream) {
+            StreamRunner runner = new StreamRunner(this.testExePath, argList);
+            execute(runner, processes -> processes.flatMap(p -> parseStreamedOutput(p, runner)));
+            return;
+        }
+
+        testExecutionProcess.start(new ProcessBuilder(Lists.asList(this.testExePath, args)));
+    }
+
+    private static class FinishedRun {
+        final int exitCode;
+        final boolean isCancelled;
+
+        FinishedRun(int exitCode, boolean isCancelled) {
+            this.exitCode = exitCode;
+            this.isCancelled = isCancelled;
+        }
+    }
+
+    /**
+     * Runs tests by the runner on the calling thread; output of its
+     * processes, as parsed by the given function, is output of the run.
+     * If the runner couldn't launch any process, the run fails
+     */
+    private void execute(TestRunner runner, Function<Observable<ProcessModel>, Observable<GTestOutputEvent>> parse) {
+        AtomicBoolean isLaunched = new AtomicBoolean();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        runner.onProcessStarted().subscribe(p -> isLaunched.set(true));
+        runner.onProcessFailed().subscribe(e -> {
+            firstFailure.compareAndSet(null, e);
+            reportError(e);
+        });
+
+        runningRunner = runner;
+        runnerStarted.onNext(parse.apply(runner.onProcessStarted()));
+
+        int exitCode = -1;
+        try {
+            exitCode = runner.run();
+        } catch (InterruptedException e) {
+            runner.cancel();
+            Thread.currentThread().interrupt();
+        } finally {
+            runningRunner = null;
+        }
+
+        if (!isLaunched.get() && firstFailure.get() != null) {
+            runnerFailed.onNext(firstFailure.get());
+        } else {
+            runnerFinished.onNext(new FinishedRun(exitCode, runner.isCancelled()));
+        }
     }
 
     public void cancelTests() {
         testEnumerationProcess.cancel();
         testExecutionProcess.cancel();
+
+        TestRunner runner = runningRunner;
+        if (runner != null) {
+            runner.cancel();
+        }
+    }
+
+    /**
+     * Replays the run recorded in GTest XML report as if tests were run now.
+     * Report is read on the calling thread; tests output and completion are
+     * reported the same way as for the executed tests
+     */
+    public void loadReport(File report) {
+        reports.onNext(report);
+        loadedReports.onNext(report);
+    }
+
+    /**
+     * Symbol table shared by all parsers of this model, so ids in
+     * enumeration and output events of any run refer to the same tests
+     */
+    public TestSymbols getSymbols() {
+        return symbols;
     }
 
     public Observable<GTestOutputEvent> testsOutput() {
-        return testExecutionProcess.onStarted()
-                .switchMap(p -> p.getOutput().lift(new GTestOutputParser()));
+        return checkedOutput.map(e -> e.event);
+    }
+
+    private void recordResult(GTestOutputEvent e) {
+        if (e instanceof TestPassed) {
+            TestPassed passed = (TestPassed) e;
+            recordResult(passed.groupName + "." + passed.testName, RunHistory.Status.Passed, passed.elapsedTime);
+        } else if (e instanceof TestFailed) {
+            TestFailed failed = (TestFailed) e;
+            recordResult(failed.groupName + "." + failed.testName, RunHistory.Status.Failed, failed.elapsedTime);
+        }
+    }
+
+    private void recordResult(String test, RunHistory.Status status, OptionalInt elapsedTime) {
+        if (isRecordingRun) {
+            runFinishedTests.add(test);
+            synchronized (runResults) {
+                //exit code and time are known when the run is over
+                runResults.add(new RunHistory.TestResult(test, status, elapsedTime.orElse(-1), 0, 0));
+            }
+        }
+    }
+
+    private void saveRun(int exitCode) {
+        isRecordingRun = false;
+
+        long timestamp = System.currentTimeMillis();
+        List<RunHistory.TestResult> results = new ArrayList<>();
+        synchronized (runResults) {
+            for (RunHistory.TestResult r : runResults) {
+                results.add(new RunHistory.TestResult(r.test, r.status, r.durationMs, exitCode, timestamp));
+            }
+            runResults.clear();
+        }
+
+        List<Slowdown> slowdowns;
+        synchronized (runSlowdowns) {
+            slowdowns = new ArrayList<>(runSlowdowns);
+            runSlowdowns.clear();
+        }
+
+        try {
+            history.append(results);
+        } catch (IOException e) {
+            reportError(e); //run isn't kept in history
+        }
+
+        try {
+            SlowdownReport.write(slowdownReport, slowdowns);
+        } catch (IOException e) {
+            reportError(e);
+        }
+    }
+
+    /**
+     * Tests of the current run which took much longer than they usually do,
+     * as soon as they pass; each slowdown follows {@link TestPassed} of the
+     * test in {@link #testsOutput()}, if subscribed after it. Tests of loaded
+     * reports aren't checked
+     */
+    public Observable<Slowdown> testsSlowdowns() {
+        return checkedOutput
+                .filter(e -> e.slowdown.isPresent())
+                .map(e -> e.slowdown.get());
+    }
+
+    /**
+     * Output event, with slowdown of the test if it's passed much slower
+     * than usual; each test is checked once, whoever listens to slowdowns
+     */
+    private static class CheckedEvent {
+        final GTestOutputEvent event;
+        final Optional<Slowdown> slowdown;
+
+        CheckedEvent(GTestOutputEvent event, Optional<Slowdown> slowdown) {
+            this.event = event;
+            this.slowdown = slowdown;
+        }
+    }
+
+    private CheckedEvent checkSlowdown(GTestOutputEvent e) {
+        if (!(e instanceof TestPassed) || !isRecordingRun) {
+            return new CheckedEvent(e, Optional.empty());
+        }
+
+        TestPassed passed = (TestPassed) e;
+        return new CheckedEvent(e, passed.elapsedTime.isPresent()
+                ? slowdownDetector.check(passed.groupName + "." + passed.testName, passed.testId, passed.elapsedTime.getAsInt())
+                : Optional.empty());
+    }
+
+    public SlowdownDetector getSlowdownDetector() {
+        return slowdownDetector;
+    }
+
+    /**
+     * File where slowdowns of the latest run are written when it's over,
+     * see {@link SlowdownReport}
+     */
+    public File getSlowdownReport() {
+        return slowdownReport;
+    }
+
+    /**
+     * Results of tests in this and previous sessions
+     */
+    public RunHistory getHistory() {
+        return history;
+    }
+
+    private Observable<GTestOutputEvent> parseParallelOutput(Observable<ProcessModel> processes) {
+        return new GTestShardMerger(enumerated.groupSizes).merge(processes.map(p -> GTestCrashDetector.markCrashedTest(
+                timeouts.isEnabled() ? watchdog.watch(parseOutput(p), expiry -> testTimedOut(p, expiry)) : parseOutput(p),
+                p.getExitCode().filter(code -> !p.isCancelled()))));
+    }
+
+    /**
+     * Writes what the test printed lately to the log of timeouts, so there
+     * is something to start with when a nightly run hangs, then kills the
+     * process, so the run goes on
+     */
+    private void testTimedOut(ProcessModel process, GTestWatchdog.Expiry expiry) {
+        timedOutProcesses.add(process);
+
+        try {
+            Files.createDirectories(timeoutsLog.getAbsoluteFile().getParentFile().toPath());
+            try (PrintWriter log = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(timeoutsLog, true), StandardCharsets.UTF_8))) {
+                log.printf("%tFT%<tT %s timed out after %d ms, last output:%n", new Date(), expiry.test, expiry.timeoutMs);
+                expiry.lastOutput.forEach(line -> log.println("    " + line));
+            }
+        } catch (IOException e) {
+            reportError(e); //not worth stopping the run
+        }
+
+        process.kill();
+    }
+
+    public TestTimeouts getTestTimeouts() {
+        return timeouts;
+    }
+
+    private Observable<GTestOutputEvent> parseOutput(ProcessModel process) {
+        if (mergeErrorOutput) {
+            return process.getTaggedOutput().lift(new GTestMergedOutputParser(new GTestOutputParser(symbols)));
+        }
+
+        return withErrorOutput(process, ingest == Ingest.Bytes
+                ? process.getRawOutput().lift(new GTestOutputByteParser(Charset.defaultCharset(), symbols))
+                : process.getOutput().lift(new GTestOutputParser(symbols)));
+    }
+
+    private Observable<GTestOutputEvent> parseStreamedOutput(ProcessModel process, StreamRunner runner) {
+        return withErrorOutput(process, new GTestStreamParser(enumerated.groupSizes, symbols).parse(
+                runner.getResultStream().subscribeOn(Schedulers.io()),
+                process.getOutput()
+        ));
+    }
+
+    /**
+     * Stdout may be read in chunks or come with the result stream, so it
+     * isn't known which test printed a stderr line
+     */
+    private static Observable<GTestOutputEvent> withErrorOutput(ProcessModel process, Observable<GTestOutputEvent> stdout) {
+        Observable<GTestOutputEvent> errorOutput = process.getErrorOutput()
+                .onErrorResumeNext(e -> Observable.just("Can't read stderr: " + e))
+                .map(line -> new ErrorOutput(line, Optional.empty(), Optional.empty()));
+        return Observable.merge(stdout, errorOutput);
     }
 
     public Observable<GTestListEvent> testsEnumeration() {
-        return testEnumerationProcess.onStarted()
-                .switchMap(p -> p.getOutput().lift(new GTestListParser()));
+        return testsEnumeration;
     }
 
     public Observable<Integer> testsExitCode() {
-        return testExecutionProcess.onStarted()
-                .switchMap(ProcessModel::getExitCode);
+        return Observable.merge(
+                testExecutionProcess.onStarted()
+                        .switchMap(ProcessModel::getExitCode),
+                runnerFinished.map(r -> r.exitCode)
+        );
     }
 
     public Observable<Void> testsStarted() {
-        return testExecutionProcess.onStarted()
-                .map(x -> null);
+        return Observable.merge(
+                testExecutionProcess.onStarted().map(x -> null),
+                runnerStarted.map(x -> null)
+        );
     }
 
     public Observable<Void> testsComplete() {
-        return testExecutionProcess.onFinished()
-                .filter(p -> !p.isCancelled())
-                .map(x -> null);
+        return Observable.merge(
+                testExecutionProcess.onFinished()
+                        .filter(p -> !p.isCancelled())
+                        .map(x -> null),
+                runnerFinished
+                        .filter(r -> !r.isCancelled)
+                        .map(x -> null),
+                loadedReports.map(x -> null)
+        );
     }
 
     public Observable<Void> testsCancelled() {
-        return testExecutionProcess.onFinished()
-                .filter(ProcessModel::isCancelled)
-                .map(x -> null);
+        return Observable.merge(
+                testExecutionProcess.onFinished()
+                        .filter(ProcessModel::isCancelled)
+                        .map(x -> null),
+                runnerFinished
+                        .filter(r -> r.isCancelled)
+                        .map(x -> null)
+        );
+    }
+
+    /**
+     * Run which couldn't start any process, or run by one process whose
+     * output couldn't be read; the run is over, without {@link #testsComplete()}
+     * or {@link #testsCancelled()}
+     */
+    public Observable<Throwable> testsFailed() {
+        return Observable.merge(
+                testExecutionProcess.onFailed(),
+                runnerFailed
+        );
+    }
+
+    /**
+     * Errors of all processes which couldn't be started or read, including
+     * listing of tests, batches of a parallel run and processes of a resumed
+     * run, and files of the run which couldn't be read or written (history,
+     * enumeration cache, slowdown report, log of timeouts); unlike
+     * {@link #testsFailed()}, they don't tell that the run is over
+     */
+    public Observable<Throwable> testsErrors() {
+        return Observable.merge(
+                testEnumerationProcess.onFailed(),
+                testExecutionProcess.onFailed(),
+                launchErrors
+        );
+    }
+
+    /**
+     * Errors are reported by threads of parallel runs and of listing, one
+     * at a time
+     */
+    private void reportError(Throwable e) {
+        synchronized (launchErrors) {
+            launchErrors.onNext(e);
+        }
     }
 
     //todo check what will happen if both cmd line param and env var will be set to different values
@@ -6,7 +6,10 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import gumanoid.event.GTestOutputEvent.SuiteStart;
 import gumanoid.event.GTestOutputEvent.TestFailed;
+import gumanoid.event.GTestOutputEvent.TestOutput;
 import gumanoid.event.GTestOutputEvent.TestPassed;
+import gumanoid.event.TestSymbols;
+import gumanoid.ui.BoundedEventQueue;
 import gumanoid.ui.DoubleProgressBar;
 import gumanoid.ui.gtest.output.GTestOutputViewController;
 import rx.Observable;
@@ -18,13 +21,32 @@ import rx.subjects.BehaviorSubject;
 import javax.swing.JLabel;
 import javax.swing.SwingUtilities;
 import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Created by Gumanoid on 18.01.2016.
  */
 public class GTestViewController {
+    /**
+     * Events are handed to EDT in batches, one runnable per batch, so EDT
+     * queue doesn't grow with each output line of a chatty test. Batch is
+     * sent when either this much time passes since the previous one...
+     */
+    private static final long BATCH_PERIOD_MS = 16;
+    /**
+     * ...or this many events are collected
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * Max number of events waiting for EDT, unless overridden by
+     * <code>gumanoid.eventQueueCapacity</code> system property
+     */
+    public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 10_000;
+
     private final GTestView view;
     private final GTestModel model;
 
@@ -34,15 +56,51 @@ public class GTestViewController {
         t.printStackTrace();
     });
 
+    private final BoundedEventQueue<Object> events;
+
     private final BehaviorSubject<Collection<GTestModel.TestId>> failedTests = BehaviorSubject.create();
 
-    private Collection<GTestModel.TestId> newFailedTests = null;
+    /**
+     * Ids of the tests failed in the current run, see {@link GTestModel#getSymbols()}
+     */
+    private BitSet newFailedTests = null;
     private int testsProgress;
+    private int failedTestRuns;
+    private int iteration;
+    private Throwable lastError; //of a process which couldn't be started or read
 
     public GTestViewController(GTestView view, String testExePath) {
+        this(view, testExePath, optionsFromSystemProperties());
+    }
+
+    public GTestViewController(GTestView view, String testExePath, GTestModel.Options options) {
+        this(view, testExePath, options, Integer.getInteger("gumanoid.eventQueueCapacity", DEFAULT_EVENT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * @param eventQueueCapacity    max number of events waiting for EDT; when
+     *                              it's reached, tests output lines are skipped,
+     *                              and reading of tests process output is paused
+     *                              until there is room for other events
+     */
+    public GTestViewController(GTestView view, String testExePath, GTestModel.Options options, int eventQueueCapacity) {
         this.view = view;
-        this.model = new GTestModel(testExePath);
+        this.model = new GTestModel(testExePath, options);
         this.outputController = new GTestOutputViewController(view.getTestOutputView());
+        this.events = new BoundedEventQueue<>(eventQueueCapacity, BATCH_SIZE, BATCH_PERIOD_MS,
+                e -> e instanceof TestOutput,
+                (e, skipped) -> skippedOutput((TestOutput) e, skipped),
+                batch -> {
+                    Preconditions.checkState(SwingUtilities.isEventDispatchThread());
+                    outputController.beginUpdate();
+                    try {
+                        batch.forEach(eventBus::post);
+                    } finally {
+                        outputController.endUpdate();
+                    }
+                    updateQueueStatistics();
+                },
+                SwingScheduler.getInstance());
 
         eventBus.register(this);
         eventBus.register(outputController);
@@ -62,7 +120,8 @@ public class GTestViewController {
         Observable<Boolean> testsAreRunning = Observable.merge(
                 model.testsStarted().map(x -> true),
                 model.testsComplete().map(x -> false),
-                model.testsCancelled().map(x -> false)
+                model.testsCancelled().map(x -> false),
+                model.testsFailed().map(x -> false)
         ).observeOn(SwingScheduler.getInstance());
 
         testsAreRunning.subscribe(r -> {
@@ -92,26 +151,79 @@ public class GTestViewController {
                     model.cancelTests();
                 });
 
-        Observable.merge(model.testsEnumeration(), model.testsOutput())
-                .observeOn(SwingScheduler.getInstance())
-//                .doOnNext(System.out::println)
-                .subscribe(e -> {
-                    Preconditions.checkState(SwingUtilities.isEventDispatchThread());
-                    eventBus.post(e);
-                }); //todo also handle error
+        //exit code and completion go through the same queue as events,
+        //so they are handled after the last event of the run; queue is
+        //filled on producers' threads, which are blocked when it's full
+        Observable.merge(
+                model.testsEnumeration(),
+                model.testsOutput(),
+                model.testsSlowdowns(),
+                model.testsExitCode().map(TestsExited::new),
+                model.testsComplete().map(x -> new TestsComplete()),
+                model.testsErrors().map(TestsError::new)
+        ).subscribe(e -> {
+            try {
+                events.put(e);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }); //todo also handle error
+    }
 
-        model.testsExitCode()
-                .observeOn(SwingScheduler.getInstance())
-                .subscribe(exitCode -> {
-                    Preconditions.checkState(SwingUtilities.isEventDispatchThread());
-                    outputController.processFinished(exitCode);
-                });
+    /**
+     * Tests are run by one executable, unless <code>gumanoid.shards</code>
+     * system property is set to a number of shards, or to "auto" to run
+     * a shard per processor. <code>gumanoid.parallelism</code> property
+     * tells how tests are split between shards, see {@link GTestModel.Parallelism}.
+     * If <code>gumanoid.resumeAfterCrash</code> is true, a run by one
+     * executable goes on after a test crashes it. <code>gumanoid.ingest</code>
+     * property tells how output is read, see {@link GTestModel.Ingest};
+     * Stream can't be combined with shards or resuming. If
+     * <code>gumanoid.mergeErrorOutput</code> is true, stderr is shown among
+     * output of the test which printed it, with Lines ingest only. Files of
+     * the executable are kept where <code>gumanoid.home</code> tells, see
+     * {@link gumanoid.runner.StoreFiles#defaultStoreDir()}
+     */
+    public static GTestModel.Options optionsFromSystemProperties() {
+        return GTestModel.Options.DEFAULT
+                .withIngest(GTestModel.Ingest.valueOf(
+                        System.getProperty("gumanoid.ingest", GTestModel.Ingest.Lines.name())))
+                .withWorkers(shardCount(), GTestModel.Parallelism.valueOf(
+                        System.getProperty("gumanoid.parallelism", GTestModel.Parallelism.Shards.name())))
+                .withResumeAfterCrash(Boolean.getBoolean("gumanoid.resumeAfterCrash"))
+                .withMergedErrorOutput(Boolean.getBoolean("gumanoid.mergeErrorOutput"));
+    }
 
-        model.testsComplete()
-                .observeOn(SwingScheduler.getInstance())
-                .subscribe(x -> {
-                    failedTests.onNext(newFailedTests);
-                });
+    private static int shardCount() {
+        String shards = System.getProperty("gumanoid.shards");
+        if (shards == null) {
+            return 1;
+        }
+        return shards.equals("auto") ? GTestModel.defaultShardCount() : Integer.parseInt(shards);
+    }
+
+    private static TestOutput skippedOutput(TestOutput last, int skipped) {
+        return new TestOutput("... " + skipped + " output line" + (skipped == 1 ? "" : "s") + " skipped, UI can't keep up",
+                last.groupName, last.testName, last.groupId, last.testId);
+    }
+
+    private static class TestsExited {
+        final int exitCode;
+
+        TestsExited(int exitCode) {
+            this.exitCode = exitCode;
+        }
+    }
+
+    private static class TestsComplete {
+    }
+
+    private static class TestsError {
+        final Throwable error;
+
+        TestsError(Throwable error) {
+            this.error = error;
+        }
     }
 
     public void runAllTests() {
@@ -126,9 +238,24 @@ public class GTestViewController {
         view.getCancelTests().doClick();
     }
 
+    /**
+     * Shows results of the run recorded in GTest XML report
+     */
+    public void loadReport(File report) {
+        Preconditions.checkState(SwingUtilities.isEventDispatchThread());
+        resetProgress();
+
+        Observable.just(report)
+                .observeOn(Schedulers.io())
+                .subscribe(model::loadReport);
+    }
+
     @Subscribe
     public void onSuiteStart(SuiteStart e) {
-        view.getTestsProgress().setMaximum(e.testCount);
+        //repeated suite runs are accounted as one long run
+        iteration = e.iteration;
+        DoubleProgressBar progress = view.getTestsProgress();
+        progress.setMaximum(iteration > 0 ? progress.getMaximum() + e.testCount : e.testCount);
     }
 
     @Subscribe
@@ -140,7 +267,36 @@ public class GTestViewController {
     @Subscribe
     public void onTestFailed(TestFailed e) {
         ++testsProgress;
-        newFailedTests.add(new GTestModel.TestId(e.groupName, e.testName));
+        ++failedTestRuns;
+        newFailedTests.set(testId(e));
+        updateProgress();
+    }
+
+    /**
+     * Events which aren't made by parsers don't carry ids, so the test is
+     * looked up by name
+     */
+    private int testId(TestFailed e) {
+        if (e.testId != TestSymbols.NONE) {
+            return e.testId;
+        }
+        TestSymbols symbols = model.getSymbols();
+        return symbols.test(symbols.group(e.groupName), e.testName);
+    }
+
+    @Subscribe
+    public void onTestsExited(TestsExited e) {
+        outputController.processFinished(e.exitCode);
+    }
+
+    @Subscribe
+    public void onTestsComplete(TestsComplete e) {
+        failedTests.onNext(failedTestIds(newFailedTests));
+    }
+
+    @Subscribe
+    public void onTestsError(TestsError e) {
+        lastError = e.error;
         updateProgress();
     }
 
@@ -149,23 +305,44 @@ public class GTestViewController {
         System.out.println("Unhandled event: " + e.getEvent());
     }
 
+    private void updateQueueStatistics() {
+        view.getTestsSummary().setToolTipText("Events queued: " + events.size()
+                + ", peak: " + events.getHighWaterMark() + " of " + events.getCapacity()
+                + ", output lines skipped: " + events.getSkippedCount());
+    }
+
     private void resetProgress() {
-        newFailedTests = new LinkedList<>();
+        events.resetStatistics();
+        newFailedTests = new BitSet();
         testsProgress = 0;
+        failedTestRuns = 0;
+        iteration = 0;
+        lastError = null;
         view.getTestsProgress().setValue(0);
         view.getTestsSummary().setText("Starting...");
         outputController.resetState();
     }
 
     private void updateProgress() {
-        int passed = testsProgress - newFailedTests.size();
+        int passed = testsProgress - failedTestRuns;
 
         DoubleProgressBar progress = view.getTestsProgress();
         progress.setValue1(passed);
         progress.setValue2(testsProgress);
 
         JLabel summary = view.getTestsSummary();
-        summary.setText("Passed: " + passed + ". Run: " + testsProgress);
-        summary.setForeground(newFailedTests.isEmpty()? GTestViewStyle.COLOR_PASSED : GTestViewStyle.COLOR_FAILED);
+        summary.setText("Passed: " + passed + ". Run: " + testsProgress + (iteration > 0 ? ". Iteration: " + (iteration + 1) : "")
+                + (lastError != null ? ". Can't run tests: " + lastError.getMessage() : ""));
+        summary.setForeground(newFailedTests.isEmpty() && lastError == null ? GTestViewStyle.COLOR_PASSED : GTestViewStyle.COLOR_FAILED);
+    }
+
+    private Collection<GTestModel.TestId> failedTestIds(BitSet testIds) {
+        TestSymbols symbols = model.getSymbols();
+
+        List<GTestModel.TestId> result = new ArrayList<>(testIds.cardinality());
+        for (int id = testIds.nextSetBit(0); id >= 0; id = testIds.nextSetBit(id + 1)) {
+            result.add(new GTestModel.TestId(symbols.groupName(symbols.groupOf(id)), symbols.testName(id)));
+        }
+        return result;
     }
 }
@@ -0,0 +1,125 @@
+package gumanoid.ui.gtest.output;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * Renders rows of the output tree with the same height, and with width
+ * estimated from the number of characters, which is exact for a monospaced
+ * font (unless text has tabs or double-width characters), so text of a row
+ * is measured neither when it's laid out nor when it's painted. Together with
+ * {@link JTree#setLargeModel} and {@link JTree#setRowHeight} set to
+ * {@link #getRowHeight()}, it lets the tree lay out and paint only rows which
+ * are visible, however many rows there are
+ */
+class FixedHeightRowRenderer extends DefaultTreeCellRenderer {
+    private static final long serialVersionUID = 1L;
+
+    private static final int ICON_HEIGHT = 16; //see Icons.load
+    private static final int EXTRA_WIDTH = 3; //as DefaultTreeCellRenderer adds
+    private static final int EXTRA_HEIGHT = 2;
+
+    private final int charWidth;
+    private final int textHeight;
+    private final int textAscent;
+    private final int rowHeight;
+    private final Map<?, ?> textHints; //desktop's antialiasing settings, which label's UI applies
+
+    /**
+     * @param font  monospaced font of the tree
+     */
+    FixedHeightRowRenderer(Font font) {
+        setFont(font);
+        setLeafIcon(null);
+        setClosedIcon(null);
+        setOpenIcon(null);
+
+        FontMetrics metrics = getFontMetrics(font);
+        charWidth = metrics.charWidth('m');
+        textHeight = metrics.getHeight();
+        textAscent = metrics.getAscent();
+        rowHeight = Math.max(textHeight, ICON_HEIGHT) + EXTRA_HEIGHT;
+        textHints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+    }
+
+    int getRowHeight() {
+        return rowHeight;
+    }
+
+    @Override
+    public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+        GTestOutputTreeModel.Node<GTestOutputRow> node = GTestOutputTreeModel.node(value);
+        GTestOutputRow outputRow = node.getValue();
+        GTestOutputRow.Style style = outputRow.getStyle();
+
+        this.selected = sel;
+        this.hasFocus = hasFocus;
+        setText(outputRow.getDisplayName());
+        setIcon(style.getIcon());
+        setForeground(style.getTextColor() != null
+                ? style.getTextColor()
+                : sel ? getTextSelectionColor() : getTextNonSelectionColor());
+
+        return this;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        String text = getText();
+        Icon icon = getIcon();
+
+        int width = (text != null ? text.length() * charWidth : 0) + EXTRA_WIDTH;
+        if (icon != null) {
+            width += icon.getIconWidth() + getIconTextGap();
+        }
+        return new Dimension(width, rowHeight);
+    }
+
+    /**
+     * Whole row is painted by {@link #paintComponent}, so selection doesn't
+     * depend on whether look and feel lets the renderer fill its background
+     */
+    @Override
+    public void paint(Graphics g) {
+        paintComponent(g);
+    }
+
+    /**
+     * Selection background and focus border are painted behind the text, as
+     * {@link DefaultTreeCellRenderer} does; text is drawn as is, rather than
+     * laid out and clipped by label's UI
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        int x = 0;
+        Icon icon = getIcon();
+        if (icon != null) {
+            icon.paintIcon(this, g, 0, (getHeight() - icon.getIconHeight()) / 2);
+            x = icon.getIconWidth() + getIconTextGap();
+        }
+
+        Color background = getBackgroundSelectionColor();
+        if (selected && background != null) {
+            g.setColor(background);
+            g.fillRect(x, 0, getWidth() - x, getHeight());
+        }
+
+        Color border = getBorderSelectionColor();
+        if (hasFocus && border != null) {
+            g.setColor(border);
+            g.drawRect(x, 0, getWidth() - x - 1, getHeight() - 1);
+        }
+
+        String text = getText();
+        if (text != null && !text.isEmpty()) {
+            if (textHints != null) {
+                ((Graphics2D) g).addRenderingHints(textHints);
+            }
+            g.setFont(getFont());
+            g.setColor(getForeground());
+            g.drawString(text, x, (getHeight() - textHeight) / 2 + textAscent);
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package gumanoid.ui.gtest.output;
 
+import com.google.common.base.Objects;
+
 import javax.swing.*;
 import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Row of the output tree. Its text color and icon are kept as one of a few
+ * {@link Style}s, which are shared by all rows looking the same, so rows
+ * of output lines don't keep anything but their text
+ *
  * Created by Gumanoid on 24.01.2016.
  */
 public class GTestOutputRow {
-    private Icon icon;
-    private Color textColor;
+    private Style style = Style.PLAIN;
     private String displayName;
 
     public GTestOutputRow(String displayName) {
@@ -20,20 +27,24 @@ public class GTestOutputRow {
         return displayName;
     }
 
+    public Style getStyle() {
+        return style;
+    }
+
     public Icon getIcon() {
-        return icon;
+        return style.icon;
     }
 
     public void setIcon(Icon icon) {
-        this.icon = icon;
+        style = Style.of(style.textColor, icon);
     }
 
     public Color getTextColor() {
-        return textColor;
+        return style.textColor;
     }
 
     public void setTextColor(Color textColor) {
-        this.textColor = textColor;
+        style = Style.of(textColor, style.icon);
     }
 
     public String getDisplayName() {
@@ -43,4 +54,58 @@ public class GTestOutputRow {
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
+
+    /**
+     * Text color and icon of a row; there is one instance for each of their
+     * combinations, which are few, since colors and icons are constants of
+     * {@link GTestOutputRowStyle}
+     */
+    public static final class Style {
+        /**
+         * Default text color and no icon
+         */
+        public static final Style PLAIN = new Style(null, null);
+
+        private static final Map<Style, Style> shared = new ConcurrentHashMap<>();
+
+        static {
+            shared.put(PLAIN, PLAIN);
+        }
+
+        private final Color textColor; //null for default one
+        private final Icon icon;
+
+        private Style(Color textColor, Icon icon) {
+            this.textColor = textColor;
+            this.icon = icon;
+        }
+
+        public static Style of(Color textColor, Icon icon) {
+            Style style = new Style(textColor, icon);
+            Style existing = shared.putIfAbsent(style, style);
+            return existing != null ? existing : style;
+        }
+
+        public Color getTextColor() {
+            return textColor;
+        }
+
+        public Icon getIcon() {
+            return icon;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Style that = (Style) o;
+            return Objects.equal(textColor, that.textColor) &&
+                    Objects.equal(icon, that.icon);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(textColor, icon);
+        }
+    }
 }
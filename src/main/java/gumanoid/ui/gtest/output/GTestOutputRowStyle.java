@@ -19,6 +19,8 @@ public class GTestOutputRowStyle {
     static final Color COLOR_RUNNING = Color.BLUE;
     static final Color COLOR_FAILED = Color.RED;
     static final Color COLOR_PASSED = Color.GREEN;
+    static final Color COLOR_SLOW = Color.ORANGE;
+    static final Color COLOR_STDERR = Color.MAGENTA;
 
     static final Icon TEST_PASSED_ICON = Icons.load("test_passed.png");
     static final Icon TEST_FAILED_ICON = Icons.load("test_failed.png");
@@ -30,12 +32,14 @@ public class GTestOutputRowStyle {
     static final Observable<Icon> GRAY_SPINNER = Observable.range(1, 8)
             .map(i -> Icons.load("spinner_gray_" + i + ".png"))
             .toList()
+            .cache() //frames are loaded once, so rows showing them share styles
             .flatMap(frames -> Observable.interval(125, MILLISECONDS, SwingScheduler.getInstance())
                     .map(index -> frames.get((int) (index % frames.size())))
             );
     static final Observable<Icon> RED_SPINNER = Observable.range(1, 8)
             .map(i -> Icons.load("spinner_red_" + i + ".png"))
             .toList()
+            .cache()
             .flatMap(frames -> Observable.interval(125, MILLISECONDS, SwingScheduler.getInstance())
                     .map(index -> frames.get((int) (index % frames.size())))
             );
@@ -7,13 +7,44 @@ import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
- * Model of GTest output
+ * Model of GTest output.
+ * <p/>
+ * Groups and tests are identified by int keys, which are expected to be
+ * small non-negative numbers (e. g. ids from {@link gumanoid.event.TestSymbols});
+ * test keys are unique across groups.
+ * <p/>
+ * Tests may be listed while they are already running, so groups and tests
+ * may be queued after they are added; such queueing is ignored, since the
+ * node is already in place.
+ * <p/>
+ * Output lines added by {@link #addOutputLine} may be kept in a
+ * {@link LineSpool} rather than on the heap; their values are made of the
+ * line when they are asked for (e. g. when a row is painted), and only the
+ * latest {@link #CACHED_ROWS} values are kept. So heap used by a node
+ * doesn't depend on how much output it has, as long as its lines are added
+ * one after another; lines interleaved with other nodes' take two ints each.
+ * <p/>
+ * Nodes appended between {@link #beginUpdate()} and {@link #endUpdate()}
+ * are reported by one event per parent, so a burst of output lines is laid
+ * out by the tree at once.
+ * <p/>
+ * Index of a child is found in constant time for added nodes, and in
+ * logarithmic time for queued nodes and spooled lines, so neither painting
+ * nor starting of queued tests slows down as groups grow.
+ * <p/>
+ * If children are lazy, output of a test isn't shown to the tree (as if
+ * the test node had no children, though it's not a leaf) until it's
+ * exposed, e. g. when the test is running, or when the user expands it,
+ * so the tree doesn't lay out output nobody is going to look at. Nodes'
+ * own methods still see all children
  *
  * Created by Gumanoid on 24.01.2016.
  */
@@ -29,27 +60,96 @@ public class GTestOutputTreeModel<T> implements TreeModel {
 
     public interface BranchNode<T> extends Node<T> {}
 
+    /**
+     * Number of values of spooled lines which are kept, the most
+     * recently used ones
+     */
+    public static final int CACHED_ROWS = 4096;
+
     private final List<TreeModelListener> listeners = new ArrayList<>();
+    private final Function<String, T> rowOfLine;
+    private final SpooledRows<T> spooledRows; //null if lines are kept on heap
+    private final boolean lazyChildren;
+
+    private int updateDepth;
+    /**
+     * Children appended to a node during update and not reported yet: index
+     * of the first one, and their number
+     */
+    private final Map<BranchNodeImpl<T>, int[]> pendingInserts = new LinkedHashMap<>();
 
-    private final Map<String, BranchNodeImpl<T>> structureIndex = new HashMap<>();
+    private final List<BranchNodeImpl<T>> groupIndex = new ArrayList<>();
+    private final List<BranchNodeImpl<T>> testIndex = new ArrayList<>();
 
     private final BranchNodeWithQueue<T> root;
     private BranchNodeWithQueue<T> suite;
     private BranchNodeImpl<T> summary;
 
     public GTestOutputTreeModel(T rootValue) {
+        this(rootValue, null);
+    }
+
+    /**
+     * @param rowOfLine makes value of a node added by {@link #addOutputLine}
+     */
+    public GTestOutputTreeModel(T rootValue, Function<String, T> rowOfLine) {
+        this(rootValue, rowOfLine, null);
+    }
+
+    /**
+     * @param spool     if not null, lines added by {@link #addOutputLine} are
+     *                  kept in it; their values are made again each time they
+     *                  are evicted from the cache, so changes of the values
+     *                  are not kept
+     */
+    public GTestOutputTreeModel(T rootValue, Function<String, T> rowOfLine, LineSpool spool) {
+        this(rootValue, rowOfLine, spool, false);
+    }
+
+    /**
+     * @param lazyChildren  if true, children of tests are hidden from the
+     *                      tree until they are exposed, see {@link #exposeChildren}
+     */
+    public GTestOutputTreeModel(T rootValue, Function<String, T> rowOfLine, LineSpool spool, boolean lazyChildren) {
+        Preconditions.checkArgument(spool == null || rowOfLine != null);
+
+        this.lazyChildren = lazyChildren;
+        this.rowOfLine = rowOfLine;
+        this.spooledRows = spool != null ? new SpooledRows<>(spool, rowOfLine) : null;
         root = new BranchNodeWithQueue<>(null, rootValue);
     }
 
     public void clear() {
+        if (spooledRows != null) {
+            spooledRows.clear();
+        }
         root.clear();
-        structureIndex.clear();
+        groupIndex.clear();
+        testIndex.clear();
         suite = null;
         summary = null;
+        pendingInserts.clear(); //the whole tree is reported as changed
 
         fireEvent(new TreeModelEvent(this, new Object[] { root }), TreeModelListener::treeStructureChanged);
     }
 
+    /**
+     * Starts gathering appended nodes; updates may be nested
+     */
+    public void beginUpdate() {
+        ++updateDepth;
+    }
+
+    /**
+     * Reports nodes appended since the outermost {@link #beginUpdate()}
+     */
+    public void endUpdate() {
+        Preconditions.checkState(updateDepth > 0);
+        if (--updateDepth == 0) {
+            flushInserts();
+        }
+    }
+
     public BranchNode<T> rootNode() {
         return root;
     }
@@ -62,12 +162,12 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         return summary;
     }
 
-    public BranchNode<T> groupNode(String groupKey) {
-        return structureIndex.get(groupKey);
+    public BranchNode<T> groupNode(int groupKey) {
+        return lookup(groupIndex, groupKey);
     }
 
-    public BranchNode<T> testNode(String groupKey, String testKey) {
-        return structureIndex.get(groupKey + "." + testKey);
+    public BranchNode<T> testNode(int testKey) {
+        return lookup(testIndex, testKey);
     }
 
     public void queueSuite(T suiteValue) {
@@ -77,33 +177,36 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         }
     }
 
-    public void queueGroup(String groupKey, T groupValue) {
+    public void queueGroup(int groupKey, T groupValue) {
         Preconditions.checkState(suite != null);
 
-        if (!structureIndex.containsKey(groupKey)) {
+        if (lookup(groupIndex, groupKey) == null) {
             BranchNodeWithQueue<T> group = new BranchNodeWithQueue<>(suite, groupValue);
-            structureIndex.put(groupKey, group);
+            index(groupIndex, groupKey, group);
             queueNode(suite, group);
         }
     }
 
-    public void queueTest(String groupKey, String testKey, T testValue) {
-        String key = groupKey + "." + testKey;
-        if (!structureIndex.containsKey(key)) {
-            BranchNodeWithQueue<T> group = (BranchNodeWithQueue<T>) structureIndex.get(groupKey);
+    public void queueTest(int groupKey, int testKey, T testValue) {
+        if (lookup(testIndex, testKey) == null) {
+            BranchNodeWithQueue<T> group = (BranchNodeWithQueue<T>) lookup(groupIndex, groupKey);
             Preconditions.checkState(group != null);
 
             BranchNodeWithQueue<T> test = new BranchNodeWithQueue<>(group, testValue);
-            structureIndex.put(key, test);
+            test.isExposed = !lazyChildren;
+            index(testIndex, testKey, test);
             queueNode(group, test);
         }
     }
 
+    /**
+     * Adds suite node, or moves queued suite node from the queue, or updates
+     * value of the suite node which is already added (e. g. when suite is
+     * run repeatedly). The same applies to groups and tests
+     */
     public BranchNode<T> addSuite(T suiteValue) {
         if (suite != null) {
-            unqueueNode(root, suite);
-            suite.setValue(suiteValue);
-            appendNode(root, suite);
+            requeueNode(root, suite, suiteValue);
         } else {
             suite = new BranchNodeWithQueue<>(root, suiteValue);
             appendNode(root, suite);
@@ -111,35 +214,31 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         return suite;
     }
 
-    public BranchNode<T> addGroup(String groupKey, T groupValue) {
+    public BranchNode<T> addGroup(int groupKey, T groupValue) {
         Preconditions.checkState(suite != null);
 
-        BranchNodeImpl<T> group = structureIndex.get(groupKey);
+        BranchNodeImpl<T> group = lookup(groupIndex, groupKey);
         if (group != null) {
-            unqueueNode(suite, group);
-            group.setValue(groupValue);
-            appendNode(suite, group);
+            requeueNode(suite, group, groupValue);
         } else {
             group = new BranchNodeWithQueue<>(suite, groupValue);
-            structureIndex.put(groupKey, group);
+            index(groupIndex, groupKey, group);
             appendNode(suite, group);
         }
         return group;
     }
 
-    public BranchNode<T> addTest(String groupKey, String testKey, T testValue) {
-        String key = groupKey + "." + testKey;
-        BranchNodeImpl<T> group = structureIndex.get(groupKey);
+    public BranchNode<T> addTest(int groupKey, int testKey, T testValue) {
+        BranchNodeImpl<T> group = lookup(groupIndex, groupKey);
         Preconditions.checkState(group != null);
 
-        BranchNodeImpl<T> test = structureIndex.get(key);
+        BranchNodeImpl<T> test = lookup(testIndex, testKey);
         if (test != null) {
-            unqueueNode(group, test);
-            test.setValue(testValue);
-            appendNode(group, test);
+            requeueNode(group, test, testValue);
         } else {
             test = new BranchNodeWithQueue<>(group, testValue);
-            structureIndex.put(key, test);
+            test.isExposed = !lazyChildren;
+            index(testIndex, testKey, test);
             appendNode(group, test);
         }
         return test;
@@ -154,18 +253,95 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         return leaf;
     }
 
+    /**
+     * Adds output line, which is kept in the spool, if the model has one
+     */
+    public Node<T> addOutputLine(BranchNode<T> parent, String line) {
+        Preconditions.checkState(rowOfLine != null);
+        if (spooledRows == null) {
+            return addOutput(parent, rowOfLine.apply(line));
+        }
+
+        Preconditions.checkState(parent != null);
+
+        BranchNodeImpl<T> impl = (BranchNodeImpl<T>) parent;
+        int index = impl.addLine(spooledRows.spool.append(line), spooledRows);
+        inserted(impl, index);
+        return impl.childAt(index);
+    }
+
     public BranchNode<T> addSummary(T summaryValue) {
-        summary = new BranchNodeImpl<>(root, summaryValue);
-        appendNode(root, summary);
+        if (summary != null) {
+            summary.setValue(summaryValue);
+            nodeUpdated(summary);
+        } else {
+            summary = new BranchNodeImpl<>(root, summaryValue);
+            appendNode(root, summary);
+        }
         return summary;
     }
 
+    public boolean hasLazyChildren() {
+        return lazyChildren;
+    }
+
+    /**
+     * Shows children of the node to the tree; they are shown by default,
+     * unless children are lazy
+     */
+    public void exposeChildren(Node<T> node) {
+        if (node instanceof BranchNodeImpl && !((BranchNodeImpl<T>) node).isExposed) {
+            ((BranchNodeImpl<T>) node).isExposed = true;
+            structureChanged(node);
+        }
+    }
+
+    /**
+     * Hides children of the node from the tree, if children are lazy;
+     * node is expected to be collapsed
+     */
+    public void hideChildren(Node<T> node) {
+        if (lazyChildren && node instanceof BranchNodeImpl && ((BranchNodeImpl<T>) node).isExposed) {
+            ((BranchNodeImpl<T>) node).isExposed = false;
+            pendingInserts.remove(node);
+            structureChanged(node);
+        }
+    }
+
+    public boolean isExposed(Node<T> node) {
+        return !(node instanceof BranchNodeImpl) || ((BranchNodeImpl<T>) node).isExposed;
+    }
+
+    private void structureChanged(Node<T> node) {
+        Path path = new Path(node);
+        flushAncestorInserts(path);
+        fireEvent(new TreeModelEvent(this, path), TreeModelListener::treeStructureChanged);
+    }
+
+    public TreePath pathOf(Node<T> node) {
+        return new Path(node);
+    }
+
+    @SuppressWarnings("unchecked")
     public static <T> Node<T> node(Object rawNode) {
-        //noinspection unchecked
         return Node.class.cast(rawNode);
     }
 
-    private void queueNode(BranchNodeWithQueue<T> parent, Node<T> child) {
+    private static <N> N lookup(List<N> index, int key) {
+        return key >= 0 && key < index.size() ? index.get(key) : null;
+    }
+
+    private static <N> void index(List<N> index, int key, N node) {
+        Preconditions.checkArgument(key >= 0);
+        while (index.size() <= key) {
+            index.add(null);
+        }
+        index.set(key, node);
+    }
+
+    private void queueNode(BranchNodeWithQueue<T> parent, IndexedNode<T> child) {
+        flushInserts(); //queued node goes after appended ones
+
         int index = parent.childCount();
         TreeModelEvent event = new TreeModelEvent(
                 GTestOutputTreeModel.this,
@@ -178,20 +354,81 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         fireEvent(event, TreeModelListener::treeNodesInserted);
     }
 
-    private void appendNode(BranchNodeImpl<T> parent, Node<T> child) {
-            int index = parent.add(child);
-            TreeModelEvent event = new TreeModelEvent(
-                    GTestOutputTreeModel.this,
-                    new Path(parent),
-                    new int[] { index },
-                    new Object[] { child }
-            );
+    private void appendNode(BranchNodeImpl<T> parent, IndexedNode<T> child) {
+            inserted(parent, parent.add(child));
+    }
+
+    private void inserted(BranchNodeImpl<T> parent, int index) {
+        if (!parent.isExposed) {
+            return; //whole structure is reported when it's exposed
+        }
+
+        if (updateDepth == 0) {
+            fireInserted(parent, index, 1);
+            return;
+        }
+
+        int[] pending = pendingInserts.get(parent);
+        if (pending != null && pending[0] + pending[1] == index) {
+            ++pending[1];
+        } else {
+            flushInserts(parent);
+            pendingInserts.put(parent, new int[] { index, 1 });
+        }
+    }
+
+    /**
+     * Parents are reported in order they got their first pending child, so
+     * a node is reported before its own children
+     */
+    private void flushInserts() {
+        if (pendingInserts.isEmpty()) {
+            return;
+        }
 
-            fireEvent(event, TreeModelListener::treeNodesInserted);
+        List<Map.Entry<BranchNodeImpl<T>, int[]>> pending = new ArrayList<>(pendingInserts.entrySet());
+        pendingInserts.clear();
+        for (Map.Entry<BranchNodeImpl<T>, int[]> e : pending) {
+            fireInserted(e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
     }
 
-    private void unqueueNode(BranchNodeImpl<T> parent, Node<T> child) {
-            int index = BranchNodeWithQueue.class.cast(parent).take(child);
+    private void flushInserts(BranchNodeImpl<T> parent) {
+        int[] pending = pendingInserts.remove(parent);
+        if (pending != null) {
+            fireInserted(parent, pending[0], pending[1]);
+        }
+    }
+
+    private void fireInserted(BranchNodeImpl<T> parent, int firstIndex, int count) {
+        int[] indices = new int[count];
+        Object[] children = new Object[count];
+        for (int i = 0; i < count; ++i) {
+            indices[i] = firstIndex + i;
+            children[i] = parent.childAt(firstIndex + i);
+        }
+
+        fireEvent(new TreeModelEvent(
+                GTestOutputTreeModel.this,
+                new Path(parent),
+                indices,
+                children
+        ), TreeModelListener::treeNodesInserted);
+    }
+
+    private void requeueNode(BranchNodeImpl<T> parent, BranchNodeImpl<T> child, T value) {
+        child.setValue(value);
+        if (((BranchNodeWithQueue<T>) parent).isQueued(child)) {
+            unqueueNode(parent, child);
+            appendNode(parent, child);
+        } else {
+            nodeUpdated(child);
+        }
+    }
+
+    private void unqueueNode(BranchNodeImpl<T> parent, IndexedNode<T> child) {
+            flushInserts();
+            int index = ((BranchNodeWithQueue<T>) parent).take(child);
             TreeModelEvent event = new TreeModelEvent(
                     GTestOutputTreeModel.this,
                     new Path(parent),
@@ -201,7 +438,19 @@ public class GTestOutputTreeModel<T> implements TreeModel {
             fireEvent(event, TreeModelListener::treeNodesRemoved);
     }
 
-    private static class LeafNode<T> implements Node<T> {
+    /**
+     * Node which knows where it is among children of its parent
+     */
+    private static abstract class IndexedNode<T> implements Node<T> {
+        /**
+         * Segment of the node in its parent, see {@link BranchNodeImpl}, or
+         * its slot in the parent's queue, see {@link BranchNodeWithQueue}
+         */
+        int position = -1;
+        boolean isQueued;
+    }
+
+    private static class LeafNode<T> extends IndexedNode<T> {
         private final Node<T> parent;
         private final T value;
 
@@ -241,10 +490,209 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         }
     }
 
-    private static class BranchNodeImpl<T> implements BranchNode<T> {
+    /**
+     * Spooled output line; made each time the node is asked for a child, so
+     * nodes of the same line are equal
+     */
+    private static class SpooledLeaf<T> implements Node<T> {
+        private final BranchNodeImpl<T> parent;
+        private final SpooledRows<T> rows;
+        private final int line;
+
+        private SpooledLeaf(BranchNodeImpl<T> parent, SpooledRows<T> rows, int line) {
+            this.parent = parent;
+            this.rows = rows;
+            this.line = line;
+        }
+
+        @Override
+        public Node<T> getParent() {
+            return parent;
+        }
+
+        @Override
+        public T getValue() {
+            return rows.row(line);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return true;
+        }
+
+        @Override
+        public int childCount() {
+            return 0;
+        }
+
+        @Override
+        public Node<T> childAt(int index) {
+            return null;
+        }
+
+        @Override
+        public int indexOf(Node<T> child) {
+            return -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SpooledLeaf<?> that = (SpooledLeaf<?>) o;
+            return line == that.line && parent == that.parent;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(parent) + line;
+        }
+    }
+
+    /**
+     * Values of spooled lines which were asked for lately; a block of lines
+     * is read at once, since rows next to a painted one are usually painted
+     * as well
+     */
+    private static class SpooledRows<T> {
+        private final LineSpool spool;
+        private final Function<String, T> rowOfLine;
+        private final LinkedHashMap<Integer, T> cache = new LinkedHashMap<Integer, T>(CACHED_ROWS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > CACHED_ROWS;
+            }
+        };
+
+        private SpooledRows(LineSpool spool, Function<String, T> rowOfLine) {
+            this.spool = spool;
+            this.rowOfLine = rowOfLine;
+        }
+
+        T row(int line) {
+            T row = cache.get(line);
+            if (row == null) {
+                int block = line / LineSpool.LINES_PER_BLOCK;
+                List<String> lines = spool.readBlock(block);
+                for (int i = 0; i < lines.size(); ++i) {
+                    int blockLine = block * LineSpool.LINES_PER_BLOCK + i;
+                    if (blockLine != line && !cache.containsKey(blockLine)) {
+                        cache.put(blockLine, rowOfLine.apply(lines.get(i)));
+                    }
+                }
+                row = rowOfLine.apply(lines.get(line - block * LineSpool.LINES_PER_BLOCK));
+                cache.put(line, row);
+            }
+            return row;
+        }
+
+        void clear() {
+            spool.clear();
+            cache.clear();
+        }
+    }
+
+    /**
+     * Spool indices of lines of one node, in order they are added, which is
+     * the order of the spool. Consecutive lines are kept as one run, so
+     * output of a node which prints alone takes no more heap than a node
+     * with a little; output interleaved with lines of other nodes, e. g. of
+     * parallel processes, takes two ints per line
+     */
+    private static class LineRuns {
+        private int runCount;
+        private int[] runLine = new int[2]; //spool index of the first line of a run
+        private int[] runEnd = new int[2]; //number of lines up to the end of the run
+
+        int size() {
+            return runCount > 0 ? runEnd[runCount - 1] : 0;
+        }
+
+        void add(int line) {
+            int last = runCount - 1;
+            if (last >= 0 && runLine[last] + runEnd[last] - runStart(last) == line) {
+                ++runEnd[last];
+                return;
+            }
+
+            if (runCount == runLine.length) {
+                runLine = Arrays.copyOf(runLine, runCount * 2);
+                runEnd = Arrays.copyOf(runEnd, runCount * 2);
+            }
+            runLine[runCount] = line;
+            runEnd[runCount] = size() + 1;
+            ++runCount;
+        }
+
+        /**
+         * @return spool index of the line at the given position
+         */
+        int get(int index) {
+            int low = 0;
+            int high = runCount - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (runEnd[mid] <= index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return runLine[low] + index - runStart(low);
+        }
+
+        /**
+         * @return position of the spooled line, or -1 if it isn't one of these
+         */
+        int indexOf(int line) {
+            int low = 0;
+            int high = runCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (runLine[mid] <= line) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            int run = high; //the last one which starts before the line
+            if (run < 0) {
+                return -1;
+            }
+
+            int offset = line - runLine[run];
+            int start = runStart(run);
+            return offset < runEnd[run] - start ? start + offset : -1;
+        }
+
+        private int runStart(int run) {
+            return run > 0 ? runEnd[run - 1] : 0;
+        }
+
+        void clear() {
+            runCount = 0;
+        }
+    }
+
+    /**
+     * Children are kept as segments, each one is either a node, or a run of
+     * lines of this node which were added one after another, whatever lines
+     * of other nodes were spooled between them; lines themselves are kept
+     * by {@link LineRuns}
+     */
+    private static class BranchNodeImpl<T> extends IndexedNode<T> implements BranchNode<T> {
         private final Node<T> parent;
         private T value;
-        private final List<Node<T>> children = new ArrayList<>();
+        private final List<Node<T>> nodes = new ArrayList<>();
+        private SpooledRows<T> rows;
+        boolean isExposed = true;
+
+        private int segmentCount;
+        private int[] segmentNode = new int[2]; //index in nodes, or -1 for a run of lines
+        private final LineRuns lines = new LineRuns();
+        private int[] segmentLine = new int[2]; //position in lines of the first line of a run, or size of lines when a node was added
+        private int[] segmentEnd = new int[2]; //number of children up to the end of the segment
 
         private BranchNodeImpl(Node<T> parent, T value) {
             this.parent = parent;
@@ -272,32 +720,147 @@ public class GTestOutputTreeModel<T> implements TreeModel {
 
         @Override
         public int childCount() {
-            return children.size();
+            return addedCount();
+        }
+
+        /**
+         * Number of children, not counting ones which subclasses may add
+         */
+        private int addedCount() {
+            return segmentCount > 0 ? segmentEnd[segmentCount - 1] : 0;
         }
 
         @Override
         public Node<T> childAt(int index) {
-            return children.get(index);
+            Preconditions.checkElementIndex(index, addedCount());
+
+            int segment = segmentOf(index);
+            return segmentNode[segment] != -1
+                    ? nodes.get(segmentNode[segment])
+                    : new SpooledLeaf<>(this, rows, lines.get(segmentLine[segment] + index - segmentStart(segment)));
         }
 
         @Override
         public int indexOf(Node<T> child) {
-            return children.indexOf(child);
+            if (child instanceof SpooledLeaf) {
+                SpooledLeaf<T> leaf = (SpooledLeaf<T>) child;
+                return leaf.parent == this ? indexOfLine(leaf.line) : -1;
+            }
+
+            if (!(child instanceof IndexedNode) || child.getParent() != this) {
+                return -1;
+            }
+
+            IndexedNode<T> node = (IndexedNode<T>) child;
+            int segment = node.position;
+            boolean isAdded = !node.isQueued && segment >= 0 && segment < segmentCount
+                    && segmentNode[segment] != -1 && nodes.get(segmentNode[segment]) == node;
+            return isAdded ? segmentStart(segment) : -1;
         }
 
-        public int add(Node<T> child) {
-            int index = children.size();
-            children.add(child);
+        /**
+         * Lines are added in order, so first lines of segments grow along
+         * with their indices
+         */
+        private int indexOfLine(int spooledLine) {
+            int line = lines.indexOf(spooledLine);
+            if (line < 0) {
+                return -1;
+            }
+
+            int low = 0;
+            int high = segmentCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (segmentLine[mid] <= line) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            int segment = high; //the last one which starts before the line
+            if (segment < 0 || segmentNode[segment] != -1) {
+                return -1;
+            }
+
+            int offset = line - segmentLine[segment];
+            int start = segmentStart(segment);
+            return offset < segmentEnd[segment] - start ? start + offset : -1;
+        }
+
+        private int segmentOf(int index) {
+            int low = 0;
+            int high = segmentCount - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (segmentEnd[mid] <= index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int segmentStart(int segment) {
+            return segment > 0 ? segmentEnd[segment - 1] : 0;
+        }
+
+        public int add(IndexedNode<T> child) {
+            int index = addedCount();
+            child.position = segmentCount;
+            child.isQueued = false;
+            nodes.add(child);
+            addSegment(nodes.size() - 1, lines.size());
             return index;
         }
 
+        public int addLine(int line, SpooledRows<T> rows) {
+            this.rows = rows;
+
+            int index = addedCount();
+            lines.add(line);
+            if (segmentCount > 0 && segmentNode[segmentCount - 1] == -1) {
+                ++segmentEnd[segmentCount - 1];
+            } else {
+                addSegment(-1, lines.size() - 1);
+            }
+            return index;
+        }
+
+        private void addSegment(int node, int line) {
+            if (segmentCount == segmentNode.length) {
+                int capacity = segmentCount * 2;
+                segmentNode = Arrays.copyOf(segmentNode, capacity);
+                segmentLine = Arrays.copyOf(segmentLine, capacity);
+                segmentEnd = Arrays.copyOf(segmentEnd, capacity);
+            }
+
+            segmentNode[segmentCount] = node;
+            segmentLine[segmentCount] = line;
+            segmentEnd[segmentCount] = addedCount() + 1;
+            ++segmentCount;
+        }
+
         public void clear() {
-            children.clear();
+            nodes.clear();
+            lines.clear();
+            segmentCount = 0;
         }
     }
 
+    /**
+     * Queued children go after added ones. Each queued child gets the next
+     * slot of the queue; slots of children which are taken from the queue
+     * stay empty, and a Fenwick tree counts occupied slots, so a child is
+     * found by index, and index of a child is found, in logarithmic time
+     */
     private static class BranchNodeWithQueue<T> extends BranchNodeImpl<T> {
-        private final List<Node<T>> queued = new ArrayList<>();
+        private Object[] slots = new Object[2];
+        private int slotCount;
+        private int[] occupied = new int[3]; //Fenwick tree over slots, 1-based
+        private int queuedCount;
 
         private BranchNodeWithQueue(Node<T> parent, T value) {
             super(parent, value);
@@ -305,46 +868,121 @@ public class GTestOutputTreeModel<T> implements TreeModel {
 
         @Override
         public int childCount() {
-            return super.childCount() + queued.size();
+            return super.childCount() + queuedCount;
         }
 
         @Override
         public Node<T> childAt(int index) {
             int count = super.childCount();
-            return index < count
-                    ? super.childAt(index)
-                    : queued.get(index - count);
+            if (index < count) {
+                return super.childAt(index);
+            }
+
+            Preconditions.checkElementIndex(index - count, queuedCount);
+            @SuppressWarnings("unchecked") //slots only keep children of this node
+            Node<T> child = (Node<T>) slots[slotOf(index - count)];
+            return child;
         }
 
         @Override
         public int indexOf(Node<T> child) {
-            int index = super.indexOf(child);
-            if (index != -1) {
-                return index;
-            }
+            return isQueued(child)
+                    ? super.childCount() + occupiedBefore(((IndexedNode<T>) child).position)
+                    : super.indexOf(child);
+        }
 
-            index = queued.indexOf(child);
-            if (index != -1) {
-                return super.childCount() + index;
+        public void queue(IndexedNode<T> child) {
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+                rebuildOccupied();
             }
 
-            return -1;
+            int slot = slotCount++;
+            slots[slot] = child;
+            updateOccupied(slot, 1);
+            ++queuedCount;
+
+            child.position = slot;
+            child.isQueued = true;
         }
 
-        public void queue(Node<T> child) {
-            queued.add(child);
+        public boolean isQueued(Node<T> child) {
+            if (!(child instanceof IndexedNode) || child.getParent() != this) {
+                return false;
+            }
+
+            IndexedNode<T> node = (IndexedNode<T>) child;
+            return node.isQueued && node.position < slotCount && slots[node.position] == node;
         }
 
-        public int take(Node<T> child) {
-            int indexInQueue = queued.indexOf(child);
-            Preconditions.checkState(indexInQueue != -1);
-            queued.remove(indexInQueue);
-            return indexInQueue + super.childCount();
+        public int take(IndexedNode<T> child) {
+            Preconditions.checkState(isQueued(child));
+
+            int slot = child.position;
+            int index = super.childCount() + occupiedBefore(slot);
+            slots[slot] = null;
+            updateOccupied(slot, -1);
+            child.isQueued = false;
+
+            if (--queuedCount == 0) {
+                clearQueue(); //slots are reused
+            }
+            return index;
         }
 
         public void clear() {
             super.clear();
-            queued.clear();
+            clearQueue();
+        }
+
+        private void clearQueue() {
+            Arrays.fill(slots, 0, slotCount, null);
+            Arrays.fill(occupied, 0);
+            slotCount = 0;
+            queuedCount = 0;
+        }
+
+        private void rebuildOccupied() {
+            occupied = new int[slots.length + 1];
+            for (int i = 1; i < occupied.length; ++i) {
+                occupied[i] += i - 1 < slotCount && slots[i - 1] != null ? 1 : 0;
+                int next = i + (i & -i);
+                if (next < occupied.length) {
+                    occupied[next] += occupied[i];
+                }
+            }
+        }
+
+        private void updateOccupied(int slot, int delta) {
+            for (int i = slot + 1; i < occupied.length; i += i & -i) {
+                occupied[i] += delta;
+            }
+        }
+
+        /**
+         * @return number of occupied slots before the given one
+         */
+        private int occupiedBefore(int slot) {
+            int count = 0;
+            for (int i = slot; i > 0; i -= i & -i) {
+                count += occupied[i];
+            }
+            return count;
+        }
+
+        /**
+         * @return slot which has <code>rank</code> occupied slots before it
+         */
+        private int slotOf(int rank) {
+            int position = 0;
+            for (int step = Integer.highestOneBit(occupied.length - 1); step > 0; step >>= 1) {
+                int next = position + step;
+                if (next < occupied.length && occupied[next] <= rank) {
+                    position = next;
+                    rank -= occupied[next];
+                }
+            }
+            return position; //1-based position of the last slot before it, so 0-based slot itself
         }
     }
 
@@ -361,12 +999,12 @@ public class GTestOutputTreeModel<T> implements TreeModel {
 
     @Override
     public int getChildCount(Object parent) {
-        return node(parent).childCount();
+        return isExposed(node(parent)) ? node(parent).childCount() : 0;
     }
 
     @Override
     public Object getChild(Object parent, int index) {
-        return node(parent).childAt(index);
+        return isExposed(node(parent)) ? node(parent).childAt(index) : null;
     }
 
     @Override
@@ -374,6 +1012,7 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         //todo check that parent & child are belong to this model, as documented in TreeModel interface
         if (parent == null) return -1;
         if (child == null) return -1;
+        if (!isExposed(node(parent))) return -1;
         return node(parent).indexOf(node(child));
     }
 
@@ -386,11 +1025,26 @@ public class GTestOutputTreeModel<T> implements TreeModel {
         valueForPathChanged(new Path(node), node);
     }
 
+    /**
+     * Changed node is reported to be in place, so its ancestors' pending
+     * children are reported first; its own pending children are not needed
+     */
     @Override
     public void valueForPathChanged(TreePath path, Object newValue) {
+        flushAncestorInserts(path);
         fireEvent(new TreeModelEvent(this, path), TreeModelListener::treeNodesChanged);
     }
 
+    private void flushAncestorInserts(TreePath path) {
+        if (!pendingInserts.isEmpty() && path.getParentPath() != null) {
+            for (Object ancestor : path.getParentPath().getPath()) {
+                @SuppressWarnings("unchecked") //paths only consist of this model's nodes
+                BranchNodeImpl<T> node = (BranchNodeImpl<T>) ancestor;
+                flushInserts(node);
+            }
+        }
+    }
+
     @Override
     public void addTreeModelListener(TreeModelListener l) {
         listeners.add(l);
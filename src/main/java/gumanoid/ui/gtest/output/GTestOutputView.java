@@ -7,6 +7,7 @@ import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
+import java.io.IOException;
 
 /**
  * Created by Gumanoid on 09.01.2016.
@@ -24,7 +25,21 @@ public class GTestOutputView extends JPanel {
     private final JList<TreePath> crumbs;
 
     public GTestOutputView() {
-        this.model = new GTestOutputTreeModel<>(new GTestOutputRow(null));
+        this(Boolean.getBoolean("gumanoid.spoolOutput"), Boolean.getBoolean("gumanoid.collapsePassedTests"),
+                Boolean.getBoolean("gumanoid.fixedRowHeight"));
+    }
+
+    /**
+     * @param spoolOutput           if true, output lines are kept in a temporary
+     *                              file rather than on the heap, see {@link LineSpool}
+     * @param collapsePassedTests   if true, output of passed tests is collapsed
+     *                              and isn't shown to the tree until it's expanded
+     * @param fixedRowHeight        if true, rows are of the same height, and
+     *                              aren't measured, see {@link FixedHeightRowRenderer}
+     */
+    public GTestOutputView(boolean spoolOutput, boolean collapsePassedTests, boolean fixedRowHeight) {
+        this.model = new GTestOutputTreeModel<>(new GTestOutputRow(null), GTestOutputRow::new,
+                spoolOutput ? createSpool() : null, collapsePassedTests);
 
         tree = new JTree(model);
         tree.setLargeModel(true); //how on Earth does it fix test ellipsis???
@@ -61,6 +76,11 @@ public class GTestOutputView extends JPanel {
                 return this;
             }
         });
+        if (fixedRowHeight) {
+            FixedHeightRowRenderer renderer = new FixedHeightRowRenderer(tree.getFont());
+            tree.setRowHeight(renderer.getRowHeight());
+            tree.setCellRenderer(renderer);
+        }
 
         //todo provide size hint so that crumb is fit to it contents
         //todo add spacers between items
@@ -100,6 +120,15 @@ public class GTestOutputView extends JPanel {
         add(treeScroll, BorderLayout.CENTER);
     }
 
+    private static LineSpool createSpool() {
+        try {
+            return LineSpool.createTemp();
+        } catch (IOException e) {
+            e.printStackTrace(); //output is kept on heap then
+            return null;
+        }
+    }
+
     GTestOutputTreeModel<GTestOutputRow> getModel() {
         return model;
     }
@@ -5,19 +5,32 @@ import com.google.common.eventbus.Subscribe;
 import gumanoid.event.GTestListEvent.GroupAnnounce;
 import gumanoid.event.GTestListEvent.TestAnnounce;
 import gumanoid.event.GTestOutputEvent.*;
+import gumanoid.event.TestSymbols;
+import gumanoid.history.SlowdownDetector.Slowdown;
 import gumanoid.ui.Animation;
 import rx.functions.Action2;
 
 import javax.swing.*;
 import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeModelListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.TreePath;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Created by Gumanoid on 18.01.2016.
  */
 public class GTestOutputViewController {
+    /**
+     * Tree is scrolled to the latest output at most once per this period,
+     * about a frame
+     */
+    private static final int AUTOSCROLL_PERIOD_MS = 16;
+
     private final GTestOutputView view;
     private final GTestOutputTreeModel<GTestOutputRow> model;
 
@@ -26,7 +39,18 @@ public class GTestOutputViewController {
     private final Animation<GTestOutputTreeModel.Node<GTestOutputRow>, Icon> currentTestIndicator;
 
     private boolean failsInSuite = false;
-    private boolean failsInGroup = false;
+
+    /**
+     * When tests are repeated, rows of groups and tests are reused by all
+     * iterations, and show aggregated results
+     */
+    private int iteration = 0;
+    private final List<TestRunStatistics> testStatistics = new ArrayList<>();
+    private final BitSet failedGroups = new BitSet();
+    private final List<Slowdown> slowdowns = new ArrayList<>();
+
+    private final Timer autoscroll;
+    private TreePath autoscrollTarget;
 
     public GTestOutputViewController(GTestOutputView view) {
         this.view = view;
@@ -45,6 +69,14 @@ public class GTestOutputViewController {
         currentGroupIndicator = Animation.create(updateIcon);
         currentTestIndicator = Animation.create(updateIcon);
 
+        autoscroll = new Timer(AUTOSCROLL_PERIOD_MS, e -> {
+            if (autoscrollTarget != null) {
+                view.getTree().scrollPathToVisible(autoscrollTarget);
+                autoscrollTarget = null;
+            }
+        });
+        autoscroll.setRepeats(false);
+
         model.addTreeModelListener(new TreeModelListener() {
             @Override
             public void treeNodesChanged(TreeModelEvent e) {
@@ -55,8 +87,11 @@ public class GTestOutputViewController {
 
             @Override
             public void treeNodesInserted(TreeModelEvent e) {
-                TreePath childPath = e.getTreePath().pathByAddingChild(e.getChildren()[0]);
-                view.getTree().scrollPathToVisible(childPath);
+                Object[] children = e.getChildren();
+                autoscrollTarget = e.getTreePath().pathByAddingChild(children[children.length - 1]);
+                if (!autoscroll.isRunning()) {
+                    autoscroll.start();
+                }
             }
 
             @Override
@@ -65,6 +100,18 @@ public class GTestOutputViewController {
 
             @Override
             public void treeStructureChanged(TreeModelEvent e) {
+                autoscrollTarget = null;
+            }
+        });
+
+        view.getTree().addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent e) {
+                model.exposeChildren(GTestOutputTreeModel.node(e.getPath().getLastPathComponent()));
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent e) {
             }
         });
 
@@ -103,14 +150,34 @@ public class GTestOutputViewController {
         });
     }
 
+    /**
+     * Output added until {@link #endUpdate()} is shown at once, see
+     * {@link GTestOutputTreeModel#beginUpdate()}
+     */
+    public void beginUpdate() {
+        Preconditions.checkState(SwingUtilities.isEventDispatchThread());
+
+        model.beginUpdate();
+    }
+
+    public void endUpdate() {
+        Preconditions.checkState(SwingUtilities.isEventDispatchThread());
+
+        model.endUpdate();
+    }
+
     public void resetState() {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
         model.clear();
         model.queueSuite(new GTestOutputRow("Suite"));
 
-        failsInGroup = false;
         failsInSuite = false;
+
+        iteration = 0;
+        testStatistics.clear();
+        failedGroups.clear();
+        slowdowns.clear();
     }
 
     public void processFinished(int exitCode) {
@@ -138,7 +205,7 @@ public class GTestOutputViewController {
 
         GTestOutputRow test = new GTestOutputRow(e.groupName);
         test.setTextColor(GTestOutputRowStyle.COLOR_QUEUED);
-        model.queueGroup(e.groupName, test);
+        model.queueGroup(e.groupId, test);
     }
 
     @Subscribe
@@ -147,22 +214,30 @@ public class GTestOutputViewController {
 
         GTestOutputRow test = new GTestOutputRow(e.testName);
         test.setTextColor(GTestOutputRowStyle.COLOR_QUEUED);
-        model.queueTest(e.groupName, e.testName, test);
+        model.queueTest(e.groupId, e.testId, test);
     }
 
     @Subscribe
     public void outputBeforeSuiteStarted(OutputBeforeSuiteStarted e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        model.addOutput(model.rootNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.rootNode(), e.outputLine);
     }
 
     @Subscribe
     public void suiteStart(SuiteStart e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> suiteNode = model.addSuite(new GTestOutputRow("Suite with " + e.testCount + " test(s)"));
-        model.addOutput(suiteNode, new GTestOutputRow(e.outputLine));
+        iteration = e.iteration;
+
+        String displayName = "Suite with " + e.testCount + " test(s)" + (iteration > 0 ? ", iteration " + (iteration + 1) : "");
+        GTestOutputRow suite = iteration > 0 && model.suiteNode() != null
+                ? model.suiteNode().getValue()
+                : new GTestOutputRow(displayName);
+        suite.setDisplayName(displayName);
+
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> suiteNode = model.addSuite(suite);
+        model.addOutputLine(suiteNode, e.outputLine);
 
         currentSuiteIndicator.animate(suiteNode, GTestOutputRowStyle.GRAY_SPINNER);
     }
@@ -173,7 +248,7 @@ public class GTestOutputViewController {
 
         GTestOutputRow suite = model.suiteNode().getValue();
 
-        model.addOutput(model.suiteNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.suiteNode(), e.outputLine);
 
         currentSuiteIndicator.stopAnimation();
         if (failsInSuite) {
@@ -188,18 +263,30 @@ public class GTestOutputViewController {
         GTestOutputRow summaryNode = new GTestOutputRow("Summary");
         summaryNode.setTextColor(failsInSuite? GTestOutputRowStyle.COLOR_FAILED : GTestOutputRowStyle.COLOR_PASSED);
         model.addSummary(summaryNode);
+
+        if (!slowdowns.isEmpty()) {
+            model.addOutput(model.summaryNode(), slowRow(slowdowns.size() + " test(s) took longer than usual:"));
+            for (Slowdown slowdown : slowdowns) {
+                model.addOutput(model.summaryNode(), slowRow("  " + slowdown.test + ": " + describe(slowdown)));
+            }
+            model.addOutput(model.summaryNode(), new GTestOutputRow(""));
+        }
     }
 
     @Subscribe
     public void groupStart(GroupStart e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        failsInGroup = false;
+        String displayName = e.groupName + " with " + e.testsInGroup + " test(s)";
+        GTestOutputRow group = reusedRow(model.groupNode(e.groupId), displayName);
+        group.setDisplayName(displayName);
 
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.addGroup(e.groupName, new GTestOutputRow(e.groupName + " with " + e.testsInGroup + " test(s)"));
-        model.addOutput(groupNode, new GTestOutputRow(e.outputLine));
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.addGroup(e.groupId, group);
+        model.addOutputLine(groupNode, e.outputLine);
 
-        groupNode.getValue().setTextColor(GTestOutputRowStyle.COLOR_RUNNING);
+        if (!failedGroups.get(e.groupId)) {
+            group.setTextColor(GTestOutputRowStyle.COLOR_RUNNING);
+        }
         model.nodeUpdated(groupNode);
         currentGroupIndicator.animate(groupNode, GTestOutputRowStyle.GRAY_SPINNER);
     }
@@ -208,11 +295,13 @@ public class GTestOutputViewController {
     public void groupEnd(GroupEnd e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.groupNode(e.groupName);
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.groupNode(e.groupId);
         GTestOutputRow group = groupNode.getValue();
 
+        //groups of different shards may run at the same time, so the
+        //group isn't necessarily the last started one
         currentGroupIndicator.stopAnimation();
-        if (failsInGroup) {
+        if (failedGroups.get(e.groupId)) {
 //            group.setTextColor(Color.COLOR_PASSED); //color is already set when test is failed
             group.setIcon(GTestOutputRowStyle.GROUP_FAILED_ICON);
         } else {
@@ -221,7 +310,7 @@ public class GTestOutputViewController {
         }
 
         if (e.outputLine != null) { //todo Optional instead of nullable, for consistency?
-            model.addOutput(groupNode, new GTestOutputRow(e.outputLine));
+            model.addOutputLine(groupNode, e.outputLine);
         }
     }
 
@@ -229,11 +318,14 @@ public class GTestOutputViewController {
     public void testStart(TestStart e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        GTestOutputRow test = new GTestOutputRow(e.testName);
-        test.setTextColor(GTestOutputRowStyle.COLOR_RUNNING);
+        GTestOutputRow test = reusedRow(model.testNode(e.testId), e.testName);
+        if (!hasFailed(e.testId)) {
+            test.setTextColor(GTestOutputRowStyle.COLOR_RUNNING);
+        }
 
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.addTest(e.groupName, e.testName, test);
-        model.addOutput(testNode, new GTestOutputRow(e.outputLine));
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.addTest(e.groupId, e.testId, test);
+        model.exposeChildren(testNode);
+        model.addOutputLine(testNode, e.outputLine);
 
         currentTestIndicator.animate(testNode, GTestOutputRowStyle.GRAY_SPINNER);
     }
@@ -243,38 +335,60 @@ public class GTestOutputViewController {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
         GTestOutputTreeModel.BranchNode<GTestOutputRow> parentNode =
-                e.groupName.isPresent() ? e.testName.isPresent()
-                        ? model.testNode(e.groupName.get(), e.testName.get())
-                        : model.groupNode(e.groupName.get())
+                e.groupId != TestSymbols.NONE ? e.testId != TestSymbols.NONE
+                        ? model.testNode(e.testId)
+                        : model.groupNode(e.groupId)
                         : model.suiteNode();
 
-        model.addOutput(parentNode, new GTestOutputRow(e.outputLine));
+        if (e instanceof ErrorOutput) {
+            //stderr may be written before the suite starts
+            GTestOutputRow row = new GTestOutputRow(e.outputLine);
+            row.setTextColor(GTestOutputRowStyle.COLOR_STDERR);
+            model.addOutput(parentNode != null ? parentNode : model.rootNode(), row);
+        } else {
+            model.addOutputLine(parentNode, e.outputLine);
+        }
     }
 
     @Subscribe
     public void testPassed(TestPassed e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.testNode(e.groupName, e.testName);
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.testNode(e.testId);
         GTestOutputRow test = testNode.getValue();
-        test.setTextColor(GTestOutputRowStyle.COLOR_PASSED);
+        TestRunStatistics statistics = statistics(e.testId);
+        statistics.passed(e.elapsedTime);
+        describeRuns(test, e.testName, statistics);
+
         currentTestIndicator.stopAnimation();
-        test.setIcon(GTestOutputRowStyle.TEST_PASSED_ICON);
+        if (statistics.failedRuns() == 0) {
+            test.setTextColor(GTestOutputRowStyle.COLOR_PASSED);
+            test.setIcon(GTestOutputRowStyle.TEST_PASSED_ICON);
+        } else {
+            test.setIcon(GTestOutputRowStyle.TEST_FAILED_ICON);
+        }
+        model.addOutputLine(testNode, e.outputLine);
+
+        if (model.hasLazyChildren() && statistics.failedRuns() == 0) {
+            //output of passed tests is summarized, and isn't laid out until it's expanded
+            view.getTree().collapsePath(model.pathOf(testNode));
+            model.hideChildren(testNode);
+            int outputLines = testNode.childCount() - 2 * statistics.runs(); //each run has start and result rows
+            test.setDisplayName(test.getDisplayName() + " [" + outputLines + " output line" + (outputLines == 1 ? "" : "s") + "]");
+        }
         model.nodeUpdated(testNode);
-
-        model.addOutput(testNode, new GTestOutputRow(e.outputLine));
     }
 
     @Subscribe
     public void testFailed(TestFailed e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        failsInGroup = true;
         failsInSuite = true;
+        failedGroups.set(e.groupId);
 
         GTestOutputTreeModel.BranchNode<GTestOutputRow> suiteNode = model.suiteNode();
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.groupNode(e.groupName);
-        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.testNode(e.groupName, e.testName);
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> groupNode = model.groupNode(e.groupId);
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.testNode(e.testId);
 
         GTestOutputRow suite = suiteNode.getValue();
         GTestOutputRow group = groupNode.getValue();
@@ -288,34 +402,100 @@ public class GTestOutputViewController {
         currentTestIndicator.stopAnimation();
         test.setIcon(GTestOutputRowStyle.TEST_FAILED_ICON);
 
-        model.addOutput(testNode, new GTestOutputRow(e.outputLine));
+        TestRunStatistics statistics = statistics(e.testId);
+        statistics.failed(e.elapsedTime);
+        describeRuns(test, e.testName, statistics);
+        model.nodeUpdated(testNode);
+
+        model.addOutputLine(testNode, e.outputLine);
+    }
+
+    /**
+     * Slowdown follows the test's {@link TestPassed}
+     */
+    @Subscribe
+    public void testSlowdown(Slowdown e) {
+        Preconditions.checkState(SwingUtilities.isEventDispatchThread());
+
+        slowdowns.add(e);
+
+        GTestOutputTreeModel.BranchNode<GTestOutputRow> testNode = model.testNode(e.testId);
+        GTestOutputRow test = testNode.getValue();
+        test.setTextColor(GTestOutputRowStyle.COLOR_SLOW);
+        test.setDisplayName(test.getDisplayName() + " [slow: " + e.durationMs + " ms]");
+        model.nodeUpdated(testNode);
+
+        model.addOutput(testNode, slowRow("Took longer than usual: " + describe(e)));
+    }
+
+    private static GTestOutputRow slowRow(String text) {
+        GTestOutputRow row = new GTestOutputRow(text);
+        row.setTextColor(GTestOutputRowStyle.COLOR_SLOW);
+        return row;
+    }
+
+    private static String describe(Slowdown e) {
+        return e.durationMs + " ms, usually " + e.baseline.medianMs + " ms"
+                + " (deviation " + e.baseline.madMs + " ms, of " + e.baseline.sampleCount + " runs)";
+    }
+
+    /**
+     * Row of the group or test which has already been run in previous
+     * iteration, or a new row otherwise
+     */
+    private GTestOutputRow reusedRow(GTestOutputTreeModel.BranchNode<GTestOutputRow> node, String displayName) {
+        return iteration > 0 && node != null ? node.getValue() : new GTestOutputRow(displayName);
+    }
+
+    private TestRunStatistics statistics(int testId) {
+        while (testStatistics.size() <= testId) {
+            testStatistics.add(null);
+        }
+
+        TestRunStatistics statistics = testStatistics.get(testId);
+        if (statistics == null) {
+            statistics = new TestRunStatistics();
+            testStatistics.set(testId, statistics);
+        }
+        return statistics;
+    }
+
+    private boolean hasFailed(int testId) {
+        TestRunStatistics statistics = testId < testStatistics.size() ? testStatistics.get(testId) : null;
+        return statistics != null && statistics.failedRuns() > 0;
+    }
+
+    private static void describeRuns(GTestOutputRow test, String testName, TestRunStatistics statistics) {
+        test.setDisplayName(statistics.runs() > 1
+                ? testName + " (" + statistics.describe() + ")"
+                : testName);
     }
 
     @Subscribe
     public void summaryOutput(SummaryOutput e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        model.addOutput(model.summaryNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.summaryNode(), e.outputLine);
     }
 
     @Subscribe
     public void summaryOutput(PassedTestsSummary e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        model.addOutput(model.summaryNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.summaryNode(), e.outputLine);
     }
 
     @Subscribe
     public void summaryOutput(FailedTestsSummary e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        model.addOutput(model.summaryNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.summaryNode(), e.outputLine);
     }
 
     @Subscribe
     public void summaryOutput(FailedTestSummary e) {
         Preconditions.checkState(SwingUtilities.isEventDispatchThread());
 
-        model.addOutput(model.summaryNode(), new GTestOutputRow(e.outputLine));
+        model.addOutputLine(model.summaryNode(), e.outputLine);
     }
 }
@@ -0,0 +1,166 @@
+package gumanoid.ui.gtest.output;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output lines kept in a temporary file instead of the heap. Lines are
+ * appended to the file as length-prefixed UTF-8, and are read back by
+ * blocks of {@link #LINES_PER_BLOCK}; only the offset of each block is kept
+ * in memory, so the heap taken by the index is a small fraction of the
+ * number of lines.
+ * <p/>
+ * Not thread-safe
+ */
+public class LineSpool implements Closeable {
+    public static final int LINES_PER_BLOCK = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long flushedSize;
+
+    private long[] blockOffsets = new long[16];
+    private int lineCount;
+
+    private LineSpool(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates spool in a temporary file, which is deleted when the spool
+     * is closed, or when JVM exits
+     */
+    public static LineSpool createTemp() throws IOException {
+        File file = File.createTempFile("gumanoid-output", ".spool");
+        file.deleteOnExit();
+        return new LineSpool(file, new RandomAccessFile(file, "rw").getChannel());
+    }
+
+    /**
+     * @return index of the line
+     */
+    public int append(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            if (lineCount % LINES_PER_BLOCK == 0) {
+                int block = lineCount / LINES_PER_BLOCK;
+                if (block == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                }
+                blockOffsets[block] = flushedSize + writeBuffer.position();
+            }
+
+            if (writeBuffer.remaining() < Integer.BYTES + bytes.length) {
+                flush();
+            }
+            if (writeBuffer.remaining() < Integer.BYTES + bytes.length) {
+                //line doesn't fit the buffer at all
+                ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+                record.putInt(bytes.length).put(bytes).flip();
+                write(record);
+            } else {
+                writeBuffer.putInt(bytes.length).put(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return lineCount++;
+    }
+
+    public String read(int line) {
+        return readBlock(line / LINES_PER_BLOCK).get(line % LINES_PER_BLOCK);
+    }
+
+    /**
+     * @return lines of the block, up to {@link #LINES_PER_BLOCK}; the last
+     * block may be incomplete
+     */
+    public List<String> readBlock(int block) {
+        int blockCount = (lineCount + LINES_PER_BLOCK - 1) / LINES_PER_BLOCK;
+        Preconditions.checkElementIndex(block, blockCount);
+
+        long start = blockOffsets[block];
+        long end = block + 1 < blockCount ? blockOffsets[block + 1] : flushedSize + writeBuffer.position();
+
+        try {
+            if (end > flushedSize) {
+                flush();
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    throw new IOException("Spool is truncated: " + file);
+                }
+            }
+            bytes.flip();
+
+            List<String> lines = new ArrayList<>(LINES_PER_BLOCK);
+            while (bytes.hasRemaining()) {
+                int length = bytes.getInt();
+                lines.add(new String(bytes.array(), bytes.position(), length, StandardCharsets.UTF_8));
+                bytes.position(bytes.position() + length);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        return lineCount;
+    }
+
+    /**
+     * Drops all lines; the file is reused
+     */
+    public void clear() {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        writeBuffer.clear();
+        flushedSize = 0;
+        lineCount = 0;
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        write(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            flushedSize += channel.write(bytes, flushedSize);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
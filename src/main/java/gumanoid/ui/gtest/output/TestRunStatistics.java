@@ -0,0 +1,60 @@
+package gumanoid.ui.gtest.output;
+
+import java.util.Locale;
+import java.util.OptionalInt;
+
+/**
+ * Outcomes and durations of all runs of one test, when tests are repeated
+ */
+class TestRunStatistics {
+    private int passed;
+    private int failed;
+
+    private int timedRuns;
+    private long totalTime;
+    private int minTime = Integer.MAX_VALUE;
+    private int maxTime = Integer.MIN_VALUE;
+
+    void passed(OptionalInt elapsedTime) {
+        ++passed;
+        timed(elapsedTime);
+    }
+
+    void failed(OptionalInt elapsedTime) {
+        ++failed;
+        timed(elapsedTime);
+    }
+
+    private void timed(OptionalInt elapsedTime) {
+        if (elapsedTime.isPresent()) {
+            int time = elapsedTime.getAsInt();
+            ++timedRuns;
+            totalTime += time;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+    }
+
+    int runs() {
+        return passed + failed;
+    }
+
+    int passedRuns() {
+        return passed;
+    }
+
+    int failedRuns() {
+        return failed;
+    }
+
+    /**
+     * E. g. "2/3 passed, 1/1.5/2 ms min/mean/max"
+     */
+    String describe() {
+        String result = passed + "/" + runs() + " passed";
+        if (timedRuns > 0) {
+            result += String.format(Locale.ROOT, ", %d/%.1f/%d ms min/mean/max", minTime, (double) totalTime / timedRuns, maxTime);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package gumanoid.event;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+@Test
+public class TestSymbolsUTest {
+    @Test void idsAreDenseAndStable() throws Exception {
+        TestSymbols symbols = new TestSymbols();
+
+        int first = symbols.group("First");
+        int second = symbols.group("Second");
+
+        assertEquals(first, 0);
+        assertEquals(second, 1);
+        assertEquals(symbols.group("First"), first);
+        assertEquals(symbols.groupName(second), "Second");
+        assertEquals(symbols.groupCount(), 2);
+    }
+
+    @Test void testIdsAreUniqueAcrossGroups() throws Exception {
+        TestSymbols symbols = new TestSymbols();
+
+        int first = symbols.group("First");
+        int second = symbols.group("Second");
+
+        int firstTest = symbols.test(first, "Test");
+        int secondTest = symbols.test(second, "Test");
+
+        assertNotEquals(firstTest, secondTest);
+        assertEquals(symbols.test(first, "Test"), firstTest);
+        assertEquals(symbols.groupOf(firstTest), first);
+        assertEquals(symbols.groupOf(secondTest), second);
+        assertEquals(symbols.testName(secondTest), "Test");
+        assertEquals(symbols.testCount(), 2);
+    }
+
+    @Test void manyTests() throws Exception {
+        TestSymbols symbols = new TestSymbols();
+        int group = symbols.group("Group");
+
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(symbols.test(group, "Test" + i), i);
+        }
+        assertEquals(symbols.groupOf(99), group);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    void unknownTest() throws Exception {
+        new TestSymbols().groupOf(0);
+    }
+}
@@ -0,0 +1,158 @@
+package gumanoid.history;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import gumanoid.history.RunHistory.TestResult;
+import gumanoid.runner.StoreFiles;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static gumanoid.history.RunHistory.Status.Failed;
+import static gumanoid.history.RunHistory.Status.Passed;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class RunHistoryUTest {
+    File storeDir;
+
+    @BeforeMethod void createStoreDir() throws Exception {
+        storeDir = Files.createTempDirectory("history").toFile();
+    }
+
+    RunHistory open() {
+        return RunHistory.forExecutable(storeDir, "some/tests");
+    }
+
+    @Test void resultsAreKeptBetweenSessions() throws Exception {
+        TestResult a = new TestResult("G.a", Passed, 12, 1, 1000);
+        TestResult b = new TestResult("G.b", Failed, -1, 1, 1000);
+        TestResult a2 = new TestResult("G.a", Failed, 15, 1, 2000);
+
+        RunHistory history = open();
+        history.append(ImmutableList.of(a, b));
+        history.append(ImmutableList.of(a2));
+
+        RunHistory loaded = open();
+        assertEquals(loaded.lastResults("G.a", 10), ImmutableList.of(a2, a));
+        assertEquals(loaded.lastResults("G.a", 1), ImmutableList.of(a2));
+        assertEquals(loaded.lastResults("G.b", 10), ImmutableList.of(b));
+        assertEquals(loaded.lastResults("G.c", 10), ImmutableList.of());
+    }
+
+    @Test void halfWrittenRecordIsCutOff() throws Exception {
+        TestResult a = new TestResult("G.a", Passed, 12, 0, 1000);
+        open().append(ImmutableList.of(a));
+
+        File file = StoreFiles.storeFile(storeDir, "some/tests", ".history");
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length());
+            out.write(new byte[] {2, 0, 0}); //result record, cut in the middle of test id
+        }
+
+        TestResult a2 = new TestResult("G.a", Passed, 13, 0, 2000);
+        open().append(ImmutableList.of(a2));
+
+        assertEquals(open().lastResults("G.a", 10), ImmutableList.of(a2, a));
+    }
+
+    @Test void resultsWhichCannotBeWrittenAreNotKept() throws Exception {
+        String tooLongName = "G." + Strings.repeat("a", 70_000); //more than writeUTF takes
+        TestResult a = new TestResult("G.a", Passed, 12, 0, 1000);
+        TestResult b = new TestResult("G.b", Passed, 13, 0, 2000);
+
+        RunHistory history = open();
+        try {
+            history.append(ImmutableList.of(a, new TestResult(tooLongName, Passed, 1, 0, 1000)));
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+        assertEquals(history.size(), 0);
+        assertEquals(history.lastResults("G.a", 10), ImmutableList.of());
+
+        history.append(ImmutableList.of(b));
+        assertEquals(open().lastResults("G.b", 10), ImmutableList.of(b));
+        assertEquals(open().lastResults("G.a", 10), ImmutableList.of());
+    }
+
+    @Test void onlyLatestResultsAreKept() throws Exception {
+        RunHistory history = open();
+        List<TestResult> expected = new ArrayList<>();
+        for (int i = 0; i < RunHistory.KEPT_RESULTS_PER_TEST + 10; ++i) {
+            TestResult result = new TestResult("G.a", Passed, i, 0, i);
+            history.append(ImmutableList.of(result));
+            expected.add(0, result);
+        }
+        expected = expected.subList(0, RunHistory.KEPT_RESULTS_PER_TEST);
+
+        assertEquals(history.lastResults("G.a", Integer.MAX_VALUE), expected);
+
+        history.compact();
+        assertEquals(open().lastResults("G.a", Integer.MAX_VALUE), expected);
+        assertEquals(open().size(), RunHistory.KEPT_RESULTS_PER_TEST);
+    }
+
+    @Test void historiesOfOneFileDoNotOverwriteEachOther() throws Exception {
+        TestResult a = new TestResult("G.a", Passed, 12, 0, 1000);
+        TestResult b = new TestResult("G.b", Passed, 13, 0, 2000);
+
+        RunHistory first = open();
+        RunHistory second = open();
+        assertEquals(second.size(), 0);
+
+        first.append(ImmutableList.of(a));
+        second.append(ImmutableList.of(b));
+
+        assertEquals(second.lastResults("G.a", 10), ImmutableList.of(a));
+        assertEquals(open().lastResults("G.a", 10), ImmutableList.of(a));
+        assertEquals(open().lastResults("G.b", 10), ImmutableList.of(b));
+    }
+
+    @Test void slowTestsAreComparedWithMedianOfPreviousRuns() throws Exception {
+        RunHistory history = open();
+        for (int duration : new int[] {10, 11, 100, 9, 10}) {
+            history.append(ImmutableList.of(
+                    new TestResult("G.steady", Passed, 10, 0, 0),
+                    new TestResult("G.slowed", Passed, duration, 0, 0)));
+        }
+        history.append(ImmutableList.of(
+                new TestResult("G.steady", Passed, 11, 0, 0),
+                new TestResult("G.slowed", Passed, 30, 0, 0),
+                new TestResult("G.new", Passed, 1000, 0, 0)));
+
+        assertEquals(history.slowerThanBaseline(2.0), ImmutableList.of("G.slowed"));
+        assertTrue(history.slowerThanBaseline(1.05).contains("G.steady"));
+    }
+
+    @Test void baselineIsMedianAndMedianDeviationOfPassedRuns() throws Exception {
+        RunHistory history = open();
+        for (int duration : new int[] {40, 42, 38, 400, 41}) {
+            history.append(ImmutableList.of(new TestResult("G.a", Passed, duration, 0, 0)));
+        }
+        history.append(ImmutableList.of(new TestResult("G.a", Failed, 5000, 1, 0)));
+
+        //durations 38, 40, 41, 42, 400; deviations 3, 1, 0, 1, 359
+        assertEquals(history.baseline("G.a"), Optional.of(new RunHistory.Baseline(41, 1, 5)));
+        assertEquals(history.baseline("G.b"), Optional.empty());
+    }
+
+    @Test void baselineDurationsAreOfTestsWhichPassed() throws Exception {
+        RunHistory history = open();
+        history.append(ImmutableList.of(new TestResult("G.a", Passed, 10, 0, 0), new TestResult("G.b", Failed, 20, 1, 0)));
+        history.append(ImmutableList.of(new TestResult("G.a", Passed, 30, 0, 0), new TestResult("G.b", Failed, 20, 1, 0)));
+        history.append(ImmutableList.of(new TestResult("G.a", Passed, 20, 0, 0)));
+
+        assertEquals(open().baselineDurations(), ImmutableMap.of("G.a", 20));
+    }
+}
@@ -0,0 +1,64 @@
+package gumanoid.history;
+
+import com.google.common.collect.ImmutableList;
+import gumanoid.history.RunHistory.TestResult;
+import gumanoid.history.SlowdownDetector.Thresholds;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+
+import static gumanoid.history.RunHistory.Status.Passed;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SlowdownDetectorUTest {
+    RunHistory history;
+    SlowdownDetector detector;
+
+    @BeforeMethod void createHistory() throws Exception {
+        history = RunHistory.forExecutable(Files.createTempDirectory("history").toFile(), "some/tests");
+        detector = new SlowdownDetector(history, Thresholds.DEFAULT);
+    }
+
+    void passed(String test, int... durations) throws Exception {
+        for (int duration : durations) {
+            history.append(ImmutableList.of(new TestResult(test, Passed, duration, 0, 0)));
+        }
+    }
+
+    @Test void tenfoldSlowdownIsFlagged() throws Exception {
+        passed("G.a", 40, 42, 38, 41);
+
+        SlowdownDetector.Slowdown slowdown = detector.check("G.a", 7, 400).get();
+        assertEquals(slowdown.test, "G.a");
+        assertEquals(slowdown.testId, 7);
+        assertEquals(slowdown.baseline.medianMs, 41);
+    }
+
+    @Test void usualNoiseIsNotFlagged() throws Exception {
+        passed("G.noisy", 40, 90, 20, 70, 45);
+        passed("G.fast", 1, 1, 1, 1);
+
+        assertFalse(detector.check("G.noisy", 0, 100).isPresent());
+        assertFalse(detector.check("G.fast", 0, 5).isPresent());
+    }
+
+    @Test void testsWithFewRunsAreNotChecked() throws Exception {
+        passed("G.a", 40, 40);
+
+        assertFalse(detector.check("G.a", 0, 400).isPresent());
+        assertFalse(detector.check("G.new", 0, 400).isPresent());
+    }
+
+    @Test void thresholdsAreConfigurable() throws Exception {
+        passed("G.a", 40, 42, 38, 41);
+
+        assertFalse(detector.check("G.a", 0, 60).isPresent());
+
+        detector.setThresholds(new Thresholds(1.0, 1.2, 5, 2));
+        assertTrue(detector.check("G.a", 0, 60).isPresent());
+    }
+}
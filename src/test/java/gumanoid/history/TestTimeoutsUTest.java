@@ -0,0 +1,71 @@
+package gumanoid.history;
+
+import com.google.common.collect.ImmutableList;
+import gumanoid.history.RunHistory.TestResult;
+import gumanoid.history.TestTimeouts.Settings;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.util.OptionalInt;
+
+import static gumanoid.history.RunHistory.Status.Failed;
+import static gumanoid.history.RunHistory.Status.Passed;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+@Test
+public class TestTimeoutsUTest {
+    RunHistory history;
+
+    @BeforeMethod void createHistory() throws Exception {
+        history = RunHistory.forExecutable(Files.createTempDirectory("history").toFile(), "some/tests");
+    }
+
+    void append(String test, RunHistory.Status status, int... durations) throws Exception {
+        for (int duration : durations) {
+            history.append(ImmutableList.of(new TestResult(test, status, duration, 0, 0)));
+        }
+    }
+
+    @Test void offByDefault() throws Exception {
+        append("G.a", Passed, 100, 100, 100, 100, 100);
+
+        TestTimeouts timeouts = new TestTimeouts(history, Settings.DEFAULT);
+        assertFalse(timeouts.isEnabled());
+        assertFalse(timeouts.timeoutFor("G.a").isPresent());
+    }
+
+    @Test void timeoutIsScaledPercentileOfPassedRuns() throws Exception {
+        append("G.a", Passed, 100, 120, 110, 900, 105);
+        append("G.a", Failed, 60000);
+
+        TestTimeouts timeouts = new TestTimeouts(history, new Settings(0, 3, 1000, 5));
+        assertEquals(timeouts.timeoutFor("G.a"), OptionalInt.of(2700));
+    }
+
+    @Test void fastTestsGetMinTimeout() throws Exception {
+        append("G.fast", Passed, 1, 2, 1, 1, 3);
+
+        TestTimeouts timeouts = new TestTimeouts(history, new Settings(0, 3, 1000, 5));
+        assertEquals(timeouts.timeoutFor("G.fast"), OptionalInt.of(1000));
+    }
+
+    @Test void testsWithFewRunsGetDefaultTimeout() throws Exception {
+        append("G.a", Passed, 100, 100);
+
+        assertFalse(new TestTimeouts(history, new Settings(0, 3, 1000, 5)).timeoutFor("G.a").isPresent());
+        assertEquals(new TestTimeouts(history, new Settings(60000, 3, 1000, 5)).timeoutFor("G.a"), OptionalInt.of(60000));
+        assertEquals(new TestTimeouts(history, new Settings(60000, 0, 1000, 5)).timeoutFor("G.new"), OptionalInt.of(60000));
+    }
+
+    @Test void percentile() throws Exception {
+        int[] sorted = new int[200];
+        for (int i = 0; i < sorted.length; ++i) {
+            sorted[i] = i + 1;
+        }
+
+        assertEquals(TestTimeouts.percentile(sorted, 0.99), 198);
+        assertEquals(TestTimeouts.percentile(new int[]{5}, 0.99), 5);
+    }
+}
@@ -0,0 +1,88 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
+
+import java.util.List;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestCrashDetectorUTest {
+    PublishSubject<String> output;
+    BehaviorSubject<Integer> exitCode;
+    TestObserver<GTestOutputEvent> events;
+
+    @BeforeMethod void createDetector() {
+        output = PublishSubject.create();
+        exitCode = BehaviorSubject.create();
+        events = new TestObserver<>();
+
+        GTestCrashDetector.markCrashedTest(output.lift(new GTestOutputParser(new TestSymbols())), exitCode)
+                .subscribe(events);
+
+        output.onNext("[==========] Running 2 tests from 1 test case.");
+        output.onNext("[----------] Global test environment set-up.");
+    }
+
+    @Test void testRunningWhenOutputEndsIsCrashed() throws Exception {
+        output.onNext("[----------] 2 tests from SomeGroup");
+        output.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+        output.onNext("[       OK ] SomeGroup.TestIsTrue (0 ms)");
+        output.onNext("[ RUN      ] SomeGroup.Crashing");
+        output.onCompleted();
+
+        assertEquals(events.getOnCompletedEvents().size(), 0, "crash is reported when exit code is known");
+
+        exitCode.onNext(134);
+        exitCode.onCompleted();
+
+        List<GTestOutputEvent> emitted = events.getOnNextEvents();
+        TestFailed crashed = (TestFailed) emitted.get(emitted.size() - 1);
+        assertEquals(crashed.groupName, "SomeGroup");
+        assertEquals(crashed.testName, "Crashing");
+        assertEquals(crashed.outputLine, "[  FAILED  ] SomeGroup.Crashing (crashed, exit code 134, signal 6 (SIGABRT))");
+        assertEquals(events.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test void finishedTestIsNotCrashed() throws Exception {
+        output.onNext("[----------] 1 test from SomeGroup");
+        output.onNext("[ RUN      ] SomeGroup.FailingTest");
+        output.onNext("[  FAILED  ] SomeGroup.FailingTest (1 ms)");
+        output.onCompleted();
+
+        assertEquals(events.getOnCompletedEvents().size(), 1, "exit code isn't awaited");
+        assertEquals(events.getOnNextEvents().stream().filter(e -> e instanceof TestFailed).count(), 1L);
+    }
+
+    @Test void noCrashWithoutExitCode() throws Exception {
+        output.onNext("[----------] 1 test from SomeGroup");
+        output.onNext("[ RUN      ] SomeGroup.Cancelled");
+        output.onCompleted();
+        exitCode.onCompleted();
+
+        assertEquals(events.getOnNextEvents().stream().filter(e -> e instanceof TestFailed).count(), 0L);
+        assertEquals(events.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test void exitDescriptions() throws Exception {
+        assertEquals(ImmutableList.of(
+                GTestCrashDetector.describeExit(1),
+                GTestCrashDetector.describeExit(139),
+                GTestCrashDetector.describeExit(190),
+                GTestCrashDetector.describeExit(0xC0000005)
+        ), ImmutableList.of(
+                "exit code 1",
+                "exit code 139, signal 11 (SIGSEGV)",
+                "exit code 190, signal 62",
+                "exit code 0xC0000005"
+        ));
+    }
+}
@@ -0,0 +1,68 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
+import gumanoid.runner.OutputLine;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+import rx.subjects.PublishSubject;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestMergedOutputParserUTest {
+    PublishSubject<OutputLine> output;
+    TestObserver<GTestOutputEvent> events;
+    long readTime;
+
+    @BeforeMethod void createParser() {
+        output = PublishSubject.create();
+        events = new TestObserver<>();
+
+        output.lift(new GTestMergedOutputParser(new GTestOutputParser(new TestSymbols()))).subscribe(events);
+    }
+
+    void stdout(String line) {
+        output.onNext(new OutputLine(OutputLine.Stream.Stdout, ++readTime, line));
+    }
+
+    void stderr(String line) {
+        output.onNext(new OutputLine(OutputLine.Stream.Stderr, ++readTime, line));
+    }
+
+    @Test void stderrIsOutputOfRunningTest() throws Exception {
+        stderr("before suite");
+        stdout("[==========] Running 1 test from 1 test case.");
+        stdout("[----------] 1 test from SomeGroup");
+        stderr("group set-up");
+        stdout("[ RUN      ] SomeGroup.Test");
+        stdout("to stdout");
+        stderr("to stderr");
+        stdout("[       OK ] SomeGroup.Test (0 ms)");
+        stderr("group tear-down");
+        stdout("[----------] 1 test from SomeGroup (0 ms total)");
+        stderr("after group");
+        output.onCompleted();
+
+        assertEquals(events.getOnNextEvents(), ImmutableList.of(
+                new ErrorOutput("before suite", Optional.empty(), Optional.empty()),
+                new SuiteStart("[==========] Running 1 test from 1 test case.", 1, 1),
+                new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1),
+                new ErrorOutput("group set-up", Optional.of("SomeGroup"), Optional.empty()),
+                new TestStart("[ RUN      ] SomeGroup.Test", "SomeGroup", "Test"),
+                new TestOutput("to stdout", Optional.of("SomeGroup"), Optional.of("Test")),
+                new ErrorOutput("to stderr", Optional.of("SomeGroup"), Optional.of("Test")),
+                new TestPassed("[       OK ] SomeGroup.Test (0 ms)", "SomeGroup", "Test", OptionalInt.of(0)),
+                new ErrorOutput("group tear-down", Optional.of("SomeGroup"), Optional.empty()),
+                new GroupEnd("[----------] 1 test from SomeGroup (0 ms total)", "SomeGroup", 1),
+                new ErrorOutput("after group", Optional.empty(), Optional.empty())
+        ));
+        assertEquals(events.getOnCompletedEvents().size(), 1);
+    }
+}
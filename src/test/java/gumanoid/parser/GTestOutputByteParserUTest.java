@@ -0,0 +1,99 @@
+package gumanoid.parser;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import gumanoid.event.GTestOutputEvent;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import rx.Observable;
+import rx.observers.TestObserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestOutputByteParserUTest {
+    static final ImmutableList<String> LINES = ImmutableList.of(
+            "[==========] Running 2 tests from 1 test case.",
+            "[----------] Global test environment set-up.",
+            "[----------] 2 tests from SomeGroup",
+            "[ RUN      ] SomeGroup.TestIsTrue",
+            "[       OK ] SomeGroup.TestIsTrue (0 ms)",
+            "[ RUN      ] SomeGroup.FailingTest",
+            "..\\..\\..\\test_samples\\main.cpp(12): error: Value of: 0 == 0",
+            "  Actual: true é中",
+            "Expected: false",
+            "[  FAILED  ] SomeGroup.FailingTest (1 ms)",
+            "[----------] 2 tests from SomeGroup (2 ms total)",
+            "",
+            "[----------] Global test environment tear-down",
+            "[==========] 2 tests from 1 test case ran. (5 ms total)",
+            "[  PASSED  ] 1 test.",
+            "[  FAILED  ] 1 test, listed below:",
+            "[  FAILED  ] SomeGroup.FailingTest",
+            "",
+            " 1 FAILED TEST"
+    );
+
+    @DataProvider(name = "chunking")
+    Object[][] chunking() {
+        List<Object[]> result = new ArrayList<>();
+        for (String separator : new String[] { "\n", "\r\n", "\r" }) {
+            for (int chunkSize : new int[] { 1, 2, 3, 7, 12, 13, 64, 100000 }) {
+                result.add(new Object[] { separator, chunkSize, false });
+                result.add(new Object[] { separator, chunkSize, true });
+            }
+        }
+        return result.toArray(new Object[result.size()][]);
+    }
+
+    @Test(dataProvider = "chunking")
+    void sameEventsAsLineParser(String separator, int chunkSize, boolean direct) throws Exception {
+        byte[] bytes = (Joiner.on(separator).join(LINES) + separator).getBytes(StandardCharsets.UTF_8);
+
+        TestObserver<GTestOutputEvent> expected = new TestObserver<>();
+        Observable.from(LINES).lift(new GTestOutputParser()).subscribe(expected);
+
+        TestObserver<GTestOutputEvent> actual = new TestObserver<>();
+        chunks(bytes, chunkSize, direct).lift(new GTestOutputByteParser(StandardCharsets.UTF_8)).subscribe(actual);
+
+        assertEquals(actual.getOnNextEvents(), expected.getOnNextEvents());
+        assertEquals(actual.getOnErrorEvents(), ImmutableList.of());
+        assertEquals(actual.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test
+    void unterminatedLastLine() throws Exception {
+        byte[] bytes = "line 1\r\n\r\nline 3".getBytes(StandardCharsets.UTF_8);
+
+        TestObserver<GTestOutputEvent> actual = new TestObserver<>();
+        chunks(bytes, 5, false).lift(new GTestOutputByteParser(StandardCharsets.UTF_8)).subscribe(actual);
+
+        assertEquals(actual.getOnNextEvents(), ImmutableList.of(
+                new GTestOutputEvent.OutputBeforeSuiteStarted("line 1"),
+                new GTestOutputEvent.OutputBeforeSuiteStarted(""),
+                new GTestOutputEvent.OutputBeforeSuiteStarted("line 3")
+        ));
+    }
+
+    /**
+     * Emits chunks of <code>bytes</code> through a single reused buffer, as
+     * {@link gumanoid.runner.ProcessModel} does
+     */
+    Observable<ByteBuffer> chunks(byte[] bytes, int chunkSize, boolean direct) {
+        return Observable.create(subscriber -> {
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                buffer.clear();
+                buffer.put(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+                buffer.flip();
+                subscriber.onNext(buffer);
+            }
+            subscriber.onCompleted();
+        });
+    }
+}
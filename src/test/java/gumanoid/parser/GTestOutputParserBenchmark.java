@@ -0,0 +1,128 @@
+package gumanoid.parser;
+
+import com.google.common.base.Joiner;
+import gumanoid.event.GTestOutputEvent;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures parser throughput (lines/sec) on a synthetic multi-million-line log,
+ * which mostly consists of plain test output, as real logs do.
+ * <p/>
+ * Not a part of regular test run; launch it explicitly when changing
+ * parser internals
+ */
+@Test
+public class GTestOutputParserBenchmark {
+    static final int GROUPS = 200;
+    static final int TESTS_PER_GROUP = 100;
+    static final int OUTPUT_LINES_PER_TEST = 100;
+    static final int ROUNDS = 5;
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    List<String> log;
+
+    @BeforeClass
+    void generateLog() {
+        List<String> outputLines = new ArrayList<>();
+        for (int i = 0; i < OUTPUT_LINES_PER_TEST; ++i) {
+            outputLines.add("..\\..\\test_samples\\main.cpp(" + i + "): some diagnostic output of the code under test #" + i);
+        }
+
+        log = new ArrayList<>();
+        log.add("[==========] Running " + GROUPS * TESTS_PER_GROUP + " tests from " + GROUPS + " test cases.");
+        log.add("[----------] Global test environment set-up.");
+        for (int g = 0; g < GROUPS; ++g) {
+            String group = "Group" + g;
+            log.add("[----------] " + TESTS_PER_GROUP + " tests from " + group);
+            for (int t = 0; t < TESTS_PER_GROUP; ++t) {
+                String test = group + ".Test" + t;
+                log.add("[ RUN      ] " + test);
+                log.addAll(outputLines);
+                log.add("[       OK ] " + test + " (1 ms)");
+            }
+            log.add("[----------] " + TESTS_PER_GROUP + " tests from " + group + " (100 ms total)");
+            log.add("");
+        }
+        log.add("[----------] Global test environment tear-down");
+        log.add("[==========] " + GROUPS * TESTS_PER_GROUP + " tests from " + GROUPS + " test cases ran. (20000 ms total)");
+        log.add("[  PASSED  ] " + GROUPS * TESTS_PER_GROUP + " tests.");
+    }
+
+    @DataProvider(name = "classifications")
+    Object[][] classifications() {
+        return new Object[][] {
+                { GTestOutputParser.Classification.RegexChain },
+                { GTestOutputParser.Classification.PrefixDispatch },
+        };
+    }
+
+    @Test(dataProvider = "classifications")
+    void linesPerSecond(GTestOutputParser.Classification classification) throws Exception {
+        for (int round = 0; round < ROUNDS; ++round) {
+            EventCounter counter = new EventCounter();
+
+            long start = System.nanoTime();
+            Observable.from(log).lift(new GTestOutputParser(classification)).subscribe(counter);
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(counter.count, log.size());
+            System.out.println(classification + ", round " + round + ": " + log.size() + " lines, "
+                    + (long) (log.size() / (elapsed / 1e9)) + " lines/sec");
+        }
+    }
+
+    @Test
+    void bytesLinesPerSecond() throws Exception {
+        byte[] bytes = (Joiner.on('\n').join(log) + '\n').getBytes(StandardCharsets.UTF_8);
+
+        for (int round = 0; round < ROUNDS; ++round) {
+            EventCounter counter = new EventCounter();
+
+            long start = System.nanoTime();
+            Observable.<ByteBuffer>create(subscriber -> {
+                ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+                    chunk.clear();
+                    chunk.put(bytes, offset, Math.min(CHUNK_SIZE, bytes.length - offset));
+                    chunk.flip();
+                    subscriber.onNext(chunk);
+                }
+                subscriber.onCompleted();
+            }).lift(new GTestOutputByteParser(StandardCharsets.UTF_8)).subscribe(counter);
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(counter.count, log.size());
+            System.out.println("Bytes, round " + round + ": " + log.size() + " lines, "
+                    + (long) (log.size() / (elapsed / 1e9)) + " lines/sec");
+        }
+    }
+
+    static class EventCounter extends Subscriber<GTestOutputEvent> {
+        int count;
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new RuntimeException(e);
+        }
+
+        @Override
+        public void onNext(GTestOutputEvent event) {
+            ++count;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import rx.observers.TestObserver;
 import rx.subjects.BehaviorSubject;
 
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static gumanoid.event.GTestOutputEvent.*;
 import static org.mockito.Mockito.inOrder;
@@ -66,7 +67,7 @@ public class GTestOutputParserIT {
                 new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
                 new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1),
                 new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
-                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue"),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
                 new GroupEnd("[----------] 1 test from SomeGroup (0 ms total)", "SomeGroup", 1),
                 new TestOutput("", Optional.empty(), Optional.empty()),
                 new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
@@ -106,7 +107,7 @@ public class GTestOutputParserIT {
                 new TestOutput("..\\..\\..\\test_samples\\main.cpp(12): error: Value of: 0 == 0", Optional.of("SomeGroup"), Optional.of("FailingTest")),
                 new TestOutput("Actual: true", Optional.of("SomeGroup"), Optional.of("FailingTest")),
                 new TestOutput("Expected: false", Optional.of("SomeGroup"), Optional.of("FailingTest")),
-                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest"),
+                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest", OptionalInt.of(1)),
                 new GroupEnd("[----------] 1 test from SomeGroup (2 ms total)", "SomeGroup", 1),
                 new TestOutput("", Optional.empty(), Optional.empty()),
                 new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
@@ -149,12 +150,12 @@ public class GTestOutputParserIT {
                 new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
                 new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
                 new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
-                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue"),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
                 new TestStart("[ RUN      ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
                 new TestOutput("..\\..\\..\\test_samples\\main.cpp(12): error: Value of: 0 == 0", Optional.of("SomeGroup"), Optional.of("FailingTest")),
                 new TestOutput("  Actual: true", Optional.of("SomeGroup"), Optional.of("FailingTest")),
                 new TestOutput("Expected: false", Optional.of("SomeGroup"), Optional.of("FailingTest")),
-                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest"),
+                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest", OptionalInt.of(1)),
                 new GroupEnd("[----------] 2 tests from SomeGroup (2 ms total)", "SomeGroup", 2),
                 new TestOutput("", Optional.empty(), Optional.empty()),
                 new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
@@ -201,7 +202,7 @@ public class GTestOutputParserIT {
                 new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
                 new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1),
                 new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
-                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue"),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
                 new GroupEnd("[----------] 1 test from SomeGroup (1 ms total)", "SomeGroup", 1),
                 new TestOutput("", Optional.empty(), Optional.empty()),
                 new GroupStart("[----------] 1 test from OtherGroup", "OtherGroup", 1),
@@ -210,7 +211,7 @@ public class GTestOutputParserIT {
                 new TestOutput("Expected: 1", Optional.of("OtherGroup"), Optional.of("ExpectTest")),
                 new TestOutput("..\\..\\..\\test_samples\\main.cpp(18): error: Value of: 3", Optional.of("OtherGroup"), Optional.of("ExpectTest")),
                 new TestOutput("Expected: 2", Optional.of("OtherGroup"), Optional.of("ExpectTest")),
-                new TestFailed("[  FAILED  ] OtherGroup.ExpectTest (12 ms)", "OtherGroup", "ExpectTest"),
+                new TestFailed("[  FAILED  ] OtherGroup.ExpectTest (12 ms)", "OtherGroup", "ExpectTest", OptionalInt.of(12)),
                 new GroupEnd("[----------] 1 test from OtherGroup (13 ms total)", "OtherGroup", 1),
                 new TestOutput("", Optional.empty(), Optional.empty()),
                 new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
@@ -274,4 +275,57 @@ public class GTestOutputParserIT {
         assertEquals(output.getOnCompletedEvents(), ImmutableList.of(Notification.createOnCompleted()));
         assertEquals(output.getOnErrorEvents(), ImmutableList.of());
     }
-}
\ No newline at end of file
+
+    @Test
+    void repeatedSuite() throws Exception {
+        for (int iteration = 1; iteration <= 2; ++iteration) {
+            input.onNext("");
+            input.onNext("Repeating all tests (iteration " + iteration + ") . . .");
+            input.onNext("");
+            input.onNext("[==========] Running 1 test from 1 test case.");
+            input.onNext("[----------] Global test environment set-up.");
+            input.onNext("[----------] 1 test from SomeGroup");
+            input.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+            input.onNext("[       OK ] SomeGroup.TestIsTrue (" + iteration + " ms)");
+            input.onNext("[----------] 1 test from SomeGroup (" + iteration + " ms total)");
+            input.onNext("");
+            input.onNext("[----------] Global test environment tear-down");
+            input.onNext("[==========] 1 test from 1 test case ran. (2 ms total)");
+            input.onNext("[  PASSED  ] 1 test.");
+        }
+        input.onCompleted();
+
+        ImmutableList.Builder<GTestOutputEvent> expected = ImmutableList.builder();
+        for (int iteration = 1; iteration <= 2; ++iteration) {
+            if (iteration == 1) {
+                expected.add(
+                        new OutputBeforeSuiteStarted(""),
+                        new OutputBeforeSuiteStarted("Repeating all tests (iteration 1) . . ."),
+                        new OutputBeforeSuiteStarted("")
+                );
+            } else {
+                expected.add(
+                        new SummaryOutput(""),
+                        new SummaryOutput("Repeating all tests (iteration 2) . . ."),
+                        new SummaryOutput("")
+                );
+            }
+            expected.add(
+                    new SuiteStart("[==========] Running 1 test from 1 test case.", 1, 1, iteration - 1),
+                    new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
+                    new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1),
+                    new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
+                    new TestPassed("[       OK ] SomeGroup.TestIsTrue (" + iteration + " ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(iteration)),
+                    new GroupEnd("[----------] 1 test from SomeGroup (" + iteration + " ms total)", "SomeGroup", 1),
+                    new TestOutput("", Optional.empty(), Optional.empty()),
+                    new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
+                    new SuiteEnd("[==========] 1 test from 1 test case ran. (2 ms total)", 1, 1),
+                    new PassedTestsSummary("[  PASSED  ] 1 test.", 1)
+            );
+        }
+
+        assertEquals(output.getOnNextEvents(), expected.build());
+        assertEquals(output.getOnCompletedEvents(), ImmutableList.of(Notification.createOnCompleted()));
+        assertEquals(output.getOnErrorEvents(), ImmutableList.of());
+    }
+}
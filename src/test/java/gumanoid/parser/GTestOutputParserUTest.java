@@ -1,13 +1,18 @@
 package gumanoid.parser;
 
 import com.google.common.collect.ImmutableList;
+import gumanoid.event.GTestListEvent;
+import gumanoid.event.GTestListEvent.TestAnnounce;
 import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import rx.Observable;
 import rx.observers.TestObserver;
 import rx.subjects.BehaviorSubject;
 
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static gumanoid.event.GTestOutputEvent.*;
 import static org.testng.Assert.assertEquals;
@@ -84,12 +89,34 @@ public class GTestOutputParserUTest {
                 new SuiteStart("[==========] Running 3 tests from 2 test cases.", 3, 2),
                 new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
                 new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
-                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue")
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0))
         ));
         assertEquals(output.getOnCompletedEvents(), ImmutableList.of());
         assertEquals(output.getOnErrorEvents(), ImmutableList.of());
     }
 
+    @Test void testPassedAfterOutputWithoutLineBreak() throws Exception {
+        input.onNext("[==========] Running 3 tests from 2 test cases.");
+        input.onNext("[----------] 2 tests from SomeGroup");
+        input.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+        input.onNext("no line break[       OK ] SomeGroup.TestIsTrue (0 ms)");
+
+        assertEquals(output.getOnNextEvents().get(3),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)));
+        assertEquals(output.getOnErrorEvents(), ImmutableList.of());
+    }
+
+    @Test void bracketsInOutputAreNotTags() throws Exception {
+        input.onNext("[==========] Running 3 tests from 2 test cases.");
+        input.onNext("[----------] 2 tests from SomeGroup");
+        input.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+        input.onNext("foo [INFO] array[0] = [1, 2][ RUN      ] not a test[       OK ] SomeGroup.TestIsTrue (0 ms)");
+
+        assertEquals(output.getOnNextEvents().get(3),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)));
+        assertEquals(output.getOnErrorEvents(), ImmutableList.of());
+    }
+
     @Test void testOutput() throws Exception {
         input.onNext("[==========] Running 3 tests from 2 test cases.");
         input.onNext("[----------] 2 tests from SomeGroup");
@@ -120,7 +147,7 @@ public class GTestOutputParserUTest {
                 new SuiteStart("[==========] Running 3 tests from 2 test cases.", 3, 2),
                 new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
                 new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
-                new TestFailed("[  FAILED  ] SomeGroup.TestIsTrue (1 ms)", "SomeGroup", "TestIsTrue")
+                new TestFailed("[  FAILED  ] SomeGroup.TestIsTrue (1 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(1))
         ));
         assertEquals(output.getOnCompletedEvents(), ImmutableList.of());
         assertEquals(output.getOnErrorEvents(), ImmutableList.of());
@@ -193,4 +220,65 @@ public class GTestOutputParserUTest {
         assertEquals(output.getOnCompletedEvents(), ImmutableList.of());
         assertEquals(output.getOnErrorEvents(), ImmutableList.of());
     }
-}
\ No newline at end of file
+
+    @Test void classificationsAreEquivalent() throws Exception {
+        ImmutableList<String> lines = ImmutableList.of(
+                "Note: Google Test filter = SomeGroup.*",
+                "[==========] Running 2 tests from 1 test case.",
+                "[----------] Global test environment set-up.",
+                "[----------] 2 tests from SomeGroup",
+                "[ RUN      ] SomeGroup.TestIsTrue",
+                "[ RUN      ] looks like a tag, but it is just an output",
+                "[       OK ] SomeGroup.TestIsTrue (0 ms)",
+                "[ RUN      ] SomeGroup.FailingTest",
+                "..\\..\\..\\test_samples\\main.cpp(12): error: Value of: 0 == 0",
+                "[ output [ without ] line break [  FAILED  ] SomeGroup.FailingTest (1 ms)",
+                "[----------] 2 tests from SomeGroup (2 ms total)",
+                "",
+                "[----------] Global test environment tear-down",
+                "[==========] 2 tests from 1 test case ran. (5 ms total)",
+                "[  PASSED  ] 1 test.",
+                "[  FAILED  ] 1 test, listed below:",
+                "[  FAILED  ] SomeGroup.FailingTest",
+                "",
+                " 1 FAILED TEST"
+        );
+
+        TestObserver<GTestOutputEvent> regexChain = new TestObserver<>();
+        Observable.from(lines).lift(new GTestOutputParser(GTestOutputParser.Classification.RegexChain)).subscribe(regexChain);
+
+        TestObserver<GTestOutputEvent> prefixDispatch = new TestObserver<>();
+        Observable.from(lines).lift(new GTestOutputParser(GTestOutputParser.Classification.PrefixDispatch)).subscribe(prefixDispatch);
+
+        assertEquals(prefixDispatch.getOnNextEvents(), regexChain.getOnNextEvents());
+        assertEquals(prefixDispatch.getOnErrorEvents(), ImmutableList.of());
+    }
+
+    @Test void sharedSymbolsGiveSameIds() throws Exception {
+        TestSymbols symbols = new TestSymbols();
+
+        TestObserver<GTestListEvent> enumeration = new TestObserver<>();
+        Observable.just("SomeGroup.", "  TestIsTrue", "  TestIsFalse")
+                .lift(new GTestListParser(symbols))
+                .subscribe(enumeration);
+
+        TestObserver<GTestOutputEvent> run = new TestObserver<>();
+        Observable.just(
+                "[==========] Running 1 test from 1 test case.",
+                "[----------] 1 test from SomeGroup",
+                "[ RUN      ] SomeGroup.TestIsFalse",
+                "output",
+                "[       OK ] SomeGroup.TestIsFalse (0 ms)"
+        ).lift(new GTestOutputParser(symbols)).subscribe(run);
+
+        TestAnnounce announce = (TestAnnounce) enumeration.getOnNextEvents().get(2);
+        TestOutput testOutput = (TestOutput) run.getOnNextEvents().get(3);
+        TestPassed testPassed = (TestPassed) run.getOnNextEvents().get(4);
+
+        assertEquals(testOutput.groupId, announce.groupId);
+        assertEquals(testOutput.testId, announce.testId);
+        assertEquals(testPassed.testId, announce.testId);
+        assertEquals(symbols.testName(testPassed.testId), "TestIsFalse");
+        assertEquals(symbols.groupOf(testPassed.testId), announce.groupId);
+    }
+}
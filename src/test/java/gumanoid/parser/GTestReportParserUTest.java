@@ -0,0 +1,80 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.GTestOutputEvent.*;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class GTestReportParserUTest {
+    static final String REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<testsuites tests=\"4\" failures=\"1\" disabled=\"2\" errors=\"0\" time=\"0.005\" name=\"AllTests\">\n" +
+            "  <testsuite name=\"SomeGroup\" tests=\"3\" failures=\"1\" disabled=\"1\" errors=\"0\" time=\"0.002\">\n" +
+            "    <testcase name=\"TestIsTrue\" status=\"run\" time=\"0\" classname=\"SomeGroup\" />\n" +
+            "    <testcase name=\"DISABLED_Test\" status=\"notrun\" time=\"0\" classname=\"SomeGroup\" />\n" +
+            "    <testcase name=\"FailingTest\" status=\"run\" time=\"0.0014\" classname=\"SomeGroup\">\n" +
+            "      <failure message=\"Value of: 0 == 0\" type=\"\"><![CDATA[main.cpp:12\n" +
+            "Value of: 0 == 0\n" +
+            "  Actual: true]]></failure>\n" +
+            "    </testcase>\n" +
+            "  </testsuite>\n" +
+            "  <testsuite name=\"DISABLED_Group\" tests=\"1\" failures=\"0\" disabled=\"1\" errors=\"0\" time=\"0\">\n" +
+            "    <testcase name=\"Test\" status=\"notrun\" time=\"0\" classname=\"DISABLED_Group\" />\n" +
+            "  </testsuite>\n" +
+            "</testsuites>\n";
+
+    @Test
+    void reportedRun() throws Exception {
+        TestObserver<GTestOutputEvent> actual = new TestObserver<>();
+        new GTestReportParser().parse(ByteSource.wrap(REPORT.getBytes(StandardCharsets.UTF_8))).subscribe(actual);
+
+        Optional<String> group = Optional.of("SomeGroup");
+        Optional<String> failingTest = Optional.of("FailingTest");
+
+        assertEquals(actual.getOnNextEvents(), ImmutableList.of(
+                new SuiteStart("[==========] Running 2 tests from 1 test case.", 2, 1),
+                new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
+                new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
+                new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
+                new TestStart("[ RUN      ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
+                new TestOutput("main.cpp:12", group, failingTest),
+                new TestOutput("Value of: 0 == 0", group, failingTest),
+                new TestOutput("  Actual: true", group, failingTest),
+                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest", OptionalInt.of(1)),
+                new GroupEnd("[----------] 2 tests from SomeGroup (2 ms total)", "SomeGroup", 2),
+                new TestOutput("", Optional.empty(), Optional.empty()),
+                new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
+                new SuiteEnd("[==========] 2 tests from 1 test case ran. (5 ms total)", 2, 1),
+                new PassedTestsSummary("[  PASSED  ] 1 test.", 1),
+                new FailedTestsSummary("[  FAILED  ] 1 test, listed below:", 1),
+                new FailedTestSummary("[  FAILED  ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
+                new SummaryOutput(""),
+                new SummaryOutput(" 1 FAILED TEST")
+        ));
+        assertEquals(actual.getOnErrorEvents(), ImmutableList.of());
+        assertEquals(actual.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test
+    void externalEntitiesAreNotResolved() throws Exception {
+        String report = "<?xml version=\"1.0\"?>\n" +
+                "<!DOCTYPE testsuites [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>\n" +
+                "<testsuites><testsuite name=\"&xxe;\" tests=\"1\"/></testsuites>";
+
+        TestObserver<GTestOutputEvent> actual = new TestObserver<>();
+        new GTestReportParser().parse(ByteSource.wrap(report.getBytes(StandardCharsets.UTF_8))).subscribe(actual);
+
+        assertEquals(actual.getOnErrorEvents().size(), 1);
+        assertTrue(actual.getOnNextEvents().isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+import rx.subjects.PublishSubject;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestShardMergerUTest {
+    PublishSubject<String> shard0;
+    PublishSubject<String> shard1;
+    TestObserver<GTestOutputEvent> output;
+
+    @BeforeMethod void createShards() {
+        TestSymbols symbols = new TestSymbols();
+
+        shard0 = PublishSubject.create();
+        shard1 = PublishSubject.create();
+        output = new TestObserver<>();
+
+        new GTestShardMerger(ImmutableMap.of("SomeGroup", 2, "OtherGroup", 1))
+                .merge(ImmutableList.of(
+                        shard0.lift(new GTestOutputParser(symbols)),
+                        shard1.lift(new GTestOutputParser(symbols))
+                ))
+                .subscribe(output);
+    }
+
+    @Test void groupSplitBetweenShards() throws Exception {
+        shard0.onNext("Note: This is test shard 1 of 2.");
+        shard0.onNext("[==========] Running 1 test from 1 test case.");
+        shard0.onNext("[----------] Global test environment set-up.");
+        shard1.onNext("Note: This is test shard 2 of 2.");
+        shard1.onNext("[==========] Running 2 tests from 2 test cases.");
+        shard1.onNext("[----------] Global test environment set-up.");
+        shard0.onNext("[----------] 1 test from SomeGroup");
+        shard0.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+        shard1.onNext("[----------] 1 test from SomeGroup");
+        shard1.onNext("[ RUN      ] SomeGroup.FailingTest");
+        shard0.onNext("output of shard 0");
+        shard1.onNext("output of shard 1");
+        shard0.onNext("[       OK ] SomeGroup.TestIsTrue (0 ms)");
+        shard0.onNext("[----------] 1 test from SomeGroup (0 ms total)");
+        shard0.onNext("");
+        shard0.onNext("[----------] Global test environment tear-down");
+        shard0.onNext("[==========] 1 test from 1 test case ran. (0 ms total)");
+        shard0.onNext("[  PASSED  ] 1 test.");
+        shard0.onCompleted();
+        shard1.onNext("[  FAILED  ] SomeGroup.FailingTest (1 ms)");
+        shard1.onNext("[----------] 1 test from SomeGroup (1 ms total)");
+        shard1.onNext("");
+        shard1.onNext("[----------] 1 test from OtherGroup");
+        shard1.onNext("[ RUN      ] OtherGroup.TestIsTrue");
+        shard1.onNext("[       OK ] OtherGroup.TestIsTrue (0 ms)");
+        shard1.onNext("[----------] 1 test from OtherGroup (0 ms total)");
+        shard1.onNext("");
+        shard1.onNext("[----------] Global test environment tear-down");
+        shard1.onNext("[==========] 2 tests from 2 test cases ran. (1 ms total)");
+        shard1.onNext("[  PASSED  ] 1 test.");
+        shard1.onNext("[  FAILED  ] 1 test, listed below:");
+        shard1.onNext("[  FAILED  ] SomeGroup.FailingTest");
+        shard1.onNext("");
+        shard1.onNext(" 1 FAILED TEST");
+
+        assertEquals(output.getOnCompletedEvents(), ImmutableList.of());
+
+        shard1.onCompleted();
+
+        assertEquals(output.getOnNextEvents(), ImmutableList.of(
+                new OutputBeforeSuiteStarted("Note: This is test shard 1 of 2."),
+                new SuiteStart("[==========] Running 3 tests from 2 test cases.", 3, 2),
+                new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
+                new OutputBeforeSuiteStarted("Note: This is test shard 2 of 2."),
+                new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
+                new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
+                new TestStart("[ RUN      ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
+                new TestOutput("output of shard 0", Optional.of("SomeGroup"), Optional.of("TestIsTrue")),
+                new TestOutput("output of shard 1", Optional.of("SomeGroup"), Optional.of("FailingTest")),
+                new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
+                new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest", OptionalInt.of(1)),
+                new GroupEnd("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
+                new GroupStart("[----------] 1 test from OtherGroup", "OtherGroup", 1),
+                new TestStart("[ RUN      ] OtherGroup.TestIsTrue", "OtherGroup", "TestIsTrue"),
+                new TestPassed("[       OK ] OtherGroup.TestIsTrue (0 ms)", "OtherGroup", "TestIsTrue", OptionalInt.of(0)),
+                new GroupEnd("[----------] 1 test from OtherGroup", "OtherGroup", 1),
+                new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
+                new SuiteEnd("[==========] 3 tests from 2 test cases ran.", 3, 2),
+                new PassedTestsSummary("[  PASSED  ] 2 tests.", 2),
+                new FailedTestsSummary("[  FAILED  ] 1 test, listed below:", 1),
+                new FailedTestSummary("[  FAILED  ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
+                new SummaryOutput(""),
+                new SummaryOutput(" 1 FAILED TEST")
+        ));
+        assertEquals(output.getOnCompletedEvents().size(), 1);
+        assertEquals(output.getOnErrorEvents(), ImmutableList.of());
+    }
+
+    @Test void shardErrorIsPassedOnce() throws Exception {
+        shard0.onError(new IllegalStateException());
+        shard1.onError(new IllegalStateException());
+
+        assertEquals(output.getOnErrorEvents().size(), 1);
+    }
+}
@@ -0,0 +1,98 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.runner.ResultStreamListener;
+import org.testng.annotations.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Streams events from a fake GTest executable through a loopback connection
+ */
+@Test
+public class GTestStreamParserIT {
+    static final ImmutableList<String> RECORDS = ImmutableList.of(
+            "event=TestProgramStart",
+            "event=TestIterationStart&iteration=0",
+            "event=TestCaseStart&name=SomeGroup",
+            "event=TestStart&name=TestIsTrue",
+            "event=TestEnd&passed=1&elapsed_time=0ms",
+            "event=TestStart&name=FailingTest",
+            "event=TestPartResult&file=main.cpp&line=12&message=Value of: 0 %3D%3D 0%0A  Actual: true",
+            "event=TestEnd&passed=0&elapsed_time=1ms",
+            "event=TestCaseEnd&passed=0&elapsed_time=2ms",
+            "event=TestIterationEnd&passed=0&elapsed_time=5ms",
+            "event=TestProgramEnd&passed=0"
+    );
+
+    @Test
+    void fakeEmitter() throws Exception {
+        try (ResultStreamListener listener = ResultStreamListener.open()) {
+            TestSubscriber<GTestOutputEvent> actual = new TestSubscriber<>();
+            new GTestStreamParser(ImmutableMap.of("SomeGroup", 2))
+                    .parse(listener.getStream().subscribeOn(Schedulers.io()), Observable.empty())
+                    .subscribe(actual);
+
+            try (SocketChannel emitter = SocketChannel.open(listener.getAddress())) {
+                for (String record : RECORDS) {
+                    ByteBuffer bytes = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        emitter.write(bytes);
+                    }
+                }
+            }
+
+            actual.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+            assertEquals(actual.getOnNextEvents(), ImmutableList.of(
+                    new SuiteStart("[==========] Running 2 tests from 1 test case.", 2, 1),
+                    new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
+                    new GroupStart("[----------] 2 tests from SomeGroup", "SomeGroup", 2),
+                    new TestStart("[ RUN      ] SomeGroup.TestIsTrue", "SomeGroup", "TestIsTrue"),
+                    new TestPassed("[       OK ] SomeGroup.TestIsTrue (0 ms)", "SomeGroup", "TestIsTrue", OptionalInt.of(0)),
+                    new TestStart("[ RUN      ] SomeGroup.FailingTest", "SomeGroup", "FailingTest"),
+                    new TestFailed("[  FAILED  ] SomeGroup.FailingTest (1 ms)", "SomeGroup", "FailingTest", OptionalInt.of(1)),
+                    new GroupEnd("[----------] 2 tests from SomeGroup (2 ms total)", "SomeGroup", 2),
+                    new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
+                    new SuiteEnd("[==========] 2 tests from 1 test case ran. (5 ms total)", 2, 1),
+                    new PassedTestsSummary("[  PASSED  ] 1 test.", 1),
+                    new FailedTestsSummary("[  FAILED  ] 1 test, listed below:", 1),
+                    new FailedTestSummary("[  FAILED  ] SomeGroup.FailingTest", "SomeGroup", "FailingTest")
+            ));
+            assertEquals(actual.getOnErrorEvents(), ImmutableList.of());
+            assertEquals(actual.getOnCompletedEvents().size(), 1);
+        }
+    }
+
+    @Test
+    void nobodyConnected() throws Exception {
+        TestSubscriber<GTestOutputEvent> actual = new TestSubscriber<>();
+
+        try (ResultStreamListener listener = ResultStreamListener.open()) {
+            new GTestStreamParser(ImmutableMap.of())
+                    .parse(listener.getStream().subscribeOn(Schedulers.io()), Observable.just("Running main() from gtest_main.cc"))
+                    .subscribe(actual);
+        }
+
+        actual.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+        assertEquals(actual.getOnNextEvents(), ImmutableList.of(
+                new OutputBeforeSuiteStarted("Running main() from gtest_main.cc")
+        ));
+        assertEquals(actual.getOnErrorEvents(), ImmutableList.of());
+        assertEquals(actual.getOnCompletedEvents().size(), 1);
+    }
+}
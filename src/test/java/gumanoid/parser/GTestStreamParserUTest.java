@@ -0,0 +1,148 @@
+package gumanoid.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import gumanoid.event.GTestOutputEvent;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+import rx.subjects.PublishSubject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class GTestStreamParserUTest {
+    PublishSubject<ByteBuffer> stream;
+    PublishSubject<String> stdout;
+    TestObserver<GTestOutputEvent> output;
+
+    @BeforeMethod
+    void resetListener() {
+        stream = PublishSubject.create();
+        stdout = PublishSubject.create();
+        output = new TestObserver<>();
+        new GTestStreamParser(ImmutableMap.of("SomeGroup", 1)).parse(stream, stdout).subscribe(output);
+    }
+
+    void record(String record) {
+        stream.onNext(ByteBuffer.wrap((record + "\r\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void stdoutIsAttributedToCurrentTest() throws Exception {
+        stdout.onNext("Running main() from gtest_main.cc");
+        stdout.onNext("[==========] Running 1 test from 1 test case.");
+        record("event=TestIterationStart&iteration=0");
+        stdout.onNext("[----------] Global test environment set-up.");
+        stdout.onNext("[----------] 1 test from SomeGroup");
+        record("event=TestCaseStart&name=SomeGroup");
+        record("event=TestStart&name=Test");
+        stdout.onNext("[ RUN      ] SomeGroup.Test");
+        stdout.onNext("test output");
+        stdout.onNext("[       OK ] SomeGroup.Fake (0 ms)");
+        record("event=TestEnd&passed=1&elapsed_time=3ms");
+        stdout.onNext("last words");
+        stdout.onNext("[       OK ] SomeGroup.Test (3 ms)");
+        record("event=TestCaseEnd&passed=1&elapsed_time=3ms");
+        record("event=TestIterationEnd&passed=1");
+        stdout.onNext("[----------] 1 test from SomeGroup (3 ms total)");
+        stdout.onNext("");
+        stdout.onNext("[----------] Global test environment tear-down");
+        stdout.onNext("[==========] 1 test from 1 test case ran. (3 ms total)");
+        stdout.onNext("[  PASSED  ] 1 test.");
+        stdout.onNext("  YOU HAVE 1 DISABLED TEST");
+        stream.onCompleted();
+        stdout.onCompleted();
+
+        assertEquals(output.getOnNextEvents(), ImmutableList.of(
+                new OutputBeforeSuiteStarted("Running main() from gtest_main.cc"),
+                new SuiteStart("[==========] Running 1 test from 1 test case.", 1, 1),
+                new TestOutput("[----------] Global test environment set-up.", Optional.empty(), Optional.empty()),
+                new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1),
+                new TestStart("[ RUN      ] SomeGroup.Test", "SomeGroup", "Test"),
+                new TestOutput("test output", Optional.of("SomeGroup"), Optional.of("Test")),
+                new TestOutput("[       OK ] SomeGroup.Fake (0 ms)", Optional.of("SomeGroup"), Optional.of("Test")),
+                new TestOutput("last words", Optional.of("SomeGroup"), Optional.of("Test")),
+                new TestPassed("[       OK ] SomeGroup.Test (3 ms)", "SomeGroup", "Test", OptionalInt.of(3)),
+                new GroupEnd("[----------] 1 test from SomeGroup (3 ms total)", "SomeGroup", 1),
+                new TestOutput("", Optional.empty(), Optional.empty()),
+                new TestOutput("[----------] Global test environment tear-down", Optional.empty(), Optional.empty()),
+                new SuiteEnd("[==========] 1 test from 1 test case ran.", 1, 1),
+                new PassedTestsSummary("[  PASSED  ] 1 test.", 1),
+                new SummaryOutput("  YOU HAVE 1 DISABLED TEST")
+        ));
+        assertEquals(output.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test
+    void testEndWaitsForStdout() throws Exception {
+        record("event=TestIterationStart&iteration=0");
+        record("event=TestCaseStart&name=SomeGroup");
+        record("event=TestStart&name=Test");
+        record("event=TestEnd&passed=0&elapsed_time=3ms");
+        record("event=TestCaseEnd&passed=0&elapsed_time=3ms");
+        stdout.onNext("[==========] Running 1 test from 1 test suite.");
+        stdout.onNext("[----------] Global test environment set-up.");
+        stdout.onNext("[----------] 1 test from SomeGroup");
+        stdout.onNext("[ RUN      ] SomeGroup.Test");
+
+        assertEquals(output.getOnNextEvents().size(), 4);
+
+        stdout.onNext("test.cc:12: Failure");
+        stdout.onNext("[  FAILED  ] SomeGroup.Test, where GetParam() = 1 (3 ms)");
+
+        assertEquals(output.getOnNextEvents().subList(4, 6), ImmutableList.of(
+                new TestOutput("test.cc:12: Failure", Optional.of("SomeGroup"), Optional.of("Test")),
+                new TestFailed("[  FAILED  ] SomeGroup.Test (3 ms)", "SomeGroup", "Test", OptionalInt.of(3))
+        ));
+    }
+
+    @Test
+    void eventsDoNotWaitForStdoutWhichIsOver() throws Exception {
+        stdout.onCompleted();
+        record("event=TestIterationStart&iteration=0");
+        record("event=TestCaseStart&name=SomeGroup");
+        record("event=TestStart&name=Test");
+        record("event=TestEnd&passed=1&elapsed_time=3ms");
+        record("event=TestCaseEnd&passed=1&elapsed_time=3ms");
+        record("event=TestIterationEnd&passed=1");
+        stream.onCompleted();
+
+        assertEquals(output.getOnNextEvents().get(5), new GroupEnd("[----------] 1 test from SomeGroup (3 ms total)", "SomeGroup", 1));
+        assertEquals(output.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test
+    void isEcho() throws Exception {
+        assertTrue(GTestStreamParser.isEcho("[       OK ] SomeGroup.Test (3 ms)", "[       OK ] SomeGroup.Test (0 ms)"));
+        assertTrue(GTestStreamParser.isEcho("[       OK ] SomeGroup.Test", "[       OK ] SomeGroup.Test (0 ms)"));
+        assertFalse(GTestStreamParser.isEcho("[       OK ] SomeGroup.Test2 (3 ms)", "[       OK ] SomeGroup.Test (3 ms)"));
+        assertFalse(GTestStreamParser.isEcho("[  FAILED  ] SomeGroup.Test (3 ms)", "[       OK ] SomeGroup.Test (3 ms)"));
+        assertFalse(GTestStreamParser.isEcho("SomeGroup.Test", "SomeGroup.Test"));
+    }
+
+    @Test
+    void recordsSplitAcrossChunks() throws Exception {
+        byte[] bytes = "event=TestIterationStart&iteration=0\nevent=TestCaseStart&name=Some%47roup\n".getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            stream.onNext(ByteBuffer.wrap(new byte[] { b }));
+        }
+
+        assertEquals(output.getOnNextEvents().get(2), new GroupStart("[----------] 1 test from SomeGroup", "SomeGroup", 1));
+    }
+
+    @Test
+    void decode() throws Exception {
+        assertEquals(GTestStreamParser.decode("a=x%3Dy%26z%0A%25%", 2, 18), "x=y&z\n%%");
+        assertEquals(GTestStreamParser.decode("plain", 0, 5), "plain");
+        assertEquals(GTestStreamParser.decode("%zz%4", 0, 5), "%zz%4");
+    }
+}
@@ -0,0 +1,49 @@
+package gumanoid.parser;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestTagUTest {
+    @DataProvider(name = "lines")
+    Object[][] lines() {
+        return new Object[][] {
+                { "[==========] Running 3 tests from 2 test cases.", GTestTag.Banner },
+                { "[----------] 2 tests from SomeGroup", GTestTag.Section },
+                { "[ RUN      ] SomeGroup.TestIsTrue", GTestTag.Run },
+                { "[       OK ] SomeGroup.TestIsTrue (0 ms)", GTestTag.Ok },
+                { "[  PASSED  ] 1 test.", GTestTag.Passed },
+                { "[  FAILED  ] SomeGroup.FailingTest", GTestTag.Failed },
+                { "[  FAILED  ]", GTestTag.Failed },
+                { "", GTestTag.None },
+                { "Expected: false", GTestTag.None },
+                { "[  FAILED ", GTestTag.None },
+                { "[ DISABLED ] SomeGroup.DISABLED_Test", GTestTag.None },
+                { "[  FAILEF  ] SomeGroup.FailingTest", GTestTag.None },
+                { " [ RUN      ] SomeGroup.TestIsTrue", GTestTag.None },
+        };
+    }
+
+    @Test(dataProvider = "lines")
+    void testOf(String line, GTestTag expected) throws Exception {
+        assertEquals(GTestTag.of(line), expected);
+    }
+
+    @Test void tagMayFollowOutput() throws Exception {
+        assertEquals(GTestTag.indexOf("output[       OK ] SomeGroup.TestIsTrue (0 ms)", 1), 6);
+        assertEquals(GTestTag.indexOf(" [ RUN      ] SomeGroup.TestIsTrue", 1), 1);
+        assertEquals(GTestTag.indexOf("[ RUN      ] SomeGroup.TestIsTrue", 1), -1);
+        assertEquals(GTestTag.indexOf("array[0] = 1, [1, 2, 3], foo [INFO] bar [==========", 1), -1);
+        assertEquals(GTestTag.of("output[  FAILED  ] SomeGroup.Test", 6), GTestTag.Failed);
+    }
+
+    @Test(dataProvider = "lines")
+    void testOfBytes(String line, GTestTag expected) throws Exception {
+        byte[] bytes = ("\r\n" + line + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        assertEquals(GTestTag.of(bytes, 2, bytes.length - 4), expected);
+    }
+}
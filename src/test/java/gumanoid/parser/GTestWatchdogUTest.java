@@ -0,0 +1,72 @@
+package gumanoid.parser;
+
+import gumanoid.event.GTestOutputEvent;
+import gumanoid.event.TestSymbols;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.observers.TestObserver;
+import rx.subjects.PublishSubject;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+@Test
+public class GTestWatchdogUTest {
+    PublishSubject<String> output;
+    TestObserver<GTestOutputEvent> events;
+    BlockingQueue<GTestWatchdog.Expiry> expired;
+
+    @BeforeMethod void createWatchdog() {
+        output = PublishSubject.create();
+        events = new TestObserver<>();
+        expired = new ArrayBlockingQueue<>(1);
+
+        GTestWatchdog watchdog = new GTestWatchdog(test -> test.equals("SomeGroup.Hanging")
+                ? OptionalInt.of(50)
+                : OptionalInt.of(60000));
+        watchdog.watch(output.lift(new GTestOutputParser(new TestSymbols())), expired::add)
+                .subscribe(events);
+
+        output.onNext("[==========] Running 2 tests from 1 test case.");
+        output.onNext("[----------] Global test environment set-up.");
+        output.onNext("[----------] 2 tests from SomeGroup");
+    }
+
+    @Test void hangingTestTimesOut() throws Exception {
+        output.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+        output.onNext("[       OK ] SomeGroup.TestIsTrue (0 ms)");
+        output.onNext("[ RUN      ] SomeGroup.Hanging");
+        output.onNext("waiting for something");
+
+        GTestWatchdog.Expiry expiry = expired.poll(10, TimeUnit.SECONDS);
+        assertEquals(expiry.test, "SomeGroup.Hanging");
+        assertEquals(expiry.timeoutMs, 50);
+        assertEquals(expiry.lastOutput, asList("waiting for something"));
+
+        List<GTestOutputEvent> emitted = events.getOnNextEvents();
+        TestFailed timedOut = (TestFailed) emitted.get(emitted.size() - 1);
+        assertEquals(timedOut.testName, "Hanging");
+        assertEquals(timedOut.outputLine, "[  FAILED  ] SomeGroup.Hanging (timed out after 50 ms)");
+
+        output.onNext("output of the killed process");
+        output.onCompleted();
+        assertEquals(events.getOnNextEvents().size(), emitted.size(), "events after timeout are dropped");
+        assertEquals(events.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test void testWhichEndsInTimeDoesNotTimeOut() throws Exception {
+        output.onNext("[ RUN      ] SomeGroup.Hanging");
+        output.onNext("[  FAILED  ] SomeGroup.Hanging (1 ms)");
+        output.onNext("[ RUN      ] SomeGroup.TestIsTrue");
+
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
@@ -3,7 +3,9 @@ package gumanoid.parser;
 import com.google.common.collect.ImmutableList;
 import org.testng.annotations.Test;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static gumanoid.parser.ParserCore.*;
@@ -14,63 +16,76 @@ import static org.testng.Assert.*;
  */
 @Test
 public class ParserCoreUTest {
-    static final String[] A = new String[]{"a"};
-    static final String[] D = new String[]{"d"};
-    public static final String[] AA = new String[]{"aa"};
-
     @Test
-    void testFirstOfWithOneArg() throws Exception {
-        LineParser parser = firstOf(
-                line -> line.startsWith("a") ? Optional.of(A) : Optional.empty()
-        );
+    void testMatchingPattern() throws Exception {
+        Pattern pattern = Pattern.compile("digit (\\d)");
 
-        assertEquals(parser.parse("abc"), Optional.of(A));
-        assertEquals(parser.parse("def"), Optional.empty());
+        for (Match match : new Match[] {
+                matching(pattern),
+                matching(pattern.pattern())
+        }) {
+            List<String> values = new ArrayList<>();
+            MatchParser parser = match.then(m -> values.add(m.string(1)));
+
+            assertTrue(parser.parse("digit 1"));
+            assertTrue(parser.parse("digit 7"));
+            assertFalse(parser.parse("no digits here"));
+            assertEquals(values, ImmutableList.of("1", "7"));
+        }
     }
 
     @Test
-    void testFirstOfWithTwoArgs() throws Exception {
-        LineParser parser = firstOf(
-                line -> line.startsWith("a") ? Optional.of(A) : Optional.empty(),
-                line -> line.startsWith("d") ? Optional.of(D) : Optional.empty()
+    void testFirstMatchOfArgsOrder() throws Exception {
+        List<String> matched = new ArrayList<>();
+        MatchParser parser = firstMatchOf(
+                matching("^aa").then(m -> matched.add("aa")),
+                matching("^a").then(m -> matched.add("a"))
         );
 
-        assertEquals(parser.parse("abc"), Optional.of(A));
-        assertEquals(parser.parse("def"), Optional.of(D));
-        assertEquals(parser.parse("ghi"), Optional.empty());
+        assertTrue(parser.parse("abc"));
+        assertTrue(parser.parse("aaa"));
+        assertFalse(parser.parse("def"));
+        assertEquals(matched, ImmutableList.of("a", "aa"));
     }
 
     @Test
-    void testFirstOfArgsOrder() throws Exception {
-        LineParser parser = firstOf(
-                line -> line.startsWith("aa") ? Optional.of(AA) : Optional.empty(),
-                line -> line.startsWith("a") ? Optional.of(A) : Optional.empty()
-        );
+    void testMatching() throws Exception {
+        List<String> values = new ArrayList<>();
+        MatchParser parser = matching("(\\w+) (\\d+)(?: \\((\\d+) ms\\))?$").then(m -> {
+            assertEquals(m.groupCount(), 3);
+            values.add(m.string(0));
+            values.add(m.group(1).toString());
+            values.add(String.valueOf(m.intGroup(2)));
+            values.add(m.isPresent(3) ? String.valueOf(m.intGroup(3)) : null);
+            assertEquals(m.group(3) == null, !m.isPresent(3));
+        });
 
-        assertEquals(parser.parse("abc"), Optional.of(A));
-        assertEquals(parser.parse("aaa"), Optional.of(AA));
+        assertTrue(parser.parse("digit 17 (25 ms)"));
+        assertTrue(parser.parse("> digit 0"));
+        assertFalse(parser.parse("no digits here"));
+
+        assertEquals(values, Arrays.asList(
+                "digit 17 (25 ms)", "digit", "17", "25",
+                "digit 0", "digit", "0", null
+        ));
     }
 
     @Test
-    void testIfMatches() throws Exception {
-        Pattern pattern = Pattern.compile("digit (\\d)");
-
-        for (LineParser parser: new LineParser[] {
-                ifMatches(pattern),
-                ifMatches(pattern.pattern())
-        }) {
-            Optional<String[]> result;
+    void testMatchSlices() throws Exception {
+        MatchParser parser = matching("from (\\w+)").then(m -> {
+            CharSequence group = m.group(1);
+            assertEquals(group.length(), 9);
+            assertEquals(group.charAt(0), 'S');
+            assertEquals(group.subSequence(4, 9).toString(), "Group");
+            assertTrue("SomeGroup".contentEquals(group));
+            assertSame(m.string(0), m.line());
+        });
 
-            result = parser.parse("digit 1");
-            assertTrue(result.isPresent());
-            assertEquals(result.get(), new String[] {"digit 1", "1"});
-
-            result = parser.parse("digit 7");
-            assertTrue(result.isPresent());
-            assertEquals(result.get(), new String[] {"digit 7", "7"});
+        assertTrue(parser.parse("from SomeGroup"));
+    }
 
-            result = parser.parse("no digits here");
-            assertFalse(result.isPresent());
-        }
+    @Test(expectedExceptions = NumberFormatException.class)
+    void testIntGroupOverflow() throws Exception {
+        matching("(\\d+)").then(m -> m.intGroup(1)).parse("12345678901234567890");
     }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package gumanoid.runner;
+
+/**
+ * Fake executable which prints its first argument, sleeps for the number of
+ * milliseconds given by the second one, and exits with the third one
+ */
+public class EchoAndExit {
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println(args[0]);
+        System.out.flush();
+
+        Thread.sleep(Long.parseLong(args[1]));
+        System.exit(Integer.parseInt(args[2]));
+    }
+}
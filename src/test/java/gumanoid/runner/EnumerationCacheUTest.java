@@ -0,0 +1,78 @@
+package gumanoid.runner;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class EnumerationCacheUTest {
+    File storeDir;
+    File executable;
+
+    List<String> listing = ImmutableList.of("G.", "  a", "  b");
+
+    @BeforeMethod void createExecutable() throws Exception {
+        storeDir = Files.createTempDirectory("enumeration").toFile();
+        executable = new File(storeDir, "tests");
+        Files.write(executable.toPath(), "build 1".getBytes(StandardCharsets.UTF_8));
+    }
+
+    EnumerationCache open() {
+        return EnumerationCache.forExecutable(storeDir, executable.getPath());
+    }
+
+    @Test void listingIsKeptBetweenSessions() throws Exception {
+        open().put("", listing);
+
+        assertEquals(open().get(""), Optional.of(listing));
+    }
+
+    @Test void listingIsKeptForEachFilter() throws Exception {
+        EnumerationCache cache = open();
+        cache.put("", listing);
+        cache.put("--gtest_filter=G.a", ImmutableList.of("G.", "  a"));
+
+        assertEquals(cache.get(""), Optional.of(listing));
+        assertEquals(cache.get("--gtest_filter=G.a"), Optional.of(ImmutableList.of("G.", "  a")));
+        assertEquals(cache.get("--gtest_filter=G.b"), Optional.empty());
+    }
+
+    @Test void listingIsDroppedWhenExecutableIsRebuilt() throws Exception {
+        EnumerationCache cache = open();
+        cache.put("", listing);
+
+        Files.write(executable.toPath(), "build 2".getBytes(StandardCharsets.UTF_8));
+        executable.setLastModified(executable.lastModified() + 2000);
+
+        assertEquals(cache.get(""), Optional.empty());
+    }
+
+    @Test void listingIsDroppedWhenExecutableIsReplacedKeepingTime() throws Exception {
+        open().put("", listing);
+
+        //same size and modification time, e. g. copied with attributes
+        long modificationTime = executable.lastModified();
+        Files.write(executable.toPath(), "build 2".getBytes(StandardCharsets.UTF_8));
+        executable.setLastModified(modificationTime);
+
+        assertEquals(open().get(""), Optional.empty());
+    }
+
+    @Test void leastRecentlyListedFiltersAreDropped() throws Exception {
+        EnumerationCache cache = open();
+        for (int i = 0; i <= EnumerationCache.MAX_FILTERS; ++i) {
+            cache.put("--gtest_filter=" + i, listing);
+        }
+
+        assertEquals(cache.get("--gtest_filter=0"), Optional.empty());
+        assertEquals(cache.get("--gtest_filter=1"), Optional.of(listing));
+    }
+}
@@ -0,0 +1,88 @@
+package gumanoid.runner;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+import rx.observers.TestSubscriber;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ProcessLaunchesModelIT {
+    ProcessBuilder echoAndExit(String line, long sleepMs, int exitCode) {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), EchoAndExit.class.getName(),
+                line, String.valueOf(sleepMs), String.valueOf(exitCode));
+    }
+
+    @Test void launchesHaveTheirOwnOutputAndExitCode() throws Exception {
+        ProcessLaunchesModel model = new ProcessLaunchesModel(2);
+
+        ProcessLaunchesModel.Launch first = model.prepare(echoAndExit("first", 500, 1));
+        ProcessLaunchesModel.Launch second = model.prepare(echoAndExit("second", 0, 2));
+        TestSubscriber<String> firstOutput = new TestSubscriber<>();
+        first.getOutput().subscribe(firstOutput);
+        TestSubscriber<String> secondOutput = new TestSubscriber<>();
+        second.getOutput().subscribe(secondOutput);
+
+        first.start();
+        second.start();
+
+        assertEquals(second.waitFor(), 2);
+        assertEquals(first.waitFor(), 1);
+        assertEquals(firstOutput.getOnNextEvents(), ImmutableList.of("first"));
+        assertEquals(secondOutput.getOnNextEvents(), ImmutableList.of("second"));
+    }
+
+    @Test void cancellationOfOneLaunchDoesNotAffectOthers() throws Exception {
+        ProcessLaunchesModel model = new ProcessLaunchesModel(2);
+
+        ProcessLaunchesModel.Launch slow = model.prepare(echoAndExit("slow", 60_000, 0));
+        ProcessLaunchesModel.Launch fast = model.prepare(echoAndExit("fast", 500, 3));
+        TestSubscriber<ProcessModel> slowStarted = new TestSubscriber<>();
+        slow.onStarted().take(1).subscribe(slowStarted);
+
+        slow.start();
+        fast.start();
+        slowStarted.awaitTerminalEvent();
+        slow.cancel();
+
+        assertEquals(fast.waitFor(), 3);
+        slow.waitFor();
+        assertTrue(slowStarted.getOnNextEvents().get(0).isCancelled());
+    }
+
+    @Test void launchesAboveLimitWaitAndCanBeCancelled() throws Exception {
+        ProcessLaunchesModel model = new ProcessLaunchesModel(1);
+
+        ProcessLaunchesModel.Launch running = model.prepare(echoAndExit("running", 500, 0)).start();
+        ProcessLaunchesModel.Launch waiting = model.prepare(echoAndExit("waiting", 0, 0));
+        TestSubscriber<ProcessModel> waitingStarted = new TestSubscriber<>();
+        waiting.onStarted().subscribe(waitingStarted);
+        waiting.start();
+        waiting.cancel();
+
+        assertEquals(running.waitFor(), 0);
+        assertEquals(waiting.waitFor(), -1);
+        waitingStarted.assertReceivedOnNext(ImmutableList.of());
+        waitingStarted.assertTerminalEvent();
+    }
+
+    @Test void launchWhichCannotBeStartedFails() throws Exception {
+        ProcessLaunchesModel model = new ProcessLaunchesModel();
+        TestSubscriber<Throwable> failed = new TestSubscriber<>();
+        model.onFailed().subscribe(failed);
+
+        ProcessLaunchesModel.Launch missing = model.prepare(new ProcessBuilder("no such executable"));
+        TestSubscriber<ProcessModel> started = new TestSubscriber<>();
+        missing.onStarted().subscribe(started);
+        missing.start();
+
+        assertEquals(missing.waitFor(), -1);
+        started.assertReceivedOnNext(ImmutableList.of());
+        assertEquals(started.getOnErrorEvents().size(), 1);
+        assertEquals(failed.getOnNextEvents(), started.getOnErrorEvents());
+    }
+}
@@ -0,0 +1,84 @@
+package gumanoid.runner;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+import rx.observers.TestSubscriber;
+
+import java.io.File;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ProcessModelIT {
+    static final long TIMEOUT_MS = 30_000;
+
+    ProcessModel launchStderrFlood() throws Exception {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return new ProcessModel(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), StderrFlood.class.getName()).start());
+    }
+
+    void runToCompletion(ProcessModel process) throws Exception {
+        Thread runner = new Thread(() -> {
+            try {
+                process.start();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        runner.start();
+        runner.join(TIMEOUT_MS);
+
+        if (runner.isAlive()) {
+            process.cancel();
+        }
+        assertFalse(runner.isAlive(), "process got stuck");
+    }
+
+    @Test void unobservedStderrIsDrained() throws Exception {
+        ProcessModel process = launchStderrFlood();
+
+        TestSubscriber<String> output = new TestSubscriber<>();
+        process.getOutput().subscribe(output);
+        TestSubscriber<Integer> exitCode = new TestSubscriber<>();
+        process.getExitCode().subscribe(exitCode);
+
+        runToCompletion(process);
+
+        assertEquals(output.getOnNextEvents(), ImmutableList.of("before", "after"));
+        assertEquals(exitCode.getOnNextEvents(), ImmutableList.of(0));
+    }
+
+    @Test void stderrIsObservable() throws Exception {
+        ProcessModel process = launchStderrFlood();
+
+        TestSubscriber<String> errorOutput = new TestSubscriber<>();
+        process.getErrorOutput().subscribe(errorOutput);
+
+        runToCompletion(process);
+
+        assertEquals(errorOutput.getOnNextEvents().size(), StderrFlood.ERROR_LINES);
+        assertEquals(errorOutput.getOnNextEvents().get(0), StderrFlood.ERROR_LINE);
+        assertEquals(errorOutput.getOnCompletedEvents().size(), 1);
+    }
+
+    @Test void taggedOutputIsOrderedByReadTime() throws Exception {
+        ProcessModel process = launchStderrFlood();
+
+        TestSubscriber<OutputLine> taggedOutput = new TestSubscriber<>();
+        process.getTaggedOutput().subscribe(taggedOutput);
+
+        runToCompletion(process);
+
+        List<OutputLine> lines = taggedOutput.getOnNextEvents();
+        assertEquals(lines.size(), StderrFlood.ERROR_LINES + 2);
+        assertEquals(lines.stream().filter(l -> l.stream == OutputLine.Stream.Stdout).count(), 2);
+        assertEquals(taggedOutput.getOnCompletedEvents().size(), 1);
+
+        for (int i = 1; i < lines.size(); ++i) {
+            assertTrue(lines.get(i - 1).readTime <= lines.get(i).readTime);
+        }
+    }
+}
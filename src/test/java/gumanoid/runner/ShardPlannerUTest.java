@@ -0,0 +1,46 @@
+package gumanoid.runner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class ShardPlannerUTest {
+    @Test void longTestsAreSpreadBetweenShards() throws Exception {
+        List<String> tests = ImmutableList.of("G.a", "G.b", "G.c", "G.d", "G.e", "G.f");
+        Map<String, Integer> durations = ImmutableMap.<String, Integer>builder()
+                .put("G.a", 100).put("G.b", 100)
+                .put("G.c", 50).put("G.d", 50)
+                .put("G.e", 10).put("G.f", 10)
+                .build();
+
+        List<List<String>> shards = ShardPlanner.plan(tests, durations, 2);
+
+        assertEquals(shards.size(), 2);
+        assertEquals(ShardPlanner.makespan(shards, durations), 160);
+        assertEquals(shards.stream().flatMap(List::stream).sorted().collect(Collectors.toList()), tests);
+    }
+
+    @Test void unknownTestsAreAsLongAsMedianOne() throws Exception {
+        List<String> tests = ImmutableList.of("G.slow", "G.mid", "G.new1", "G.new2", "G.fast");
+        Map<String, Integer> durations = ImmutableMap.of("G.slow", 50, "G.mid", 20, "G.fast", 10);
+
+        List<List<String>> shards = ShardPlanner.plan(tests, durations, 2);
+
+        //new tests are taken for 20 ms each, so the slow one gets company
+        assertEquals(shards.stream().filter(s -> s.contains("G.slow")).findFirst().get(),
+                ImmutableList.of("G.slow", "G.fast"));
+    }
+
+    @Test void emptyShardsAreOmitted() throws Exception {
+        List<List<String>> shards = ShardPlanner.plan(ImmutableList.of("G.a", "G.b"), ImmutableMap.of(), 4);
+
+        assertEquals(shards.size(), 2);
+    }
+}
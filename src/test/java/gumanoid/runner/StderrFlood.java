@@ -0,0 +1,23 @@
+package gumanoid.runner;
+
+/**
+ * Fake test executable which writes a lot to stderr between stdout lines,
+ * much more than a pipe buffer holds
+ */
+public class StderrFlood {
+    static final int ERROR_LINES = 64 * 1024;
+    static final String ERROR_LINE = "==12345==WARNING: sanitizer report line, padded to be long enough to count";
+
+    public static void main(String[] args) {
+        System.out.println("before");
+        System.out.flush();
+
+        for (int i = 0; i < ERROR_LINES; ++i) {
+            System.err.println(ERROR_LINE);
+        }
+        System.err.flush();
+
+        System.out.println("after");
+        System.out.flush();
+    }
+}
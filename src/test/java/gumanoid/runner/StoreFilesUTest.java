@@ -0,0 +1,22 @@
+package gumanoid.runner;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+@Test
+public class StoreFilesUTest {
+    @Test void executablesWithSameNameAreKeptApart() throws Exception {
+        File storeDir = new File("store");
+
+        File debug = StoreFiles.storeFile(storeDir, "debug/tests", ".history");
+        File release = StoreFiles.storeFile(storeDir, "release/tests", ".history");
+
+        assertNotEquals(debug, release);
+        assertEquals(debug.getParentFile(), storeDir);
+        assertEquals(debug, StoreFiles.storeFile(storeDir, "debug/tests", ".history"));
+    }
+}
@@ -0,0 +1,50 @@
+package gumanoid.runner;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class TestFiltersUTest {
+    @Test void filtersAreSplitAtMaxLength() throws Exception {
+        //"--gtest_filter=" is 15 characters, "G.aaaa:G.bbbb" is 13 more
+        List<String> tests = ImmutableList.of("G.aaaa", "G.bbbb", "G.cccc", "G.dddd", "G.eeee");
+
+        List<List<String>> parts = TestFilters.split(tests, 28);
+
+        assertEquals(parts, ImmutableList.of(
+                ImmutableList.of("G.aaaa", "G.bbbb"),
+                ImmutableList.of("G.cccc", "G.dddd"),
+                ImmutableList.of("G.eeee")));
+        for (List<String> part : parts) {
+            assertTrue(TestFilters.of(part).length() <= 28, part.toString());
+        }
+    }
+
+    @Test void manyTestsFitCommandLine() throws Exception {
+        List<String> tests = Collections.nCopies(10_000, "SomeLongGroupName.SomeLongTestName");
+
+        List<List<String>> parts = TestFilters.split(tests);
+
+        assertTrue(parts.size() > 1);
+        assertEquals(parts.stream().flatMap(List::stream).collect(Collectors.toList()), tests);
+        for (List<String> part : parts) {
+            assertTrue(TestFilters.of(part).length() <= TestFilters.MAX_LENGTH);
+        }
+    }
+
+    @Test void tooLongTestIsAlone() throws Exception {
+        List<String> tests = ImmutableList.of("G.a", "G.very_long_test_name", "G.b");
+
+        assertEquals(TestFilters.split(tests, 20), ImmutableList.of(
+                ImmutableList.of("G.a"),
+                ImmutableList.of("G.very_long_test_name"),
+                ImmutableList.of("G.b")));
+    }
+}
@@ -0,0 +1,106 @@
+package gumanoid.ui;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import rx.schedulers.TestScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class BoundedEventQueueUTest {
+    TestScheduler scheduler;
+    List<List<String>> batches;
+    BoundedEventQueue<String> queue;
+
+    @BeforeMethod void createQueue() {
+        scheduler = new TestScheduler();
+        batches = new ArrayList<>();
+        //lines starting with '~' are droppable output
+        queue = new BoundedEventQueue<>(4, 3, 16,
+                e -> e.startsWith("~"),
+                (last, skipped) -> "~" + skipped + " skipped, last " + last,
+                batches::add,
+                scheduler);
+    }
+
+    @Test void batchIsSentAfterPeriod() throws Exception {
+        queue.put("a");
+        queue.put("b");
+
+        scheduler.advanceTimeBy(15, TimeUnit.MILLISECONDS);
+        assertEquals(batches, ImmutableList.of());
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertEquals(batches, ImmutableList.of(ImmutableList.of("a", "b")));
+        assertEquals(queue.size(), 0);
+    }
+
+    @Test void fullBatchIsSentAtOnce() throws Exception {
+        queue.put("a");
+        queue.put("b");
+        queue.put("c");
+        queue.put("d");
+
+        scheduler.triggerActions();
+        assertEquals(batches, ImmutableList.of(ImmutableList.of("a", "b", "c"), ImmutableList.of("d")));
+    }
+
+    @Test void droppableEventsAreSkippedWhenFull() throws Exception {
+        queue.put("a");
+        queue.put("~1");
+        queue.put("~2");
+        queue.put("~3");
+        queue.put("~4");
+        queue.put("~5");
+
+        assertEquals(queue.getSkippedCount(), 2);
+        assertEquals(queue.getHighWaterMark(), 4);
+
+        scheduler.triggerActions();
+        queue.put("b");
+
+        scheduler.advanceTimeBy(16, TimeUnit.MILLISECONDS);
+        assertEquals(batches, ImmutableList.of(
+                ImmutableList.of("a", "~1", "~2"),
+                ImmutableList.of("~3"),
+                ImmutableList.of("~2 skipped, last ~5", "b")
+        ));
+    }
+
+    @Test void producerIsBlockedWhenFull() throws Exception {
+        queue.put("a");
+        queue.put("b");
+        queue.put("c");
+        queue.put("d");
+
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put("e");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        scheduler.triggerActions();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertEquals(queue.getBlockedCount(), 1);
+
+        //"e" may get to the same batch as "d" or to the next one
+        scheduler.advanceTimeBy(16, TimeUnit.MILLISECONDS);
+        assertEquals(batches.stream().flatMap(List::stream).collect(Collectors.toList()),
+                ImmutableList.of("a", "b", "c", "d", "e"));
+    }
+}
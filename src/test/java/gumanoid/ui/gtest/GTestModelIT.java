@@ -0,0 +1,125 @@
+package gumanoid.ui.gtest;
+
+import com.google.common.collect.ImmutableList;
+import gumanoid.event.GTestListEvent;
+import gumanoid.event.GTestOutputEvent;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import rx.observers.TestSubscriber;
+import sun.awt.OSInfo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static gumanoid.event.GTestOutputEvent.*;
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class GTestModelIT {
+    File testSamplesDir = new File(Paths.get("").toAbsolutePath().toFile(), "test_samples");
+
+    File storeDir;
+    GTestModel.Options options;
+
+    /**
+     * History and cached enumeration of previous test runs would change results
+     */
+    @BeforeClass void useTempStore() throws Exception {
+        storeDir = Files.createTempDirectory("gumanoid").toFile();
+        options = GTestModel.Options.DEFAULT.withStoreDir(storeDir);
+    }
+
+    @AfterClass void deleteTempStore() throws Exception {
+        try (Stream<Path> files = Files.walk(storeDir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    String exePath(String name) {
+        return new File(testSamplesDir, OSInfo.getOSType() == OSInfo.OSType.WINDOWS ? name + ".exe" : name).getPath();
+    }
+
+    @DataProvider(name = "parallelism")
+    Object[][] parallelism() {
+        return new Object[][] {
+                { GTestModel.Parallelism.Shards },
+                { GTestModel.Parallelism.Batches },
+                { GTestModel.Parallelism.Planned },
+        };
+    }
+
+    @Test(dataProvider = "parallelism")
+    void parallelRunLooksLikeSingleRun(GTestModel.Parallelism parallelism) throws Exception {
+        GTestModel model = new GTestModel(exePath("two_groups_with_one_test_each"), options.withWorkers(2, parallelism));
+
+        TestSubscriber<GTestOutputEvent> output = new TestSubscriber<>();
+        model.testsOutput().subscribe(output);
+        TestSubscriber<Integer> exitCode = new TestSubscriber<>();
+        model.testsExitCode().subscribe(exitCode);
+        TestSubscriber<Void> complete = new TestSubscriber<>();
+        model.testsComplete().subscribe(complete);
+
+        model.runTests();
+
+        List<GTestOutputEvent> events = output.getOnNextEvents();
+        List<Class<?>> structure = events.stream()
+                .filter(e -> !(e instanceof TestOutput) && !(e instanceof OutputBeforeSuiteStarted) && !(e instanceof SummaryOutput))
+                .<Class<?>>map(Object::getClass)
+                .collect(Collectors.toList());
+
+        assertEquals(events.stream().filter(e -> e instanceof SuiteStart).findFirst().get(),
+                new SuiteStart("[==========] Running 2 tests from 2 test cases.", 2, 2));
+        assertEquals(structure.stream().filter(c -> c == GroupStart.class).count(), 2);
+        assertEquals(structure.stream().filter(c -> c == GroupEnd.class).count(), 2);
+        assertEquals(structure.subList(structure.size() - 4, structure.size()), ImmutableList.of(
+                SuiteEnd.class, PassedTestsSummary.class, FailedTestsSummary.class, FailedTestSummary.class
+        ));
+        assertEquals(events.stream().filter(e -> e instanceof FailedTestSummary).findFirst().get(),
+                new FailedTestSummary("[  FAILED  ] OtherGroup.ExpectTest", "OtherGroup", "ExpectTest"));
+
+        assertEquals(exitCode.getOnNextEvents(), ImmutableList.of(1));
+        assertEquals(complete.getOnNextEvents().size(), 1);
+    }
+
+    @Test void cachedEnumerationIsSameAsListed() throws Exception {
+        String exePath = exePath("two_groups_with_one_test_each");
+
+        GTestModel listing = new GTestModel(exePath, options);
+        TestSubscriber<GTestListEvent> listed = new TestSubscriber<>();
+        listing.testsEnumeration().subscribe(listed);
+        listing.runTests();
+
+        GTestModel caching = new GTestModel(exePath, options);
+        TestSubscriber<GTestListEvent> cached = new TestSubscriber<>();
+        caching.testsEnumeration().subscribe(cached);
+        caching.runTests();
+
+        assertEquals(cached.getOnNextEvents(), listed.getOnNextEvents());
+        assertEquals(cached.getOnNextEvents().stream().filter(e -> e instanceof GTestListEvent.TestAnnounce).count(), 2);
+    }
+
+    @Test void runWhichCannotBeStartedFails() throws Exception {
+        GTestModel model = new GTestModel(exePath("no_such_executable"), options);
+
+        TestSubscriber<Throwable> failed = new TestSubscriber<>();
+        model.testsFailed().subscribe(failed);
+        TestSubscriber<Throwable> errors = new TestSubscriber<>();
+        model.testsErrors().subscribe(errors);
+        TestSubscriber<Void> complete = new TestSubscriber<>();
+        model.testsComplete().subscribe(complete);
+
+        model.runTests();
+
+        assertEquals(failed.getOnNextEvents().size(), 1);
+        assertEquals(errors.getOnNextEvents().size(), 2); //listing and execution
+        assertEquals(complete.getOnNextEvents().size(), 0);
+    }
+}
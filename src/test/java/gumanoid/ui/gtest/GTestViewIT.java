@@ -9,7 +9,11 @@ import sun.awt.OSInfo;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
 
 import static java.lang.Thread.sleep;
 import static org.testng.Assert.fail;
@@ -25,8 +29,11 @@ public class GTestViewIT {
     JFrame ui;
     GTestView testView;
 
+    File storeDir;
+
     @BeforeClass
-    void initFrameFixture() {
+    void initFrameFixture() throws Exception {
+        storeDir = Files.createTempDirectory("gumanoid").toFile(); //keeps ~/.gumanoid intact
         ui = new JFrame("Title");
 
         window = new FrameFixture(ui);
@@ -39,8 +46,11 @@ public class GTestViewIT {
     }
 
     @AfterClass
-    void cleanUpFrameFixture() {
+    void cleanUpFrameFixture() throws Exception {
         window.cleanUp();
+        try (Stream<Path> files = Files.walk(storeDir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
     }
 
     String exeName(String name) {
@@ -207,7 +217,7 @@ public class GTestViewIT {
 
         ui.getContentPane().add(testView = new GTestView(), BorderLayout.CENTER);
         JTreeFixture tree = window.tree(GTestOutputView.TREE_NAME);
-        new GTestViewController(testView, testExePath).runAllTests(); //todo it's UI test, it should press buttons, not call controller methods
+        new GTestViewController(testView, testExePath, GTestViewController.optionsFromSystemProperties().withStoreDir(storeDir)).runAllTests(); //todo it's UI test, it should press buttons, not call controller methods
 
         sleep(500);
 
@@ -0,0 +1,64 @@
+package gumanoid.ui.gtest.output;
+
+import org.testng.annotations.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+@Test
+public class FixedHeightRowRendererUTest {
+    @Test void widthOfMonospacedTextIsExact() throws Exception {
+        Font font = new Font("monospaced", Font.PLAIN, 12);
+        FixedHeightRowRenderer renderer = new FixedHeightRowRenderer(font);
+        JTree tree = new JTree();
+
+        for (String text : new String[] { "[ RUN      ] Group.Test", "i", "WWWWWWWW", "" }) {
+            GTestOutputTreeModel<GTestOutputRow> model = new GTestOutputTreeModel<>(new GTestOutputRow(text));
+            Component component = renderer.getTreeCellRendererComponent(tree, model.getRoot(), false, false, true, 0, false);
+
+            JLabel measured = new JLabel(text);
+            measured.setFont(font);
+            assertEquals(component.getPreferredSize().width, measured.getPreferredSize().width + 3, text);
+            assertEquals(component.getPreferredSize().height, renderer.getRowHeight());
+        }
+    }
+
+    @Test void rowsLookingTheSameShareStyle() throws Exception {
+        GTestOutputRow first = new GTestOutputRow("first");
+        GTestOutputRow second = new GTestOutputRow("second");
+        assertSame(first.getStyle(), GTestOutputRow.Style.PLAIN);
+
+        first.setTextColor(GTestOutputRowStyle.COLOR_FAILED);
+        first.setIcon(GTestOutputRowStyle.TEST_FAILED_ICON);
+        second.setIcon(GTestOutputRowStyle.TEST_FAILED_ICON);
+        second.setTextColor(GTestOutputRowStyle.COLOR_FAILED);
+        assertSame(first.getStyle(), second.getStyle());
+        assertSame(first.getIcon(), GTestOutputRowStyle.TEST_FAILED_ICON);
+    }
+
+    @Test void selectedRowHasSelectionBackgroundAndFocusBorder() throws Exception {
+        FixedHeightRowRenderer renderer = new FixedHeightRowRenderer(new Font("monospaced", Font.PLAIN, 12));
+        renderer.setBackgroundSelectionColor(Color.BLUE);
+        renderer.setBorderSelectionColor(Color.RED);
+        GTestOutputTreeModel<GTestOutputRow> model = new GTestOutputTreeModel<>(new GTestOutputRow("selected"));
+
+        for (boolean focused : new boolean[] { false, true }) {
+            Component component = renderer.getTreeCellRendererComponent(new JTree(), model.getRoot(), true, false, true, 0, focused);
+            int width = component.getPreferredSize().width + 20; //row is wider than its text
+            int height = renderer.getRowHeight();
+            component.setSize(width, height);
+
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics g = image.getGraphics();
+            component.paint(g);
+            g.dispose();
+
+            assertEquals(new Color(image.getRGB(width - 5, height / 2)), Color.BLUE);
+            assertEquals(new Color(image.getRGB(width - 1, height / 2)), focused ? Color.RED : Color.BLUE);
+        }
+    }
+}
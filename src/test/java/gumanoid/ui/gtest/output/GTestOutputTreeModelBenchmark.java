@@ -0,0 +1,189 @@
+package gumanoid.ui.gtest.output;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import javax.swing.JScrollPane;
+import javax.swing.JTree;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.tree.TreePath;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Measures EDT time taken by bursts of output lines, which are shown by an
+ * expanded tree, when each line is reported on its own, and when lines of
+ * a batch are reported at once; and time to lay out and scroll through
+ * a million rows, with and without fixed row height.
+ * <p/>
+ * Not a part of regular test run; launch it explicitly when changing
+ * the tree model
+ */
+@Test
+public class GTestOutputTreeModelBenchmark {
+    static final int TESTS = 100;
+    static final int LINES_PER_TEST = 1000;
+    static final int BATCH_SIZE = 1000;
+    static final int ROUNDS = 3;
+    static final int SCROLLED_ROWS = 1_000_000;
+    static final int FRAMES = 200;
+    static final int FRAME_WIDTH = 800;
+    static final int FRAME_HEIGHT = 600;
+
+    @DataProvider(name = "modes")
+    Object[][] modes() {
+        return new Object[][] {
+                { false },
+                { true },
+        };
+    }
+
+    @Test(dataProvider = "modes")
+    void edtTimePerBurst(boolean coalesced) throws Exception {
+        for (int round = 0; round < ROUNDS; ++round) {
+            long[] elapsed = {0};
+            SwingUtilities.invokeAndWait(() -> elapsed[0] = run(coalesced));
+
+            int lines = TESTS * LINES_PER_TEST;
+            System.out.println((coalesced ? "Coalesced" : "Per line") + ", round " + round + ": " + lines + " lines, "
+                    + elapsed[0] / 1_000_000 + " ms, " + (long) (lines / (elapsed[0] / 1e9)) + " lines/sec");
+        }
+    }
+
+    @DataProvider(name = "groupSizes")
+    Object[][] groupSizes() {
+        return new Object[][] {
+                { 1_000 },
+                { 10_000 },
+                { 100_000 },
+                { 1_000_000 },
+        };
+    }
+
+    /**
+     * Time per test of a group where all tests are listed before they run,
+     * and start in a different order; each index lookup is what JTree does
+     * when a row is painted. Should stay about the same for all sizes
+     */
+    @Test(dataProvider = "groupSizes")
+    void queuedTestsStart(int groupSize) throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; ++round) {
+            GTestOutputTreeModel<String> model = new GTestOutputTreeModel<>(null);
+            model.addSuite("suite");
+            model.addGroup(0, "group");
+            for (int i = 0; i < groupSize; ++i) {
+                model.queueTest(0, i, "queued");
+            }
+
+            Object group = model.groupNode(0);
+            long start = System.nanoTime();
+            for (int i = 0; i < groupSize; ++i) {
+                //mostly in order, as GTest runs them, with some out of it
+                int test = i % 10 == 9 ? groupSize - 1 - i : i;
+                if (model.testNode(test).getValue().equals("queued")) {
+                    model.addTest(0, test, "running");
+                }
+                model.getIndexOfChild(group, model.getChild(group, random.nextInt(groupSize)));
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println(groupSize + " tests, round " + round + ": " + elapsed / groupSize + " ns per test");
+        }
+    }
+
+    @DataProvider(name = "rowHeights")
+    Object[][] rowHeights() {
+        return new Object[][] {
+                { false },
+                { true },
+        };
+    }
+
+    /**
+     * Time to expand a test with a million lines of output, and to paint
+     * a frame of the tree scrolled to a random place, as the view sets it up;
+     * frame should take well under 16 ms with fixed row height
+     */
+    @Test(dataProvider = "rowHeights")
+    void scrollThroughRows(boolean fixedRowHeight) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            GTestOutputView view = new GTestOutputView(false, false, fixedRowHeight);
+            GTestOutputTreeModel<GTestOutputRow> model = view.getModel();
+            JTree tree = view.getTree();
+            JScrollPane scroll = view.getTreeScroll();
+            scroll.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+            scroll.doLayout();
+
+            model.addSuite(new GTestOutputRow("suite"));
+            model.addGroup(0, new GTestOutputRow("group"));
+            model.addTest(0, 0, new GTestOutputRow("Test"));
+            for (int i = 0; i < SCROLLED_ROWS; ++i) {
+                model.addOutputLine(model.testNode(0), "some diagnostic output of the code under test #" + i);
+            }
+
+            long start = System.nanoTime();
+            tree.expandPath(new TreePath(new Object[] { model.rootNode(), model.suiteNode() }));
+            tree.expandPath(new TreePath(new Object[] { model.rootNode(), model.suiteNode(), model.groupNode(0) }));
+            tree.expandPath(new TreePath(new Object[] { model.rootNode(), model.suiteNode(), model.groupNode(0), model.testNode(0) }));
+            tree.setSize(tree.getPreferredSize());
+            long expanded = System.nanoTime() - start;
+
+            BufferedImage frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            JViewport viewport = scroll.getViewport();
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < FRAMES; ++i) {
+                viewport.setViewPosition(new Point(0, random.nextInt(tree.getHeight() - FRAME_HEIGHT)));
+                Graphics2D g = frame.createGraphics();
+                scroll.paint(g);
+                g.dispose();
+            }
+            long painted = System.nanoTime() - start;
+
+            if (tree.getRowCount() != 3 + SCROLLED_ROWS) {
+                throw new AssertionError("Rows are not laid out: " + tree.getRowCount());
+            }
+            System.out.println((fixedRowHeight ? "Fixed" : "Variable") + " row height, " + SCROLLED_ROWS + " rows: expanded in "
+                    + expanded / 1_000_000 + " ms, " + painted / FRAMES / 1000 + " us per frame");
+        });
+    }
+
+    private static long run(boolean coalesced) {
+        GTestOutputTreeModel<GTestOutputRow> model = new GTestOutputTreeModel<>(new GTestOutputRow(null), GTestOutputRow::new);
+        JTree tree = new JTree(model);
+        tree.setLargeModel(true);
+        tree.setRootVisible(false);
+
+        long start = System.nanoTime();
+        model.addSuite(new GTestOutputRow("suite"));
+        model.addGroup(0, new GTestOutputRow("group"));
+
+        for (int t = 0; t < TESTS; ++t) {
+            //the test is expanded, so its output is laid out as it comes
+            model.addTest(0, t, new GTestOutputRow("Test" + t));
+            model.addOutputLine(model.testNode(t), "[ RUN      ] Group.Test" + t);
+            tree.expandPath(new TreePath(new Object[] { model.rootNode(), model.suiteNode(), model.groupNode(0), model.testNode(t) }));
+
+            for (int batch = 1; batch < LINES_PER_TEST; batch += BATCH_SIZE) {
+                if (coalesced) {
+                    model.beginUpdate();
+                }
+                for (int i = batch; i < batch + BATCH_SIZE && i < LINES_PER_TEST; ++i) {
+                    model.addOutputLine(model.testNode(t), "some diagnostic output of the code under test #" + i);
+                }
+                if (coalesced) {
+                    model.endUpdate();
+                }
+            }
+        }
+
+        if (tree.getRowCount() != 2 + TESTS * (LINES_PER_TEST + 1)) {
+            throw new AssertionError("Rows are not laid out: " + tree.getRowCount());
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,19 +1,25 @@
 package gumanoid.ui.gtest.output;
 
+import gumanoid.event.TestSymbols;
 import gumanoid.ui.gtest.output.GTestOutputTreeModel.Node;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeModel;
 import java.util.*;
 import java.util.function.BiConsumer;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
 
 @Test
 public class GTestOutputTreeModelUTest {
     static class TestModel extends GTestOutputTreeModel<String> {
+        final TestSymbols symbols = new TestSymbols();
+
         public TestModel() {
             super(null);
         }
@@ -122,6 +128,35 @@ public class GTestOutputTreeModelUTest {
                         insertSuiteOutput(0, "Global test environment set-up").named("test env up"),
                         moveGroup(1, 1, "Group with 1 test").named("move group"),
                         moveTest("group1", 0, 0, "Test 1.").named("move test")
+                },
+                {
+                        queueSuite("Suite").named("queue suite"),
+                        queueGroup("group1", "Group 1").named("queue group 1"),
+                        queueTest("group1", "test1", "Test 1").named("queue test 1"),
+                        queueTest("group1", "test2", "Test 2").named("queue test 2"),
+
+                        moveSuite(0, 0, "Suite with 2 tests in 1 group").named("move suite"),
+                        moveGroup(0, 0, "Group with 2 tests").named("move group"),
+                        moveTest("group1", 0, 0, "Test 1.").named("move test 1"),
+                        moveTest("group1", 1, 1, "Test 2.").named("move test 2"),
+
+                        moveSuite(0, 0, "Suite with 2 tests in 1 group, 2 iterations").named("repeat suite"),
+                        moveGroup(0, 0, "Group with 2 tests, 2 iterations").named("repeat group"),
+                        moveTest("group1", 0, 0, "Test 1, 2 runs").named("repeat test 1"),
+                        moveTest("group1", 1, 1, "Test 2, 2 runs").named("repeat test 2")
+                },
+                {
+                        //tests are listed while they run
+                        queueSuite("Suite").named("queue suite"),
+                        moveSuite(0, 0, "Suite with 2 tests in 1 group").named("move suite"),
+                        insertGroup(0, "group1", "Group with 2 tests").named("start group"),
+                        insertTest(0, "group1", "test1", "Test 1.").named("start test 1"),
+
+                        queueStarted("group1", null, "Group 1").named("queue started group"),
+                        queueStarted("group1", "test1", "Test 1").named("queue started test 1"),
+                        queueTest("group1", "test2", "Test 2").named("queue test 2"),
+
+                        moveTest("group1", 1, 1, "Test 2.").named("move test 2")
                 }
         };
     }
@@ -163,14 +198,14 @@ public class GTestOutputTreeModelUTest {
 
     ScenarioStep queueGroup(String key, String value) {
         return (model, tree) -> {
-            model.queueGroup(key, value);
+            model.queueGroup(model.symbols.group(key), value);
             tree.child("suite").add(new SimpleTree(key).setValue(value));
         };
     }
 
     ScenarioStep insertGroup(int index, String key, String value) {
         return (model, tree) -> {
-            model.addGroup(key, value);
+            model.addGroup(model.symbols.group(key), value);
             tree.child("suite").add(index, new SimpleTree(key).setValue(value));
         };
     }
@@ -179,20 +214,36 @@ public class GTestOutputTreeModelUTest {
         return (model, tree) -> {
             SimpleTree group = tree.child("suite").moveChild(fromIndex, toIndex);
             group.setValue(newValue);
-            model.addGroup(group.key, newValue);
+            model.addGroup(model.symbols.group(group.key), newValue);
         };
     }
 
     ScenarioStep queueTest(String groupKey, String testKey, String value) {
         return (model, tree) -> {
-            model.queueTest(groupKey, testKey, value);
+            int groupId = model.symbols.group(groupKey);
+            model.queueTest(groupId, model.symbols.test(groupId, testKey), value);
             tree.child("suite").child(groupKey).add(new SimpleTree(testKey).setValue(value));
         };
     }
 
+    /**
+     * Queueing of the group or test which is already added changes nothing
+     */
+    ScenarioStep queueStarted(String groupKey, String testKey, String value) {
+        return (model, tree) -> {
+            int groupId = model.symbols.group(groupKey);
+            if (testKey == null) {
+                model.queueGroup(groupId, value);
+            } else {
+                model.queueTest(groupId, model.symbols.test(groupId, testKey), value);
+            }
+        };
+    }
+
     ScenarioStep insertTest(int index, String groupKey, String testKey, String value) {
         return (model, tree) -> {
-            model.addTest(groupKey, testKey, value);
+            int groupId = model.symbols.group(groupKey);
+            model.addTest(groupId, model.symbols.test(groupId, testKey), value);
             tree.child("suite").child(groupKey).add(index, new SimpleTree(testKey).setValue(value));
         };
     }
@@ -201,7 +252,8 @@ public class GTestOutputTreeModelUTest {
         return (model, tree) -> {
             SimpleTree test = tree.child("suite").child(groupKey).moveChild(fromIndex, toIndex);
             test.setValue(newValue);
-            model.addTest(groupKey, test.key, newValue);
+            int groupId = model.symbols.group(groupKey);
+            model.addTest(groupId, model.symbols.test(groupId, test.key), newValue);
         };
     }
 
@@ -255,6 +307,175 @@ public class GTestOutputTreeModelUTest {
         };
     }
 
+    @Test void spooledOutputLines() throws Exception {
+        try (LineSpool spool = LineSpool.createTemp()) {
+            GTestOutputTreeModel<String> model = new GTestOutputTreeModel<>(null, line -> "row: " + line, spool);
+            for (int iteration = 0; iteration < 2; ++iteration) {
+                model.clear();
+                model.addSuite("suite");
+                model.addOutputLine(model.suiteNode(), "suite start");
+                model.addGroup(0, "group");
+                model.addTest(0, 0, "test 0");
+                model.addTest(0, 1, "test 1");
+                for (int i = 0; i < 200; ++i) {
+                    model.addOutputLine(model.testNode(i % 2), "line " + i);
+                    if (i == 100) {
+                        model.addOutput(model.testNode(0), "not spooled");
+                    }
+                }
+                model.addOutputLine(model.groupNode(0), "group end");
+
+                checkInterfaceIntegrity(model);
+
+                Node<String> test0 = model.testNode(0);
+                assertEquals(test0.childCount(), 101);
+                assertEquals(test0.childAt(0).getValue(), "row: line 0");
+                assertEquals(test0.childAt(50).getValue(), "row: line 100");
+                assertEquals(test0.childAt(51).getValue(), "not spooled");
+                assertEquals(test0.childAt(100).getValue(), "row: line 198");
+                assertEquals(model.testNode(1).childAt(99).getValue(), "row: line 199");
+                assertEquals(model.getIndexOfChild(model.testNode(1), test0.childAt(0)), -1);
+
+                Node<String> group = model.groupNode(0);
+                assertEquals(group.childCount(), 3);
+                assertEquals(group.childAt(2).getValue(), "row: group end");
+                assertEquals(spool.size(), 202);
+            }
+        }
+    }
+
+    @Test void insertsAreCoalescedDuringUpdate() throws Exception {
+        GTestOutputTreeModel<String> model = new GTestOutputTreeModel<>(null, line -> line);
+        model.addSuite("suite");
+        model.addGroup(0, "group");
+
+        List<TreeModelEvent> inserts = new ArrayList<>();
+        model.addTreeModelListener(new TreeModelAdapter() {
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+                inserts.add(e);
+                checkInterfaceIntegrity(model);
+            }
+        });
+
+        model.beginUpdate();
+        model.addTest(0, 0, "test");
+        for (int i = 0; i < 100; ++i) {
+            model.addOutputLine(model.testNode(0), "line " + i);
+        }
+        model.nodeUpdated(model.testNode(0));
+        assertEquals(inserts.size(), 1, "test is reported when it's changed");
+        model.addOutputLine(model.groupNode(0), "group end");
+        assertEquals(inserts.size(), 1);
+        model.endUpdate();
+
+        assertEquals(inserts.size(), 3);
+        assertEquals(inserts.get(0).getChildren(), new Object[] { model.testNode(0) });
+        assertEquals(inserts.get(1).getChildIndices().length, 100);
+        assertEquals(inserts.get(1).getChildIndices()[99], 99);
+        assertEquals(inserts.get(2).getChildIndices(), new int[] { 1 });
+
+        model.addOutputLine(model.groupNode(0), "not in update");
+        assertEquals(inserts.size(), 4);
+    }
+
+    @Test void queuedTestsStartInAnyOrder() throws Exception {
+        TestModel model = new TestModel();
+        model.queueSuite("suite");
+        model.queueGroup(0, "group");
+        model.addSuite("suite");
+        model.addGroup(0, "group");
+
+        List<Integer> tests = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            model.queueTest(0, i, "queued " + i);
+            tests.add(i);
+        }
+        Collections.shuffle(tests, new Random(42));
+
+        Node<String> group = model.groupNode(0);
+        for (int i = 0; i < tests.size(); ++i) {
+            int test = tests.get(i);
+            model.addTest(0, test, "test " + test);
+
+            assertEquals(group.childCount(), 200);
+            assertEquals(group.indexOf(model.testNode(test)), i);
+            assertEquals(group.childAt(i).getValue(), "test " + test);
+            if (i % 20 == 0) {
+                checkImplementationIntegrity(model);
+            }
+        }
+
+        model.queueTest(0, 200, "queued again");
+        assertEquals(group.indexOf(model.testNode(200)), 200);
+        checkImplementationIntegrity(model);
+    }
+
+    @Test void lazyChildrenAreShownWhenExposed() throws Exception {
+        GTestOutputTreeModel<String> model = new GTestOutputTreeModel<>(null, line -> line, null, true);
+        model.addSuite("suite");
+        model.addGroup(0, "group");
+
+        List<TreeModelEvent> inserts = new ArrayList<>();
+        List<TreeModelEvent> structureChanges = new ArrayList<>();
+        model.addTreeModelListener(new TreeModelAdapter() {
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+                inserts.add(e);
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+                structureChanges.add(e);
+            }
+        });
+
+        GTestOutputTreeModel.BranchNode<String> test = model.addTest(0, 0, "test");
+        for (int i = 0; i < 10; ++i) {
+            model.addOutputLine(test, "line " + i);
+        }
+
+        assertEquals(inserts.size(), 1, "only the test is reported");
+        assertEquals(model.getChildCount(test), 0);
+        assertEquals(test.childCount(), 10);
+        assertFalse(model.isLeaf(test), "hidden children can be expanded");
+        assertEquals(model.getIndexOfChild(test, test.childAt(0)), -1);
+
+        model.exposeChildren(test);
+        assertEquals(structureChanges.size(), 1);
+        assertEquals(structureChanges.get(0).getTreePath().getLastPathComponent(), test);
+        assertEquals(model.getChildCount(test), 10);
+        checkInterfaceIntegrity(model);
+
+        model.addOutputLine(test, "exposed");
+        assertEquals(inserts.size(), 2);
+
+        model.hideChildren(test);
+        model.addOutputLine(test, "hidden");
+        assertEquals(structureChanges.size(), 2);
+        assertEquals(inserts.size(), 2);
+        assertEquals(model.getChildCount(test), 0);
+        assertEquals(test.childCount(), 12);
+    }
+
+    static class TreeModelAdapter implements TreeModelListener {
+        @Override
+        public void treeNodesChanged(TreeModelEvent e) {
+        }
+
+        @Override
+        public void treeNodesInserted(TreeModelEvent e) {
+        }
+
+        @Override
+        public void treeNodesRemoved(TreeModelEvent e) {
+        }
+
+        @Override
+        public void treeStructureChanged(TreeModelEvent e) {
+        }
+    }
+
     void checkInterfaceIntegrity(TreeModel model) {
         Deque<Object> deque = new LinkedList<>();
         deque.push(model.getRoot());
@@ -0,0 +1,48 @@
+package gumanoid.ui.gtest.output;
+
+import com.google.common.base.Strings;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class LineSpoolUTest {
+    @Test void linesAreReadBack() throws Exception {
+        try (LineSpool spool = LineSpool.createTemp()) {
+            String longLine = Strings.repeat("long line ", 10000);
+            for (int i = 0; i < 1000; ++i) {
+                assertEquals(spool.append(i == 500 ? longLine : "line " + i + " é"), i);
+            }
+
+            assertEquals(spool.size(), 1000);
+            assertEquals(spool.read(0), "line 0 é");
+            assertEquals(spool.read(500), longLine);
+            assertEquals(spool.read(999), "line 999 é");
+            assertEquals(spool.readBlock(1).size(), LineSpool.LINES_PER_BLOCK);
+            assertEquals(spool.readBlock(1000 / LineSpool.LINES_PER_BLOCK).size(), 1000 % LineSpool.LINES_PER_BLOCK);
+
+            spool.append("appended after read");
+            assertEquals(spool.read(1000), "appended after read");
+        }
+    }
+
+    @Test void clearedSpoolIsReused() throws Exception {
+        try (LineSpool spool = LineSpool.createTemp()) {
+            spool.append("old line");
+            spool.read(0);
+            spool.clear();
+
+            assertEquals(spool.size(), 0);
+            assertEquals(spool.append("new line"), 0);
+            assertEquals(spool.read(0), "new line");
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    void readingPastTheEndFails() throws Exception {
+        try (LineSpool spool = LineSpool.createTemp()) {
+            spool.append("line");
+            spool.read(LineSpool.LINES_PER_BLOCK);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package gumanoid.ui.gtest.output;
+
+import org.testng.annotations.Test;
+
+import java.util.Locale;
+import java.util.OptionalInt;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class TestRunStatisticsUTest {
+    @Test void descriptionDoesNotDependOnLocale() throws Exception {
+        TestRunStatistics statistics = new TestRunStatistics();
+        statistics.passed(OptionalInt.of(1));
+        statistics.failed(OptionalInt.of(2));
+        statistics.passed(OptionalInt.empty());
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            assertEquals(statistics.describe(), "2/3 passed, 1/1.5/2 ms min/mean/max");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}